@@ -1,8 +1,14 @@
 package com.projecteprogramacio.controller;
 
 import com.projecteprogramacio.model.User;
+import com.projecteprogramacio.util.DataService;
+import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.SchemaMigrator;
+import com.projecteprogramacio.util.TicketWriter;
 import javafx.application.Application;
+import javafx.beans.binding.Bindings;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Cursor;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.MenuBar;
@@ -10,6 +16,7 @@ import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.sql.Connection;
 
 /**
  * Controlador principal de l'aplicació.
@@ -27,10 +34,26 @@ import java.io.IOException;
  */
 public class AppController extends Application {
 
+	/** Temps màxim per desar els tiquets pendents en tancar l'aplicació. */
+	private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
 	private BorderPane rootLayout;
 	private Stage primaryStage;
 	private User loggedUser;
 
+	/**
+	 * Aplica les migracions d'esquema pendents abans de mostrar cap finestra.
+	 * S'executa fora del fil de JavaFX; si falla, l'aplicació no arrenca.
+	 * 
+	 * @throws Exception si no es pot migrar la base de dades
+	 */
+	@Override
+	public void init() throws Exception {
+		try (Connection conn = Database.getConnection()) {
+			new SchemaMigrator(conn).migrate();
+		}
+	}
+
 	/**
 	 * Mètode principal invocat quan s'inicia l'aplicació. Inicialitza la finestra
 	 * principal i mostra la vista de login.
@@ -43,6 +66,17 @@ public class AppController extends Application {
 		showLoginView();
 	}
 
+	/**
+	 * Mètode invocat en tancar l'aplicació. Desa els tiquets pendents, atura les
+	 * operacions en curs i tanca les connexions del pool de la base de dades.
+	 */
+	@Override
+	public void stop() {
+		TicketWriter.shutdownIfStarted(SHUTDOWN_TIMEOUT_MS);
+		DataService.getInstance().shutdown();
+		Database.shutdown();
+	}
+
 	/**
 	 * Mostra la vista de login.
 	 * <p>
@@ -91,6 +125,11 @@ public class AppController extends Application {
 	 */
 	public void showMainMenu() {
 		rootLayout = new BorderPane();
+
+		// Cursor d'espera mentre hi ha consultes en segon pla
+		rootLayout.cursorProperty().bind(Bindings.when(DataService.getInstance().busyProperty())
+				.then(Cursor.WAIT).otherwise(Cursor.DEFAULT));
+
 		MenuController menuController = new MenuController(loggedUser, rootLayout);
 
 		// Crear el menú només si és admin
@@ -100,27 +139,23 @@ public class AppController extends Application {
 		}
 
 		// Carregar la vista inicial segons el rol
-		try {
-			String initialView;
-			if ("admin".equalsIgnoreCase(loggedUser.getRole())) {
-				initialView = "/view/DrinkView.fxml";
-			} else if ("worker".equalsIgnoreCase(loggedUser.getRole())) {
-				initialView = "/view/TicketCreation.fxml";
-			} else {
-				// Vista per defecte o d'error en cas de rol desconegut
-				initialView = "/view/AccessDenied.fxml";
-			}
-
-			Parent view = FXMLLoader.load(getClass().getResource(initialView));
-			rootLayout.setCenter(view);
-
-		} catch (IOException e) {
-			e.printStackTrace();
+		String initialView;
+		if ("admin".equalsIgnoreCase(loggedUser.getRole())) {
+			initialView = "/view/DrinkView.fxml";
+		} else if ("worker".equalsIgnoreCase(loggedUser.getRole())) {
+			initialView = "/view/TicketCreation.fxml";
+		} else {
+			// Vista per defecte o d'error en cas de rol desconegut
+			initialView = "/view/AccessDenied.fxml";
 		}
+		menuController.loadView(initialView);
 
 		Scene scene = new Scene(rootLayout, 800, 600);
 		primaryStage.setTitle("Gestió");
 		primaryStage.setScene(scene);
 		primaryStage.show();
+
+		// La resta de vistes del menú es carreguen quan la finestra ja es veu
+		menuController.prewarmViews();
 	}
 }
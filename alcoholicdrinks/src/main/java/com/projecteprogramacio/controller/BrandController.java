@@ -1,16 +1,13 @@
 package com.projecteprogramacio.controller;
 
-import com.projecteprogramacio.dao.BrandDAO;
+import com.projecteprogramacio.dao.ReferenceDataCache;
 import com.projecteprogramacio.model.Brand;
-import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.DataService;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
-import java.sql.Connection;
-import java.util.List;
-
 /**
  * Controlador per gestionar la visualització i càrrega de les marques (Brand) a
  * la interfície gràfica.
@@ -21,7 +18,7 @@ import java.util.List;
  * @author [Josuè González]
  * @version 1.0
  */
-public class BrandController {
+public class BrandController implements RefreshableView {
 
 	/** Taula on es mostren les marques. */
 	@FXML
@@ -46,8 +43,8 @@ public class BrandController {
 	/** Llista observable de marques que s'usa com a font de dades per la taula. */
 	private ObservableList<Brand> brandList;
 
-	/** Objeto DAO per accedir a les dades de marques a la base de dades. */
-	private BrandDAO brandDAO;
+	/** Servei que executa les consultes fora del fil de JavaFX. */
+	private final DataService dataService = DataService.getInstance();
 
 	/**
 	 * Inicialitza el controlador, configurant les columnes de la taula i carregant
@@ -56,15 +53,6 @@ public class BrandController {
 	 */
 	@FXML
 	public void initialize() {
-		try {
-			Connection conn = Database.getConnection();
-			brandDAO = new BrandDAO(conn);
-		} catch (Exception e) {
-			statusLabel.setText("Error en la connexió a la base de dades.");
-			e.printStackTrace();
-			return;
-		}
-
 		colBrandId.setCellValueFactory(
 				cellData -> new javafx.beans.property.SimpleIntegerProperty(cellData.getValue().getBrandId())
 						.asObject());
@@ -77,13 +65,32 @@ public class BrandController {
 	}
 
 	/**
-	 * Carrega totes les marques des de la base de dades i les assigna a la taula
-	 * per a la seva visualització.
+	 * Torna a carregar les dades quan la vista es torna a mostrar.
+	 */
+	@Override
+	public void refresh() {
+		loadBrands();
+	}
+
+	/**
+	 * Carrega totes les marques en segon pla i les assigna a la taula per a la seva
+	 * visualització. Només es consulta la base de dades si el
+	 * {@link ReferenceDataCache} encara no s'ha carregat.
 	 */
 	private void loadBrands() {
-		List<Brand> brands = brandDAO.getAllBrands();
-		brandList = FXCollections.observableArrayList(brands);
-		brandTable.setItems(brandList);
-		statusLabel.setText("Marques carregades.");
+		statusLabel.setText("Carregant marques...");
+		ReferenceDataCache referenceData = ReferenceDataCache.getInstance();
+		dataService.submit("brands.getAll", conn -> {
+			referenceData.ensureLoaded(conn);
+			return referenceData.getBrands();
+		}).thenAccept(brands -> {
+			brandList = FXCollections.observableArrayList(brands);
+			brandTable.setItems(brandList);
+			statusLabel.setText("Marques carregades.");
+		}).exceptionally(e -> {
+			statusLabel.setText("Error en la connexió a la base de dades.");
+			DataService.unwrap(e).printStackTrace();
+			return null;
+		});
 	}
 }
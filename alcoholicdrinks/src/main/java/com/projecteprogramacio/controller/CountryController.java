@@ -1,16 +1,13 @@
 package com.projecteprogramacio.controller;
 
-import com.projecteprogramacio.dao.CountryDAO;
+import com.projecteprogramacio.dao.ReferenceDataCache;
 import com.projecteprogramacio.model.Country;
-import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.DataService;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
-import java.sql.Connection;
-import java.util.List;
-
 /**
  * Controlador per a la gestió i visualització de la taula de països.
  * <p>
@@ -21,7 +18,7 @@ import java.util.List;
  * 
  * @author Josuè González
  */
-public class CountryController {
+public class CountryController implements RefreshableView {
 
 	@FXML
 	private TableView<Country> countryTable;
@@ -35,28 +32,19 @@ public class CountryController {
 	@FXML
 	private Label statusLabel;
 
-	private CountryDAO countryDAO;
+	private final DataService dataService = DataService.getInstance();
 
 	private ObservableList<Country> countryList;
 
 	/**
 	 * Inicialitza el controlador.
 	 * <p>
-	 * Estableix la connexió amb la base de dades, configura les columnes de la
-	 * taula i carrega la llista de països.
+	 * Configura les columnes de la taula i carrega la llista de països en segon
+	 * pla.
 	 * </p>
 	 */
 	@FXML
 	public void initialize() {
-		try {
-			Connection conn = Database.getConnection();
-			countryDAO = new CountryDAO(conn);
-		} catch (Exception e) {
-			statusLabel.setText("Error en la connexió a la base de dades");
-			e.printStackTrace();
-			return;
-		}
-
 		// Configura les columnes de la taula per mostrar el codi i nom del país
 		colCode.setCellValueFactory(
 				cellData -> new javafx.beans.property.SimpleStringProperty(cellData.getValue().getCountryCode()));
@@ -68,13 +56,32 @@ public class CountryController {
 	}
 
 	/**
-	 * Carrega la llista de països des de la base de dades i l'assigna a la taula
-	 * per mostrar-la.
+	 * Torna a carregar les dades quan la vista es torna a mostrar.
+	 */
+	@Override
+	public void refresh() {
+		loadCountries();
+	}
+
+	/**
+	 * Carrega la llista de països i l'assigna a la taula per mostrar-la. Només es
+	 * consulta la base de dades si el {@link ReferenceDataCache} encara no s'ha
+	 * carregat.
 	 */
 	private void loadCountries() {
-		List<Country> list = countryDAO.getAllCountries();
-		countryList = FXCollections.observableArrayList(list);
-		countryTable.setItems(countryList);
-		statusLabel.setText("Països carregats");
+		statusLabel.setText("Carregant països...");
+		ReferenceDataCache referenceData = ReferenceDataCache.getInstance();
+		dataService.submit("countries.getAll", conn -> {
+			referenceData.ensureLoaded(conn);
+			return referenceData.getCountries();
+		}).thenAccept(list -> {
+			countryList = FXCollections.observableArrayList(list);
+			countryTable.setItems(countryList);
+			statusLabel.setText("Països carregats");
+		}).exceptionally(e -> {
+			statusLabel.setText("Error en la connexió a la base de dades");
+			DataService.unwrap(e).printStackTrace();
+			return null;
+		});
 	}
 }
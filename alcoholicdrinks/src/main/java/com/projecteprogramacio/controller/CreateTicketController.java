@@ -1,10 +1,12 @@
 package com.projecteprogramacio.controller;
 
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import com.projecteprogramacio.dao.DrinkDAO;
 import com.projecteprogramacio.dao.TicketDAO;
@@ -13,10 +15,14 @@ import com.projecteprogramacio.model.Drink;
 import com.projecteprogramacio.model.Ticket;
 import com.projecteprogramacio.model.TicketLine;
 import com.projecteprogramacio.model.User;
-import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.DataService;
+import com.projecteprogramacio.util.DebouncedSearch;
+import com.projecteprogramacio.util.TicketWriter;
 
+import javafx.application.Platform;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -34,6 +40,7 @@ import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 /**
  * Controlador per a la vista de creació de tiquets.
@@ -47,7 +54,7 @@ import javafx.stage.Stage;
  * 
  * @author Josuè González
  */
-public class CreateTicketController {
+public class CreateTicketController implements RefreshableView {
 
 	@FXML
 	private TextField clientSearchField;
@@ -115,28 +122,51 @@ public class CreateTicketController {
 	private final ObservableList<User> clients = FXCollections.observableArrayList();
 	private final ObservableList<Drink> products = FXCollections.observableArrayList();
 	private final ObservableList<TicketLine> ticketLines = FXCollections.observableArrayList();
+
+	/**
+	 * Tiquet en construcció. Té les mateixes línies que {@link #ticketLines} i en
+	 * manté el total en cèntims a cada canvi, sense recórrer-les.
+	 */
+	private final Ticket tiquetEnCurs = new Ticket(null, ESTAT_CREAT);
+
+	/**
+	 * Línies del tiquet en curs per {@code drinkId}: una beguda que ja és al tiquet
+	 * s'hi suma en temps constant, encara que sigui un altre objecte {@link Drink}
+	 * (p. ex. tornat a carregar per una cerca).
+	 */
+	private final Map<Integer, LiniaEnCurs> liniesPerBeguda = new HashMap<>();
 	private final ObservableList<Ticket> tickets = FXCollections.observableArrayList();
 
 	private final Map<Drink, Integer> productQuantities = new HashMap<>();
 
 	private User selectedClient;
 
-	private UserDAO userDAO;
-	private TicketDAO ticketDAO;
-	private DrinkDAO drinkDAO;
+	/** Clau d'idempotència del tiquet en curs, generada en enviar-lo. */
+	private String clauEnviament;
+
+	/** Servei que executa les consultes fora del fil de JavaFX. */
+	private final DataService dataService = DataService.getInstance();
+
+	/** Desa els tiquets finalitzats en grups, compartit amb les altres caixes. */
+	private final TicketWriter ticketWriter = TicketWriter.getInstance();
 
 	private static final String ESTAT_CREAT = "CREAT";
 
+	/** Tiquets més recents que es mostren a la llista de tiquets. */
+	private static final int TIQUETS_RECENTS = 50;
+
+	/** Temps sense teclejar abans de llançar una cerca. */
+	private static final Duration RETARD_CERCA = Duration.millis(250);
+
+	private DebouncedSearch<User> cercaClients;
+	private DebouncedSearch<Drink> cercaProductes;
+
 	/**
 	 * Inicialitza el controlador.
 	 * <p>
-	 * Estableix la connexió a la base de dades, configura les taules i controls, i
-	 * carrega les dades inicials.
-	 * 
-	 * @throws SQLException si hi ha algun error en la connexió o càrrega inicial
+	 * Configura les taules i controls, i carrega les dades inicials en segon pla.
 	 */
-	public void initialize() throws SQLException {
-		connectToDatabase();
+	public void initialize() {
 		configurarClients();
 		configurarProductes();
 		configurarLíniesTiquet();
@@ -145,28 +175,13 @@ public class CreateTicketController {
 		carregarProductes();
 		carregarTiquets();
 
-		clientSearchField.textProperty().addListener((obs, oldVal, newVal) -> buscarClients(newVal));
-		productSearchField.textProperty().addListener((obs, oldVal, newVal) -> {
-			try {
-				buscarProductes(newVal);
-			} catch (SQLException e) {
-				mostrarError("Error cercant productes: " + e.getMessage());
-			}
-		});
-	}
+		cercaClients = new DebouncedSearch<>(RETARD_CERCA, this::buscarClients, clients::setAll,
+				e -> mostrarError("Error en la cerca de clients: " + e.getMessage()));
+		cercaClients.bind(clientSearchField.textProperty());
 
-	/**
-	 * Estableix la connexió amb la base de dades i inicialitza els DAO.
-	 */
-	private void connectToDatabase() {
-		try {
-			Connection conn = Database.getConnection();
-			userDAO = new UserDAO(conn);
-			ticketDAO = new TicketDAO(conn);
-			drinkDAO = new DrinkDAO(conn);
-		} catch (SQLException e) {
-			mostrarError("No s'ha pogut connectar a la base de dades!\n" + e.getMessage());
-		}
+		cercaProductes = new DebouncedSearch<>(RETARD_CERCA, this::buscarProductes, products::setAll,
+				e -> mostrarError("Error cercant productes: " + e.getMessage()));
+		cercaProductes.bind(productSearchField.textProperty());
 	}
 
 	/**
@@ -176,6 +191,7 @@ public class CreateTicketController {
 		clientListView.setItems(clients);
 		clientListView.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
 			selectedClient = newVal;
+			clauEnviament = null;
 			selectedClientLabel
 					.setText(newVal != null ? "Client seleccionat: " + newVal.getUsername() : "Cap client seleccionat");
 		});
@@ -243,11 +259,40 @@ public class CreateTicketController {
 	 */
 	private void configurarLíniesTiquet() {
 		colLineProduct.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getDrink().getName()));
-		colLineQuantity
-				.setCellValueFactory(cell -> new SimpleIntegerProperty(cell.getValue().getQuantity()).asObject());
+		colLineQuantity.setCellValueFactory(cell -> liniaEnCurs(cell.getValue()).quantitat());
+		colLineQuantity.setCellFactory(tc -> new TableCell<>() {
+			private final Spinner<Integer> spinner = new Spinner<>(1, 999, 1, 1);
+			private boolean actualitzant;
+
+			{
+				spinner.setEditable(true);
+				spinner.valueProperty().addListener((obs, oldValue, newValue) -> {
+					if (actualitzant || newValue == null || newValue <= 0 || getIndex() >= ticketLines.size()) {
+						return;
+					}
+					TicketLine line = ticketLines.get(getIndex());
+					if (line.getQuantity() != newValue) {
+						canviarQuantitat(line, newValue);
+					}
+				});
+			}
+
+			@Override
+			protected void updateItem(Integer quantity, boolean empty) {
+				super.updateItem(quantity, empty);
+				if (empty || quantity == null) {
+					setGraphic(null);
+				} else {
+					actualitzant = true;
+					spinner.getValueFactory().setValue(quantity);
+					actualitzant = false;
+					setGraphic(spinner);
+				}
+			}
+		});
 		colLineUnitPrice.setCellValueFactory(
-				cell -> new SimpleDoubleProperty(cell.getValue().getDrink().getPrice()).asObject());
-		colLineSubtotal.setCellValueFactory(cell -> new SimpleDoubleProperty(cell.getValue().getSubtotal()).asObject());
+				cell -> new SimpleDoubleProperty(cell.getValue().getPrice()).asObject());
+		colLineSubtotal.setCellValueFactory(cell -> liniaEnCurs(cell.getValue()).subtotal());
 
 		colLineDeleteButton.setCellFactory(col -> new TableCell<>() {
 			private final Button btn = new Button("Eliminar");
@@ -255,6 +300,8 @@ public class CreateTicketController {
 			{
 				btn.setOnAction(e -> {
 					TicketLine line = getTableView().getItems().get(getIndex());
+					liniesPerBeguda.remove(line.getDrink().getDrinkId());
+					tiquetEnCurs.removeLine(line);
 					ticketLines.remove(line);
 					actualitzarTotal();
 				});
@@ -282,80 +329,118 @@ public class CreateTicketController {
 			return;
 		}
 
-		ticketLines.stream().filter(line -> line.getDrink().equals(drink)).findFirst().ifPresentOrElse(
-				line -> line.setQuantity(line.getQuantity() + quantitat),
-				() -> ticketLines.add(new TicketLine(drink, quantitat)));
+		LiniaEnCurs existent = liniesPerBeguda.get(drink.getDrinkId());
+		if (existent != null) {
+			// La fila s'actualitza sola a través de les seves propietats
+			tiquetEnCurs.setLineQuantity(existent.line(), existent.line().getQuantity() + quantitat);
+			existent.actualitzar();
+		} else {
+			TicketLine line = new TicketLine(drink, quantitat);
+			tiquetEnCurs.addLine(line);
+			liniesPerBeguda.put(drink.getDrinkId(), new LiniaEnCurs(line));
+			ticketLines.add(line);
+		}
 
 		actualitzarTotal();
-		ticketLineTable.refresh();
 	}
 
 	/**
-	 * Actualitza l'etiqueta amb el total calculat de totes les línies del tiquet.
+	 * Canvia la quantitat d'una línia des del seu spinner. El total s'ajusta amb
+	 * la diferència.
+	 * 
+	 * @param line      línia del tiquet en curs
+	 * @param quantitat nova quantitat; ha de ser positiva
+	 */
+	private void canviarQuantitat(TicketLine line, int quantitat) {
+		tiquetEnCurs.setLineQuantity(line, quantitat);
+		liniaEnCurs(line).actualitzar();
+		actualitzarTotal();
+	}
+
+	/**
+	 * @param line línia del tiquet en curs
+	 * @return propietats de la línia que mostra la taula
+	 */
+	private LiniaEnCurs liniaEnCurs(TicketLine line) {
+		return liniesPerBeguda.get(line.getDrink().getDrinkId());
+	}
+
+	/**
+	 * Actualitza l'etiqueta amb el total del tiquet en curs. Es crida a cada canvi
+	 * de línia, així que també descarta la clau d'enviament: el tiquet ja no és el
+	 * que s'havia enviat.
 	 */
 	private void actualitzarTotal() {
-		double total = ticketLines.stream().mapToDouble(TicketLine::getSubtotal).sum();
-		totalLabel.setText(String.format("Total: %.2f €", total));
+		clauEnviament = null;
+		totalLabel.setText(String.format("Total: %.2f €", tiquetEnCurs.getTotal()));
 	}
 
 	/**
-	 * Carrega tots els clients des de la base de dades.
+	 * Torna a carregar clients, productes i tiquets quan la vista es torna a
+	 * mostrar. Les llistes amb una cerca activa es deixen com estan; el tiquet en
+	 * curs es conserva.
 	 */
-	private void carregarClients() {
-		try {
-			clients.setAll(userDAO.getAllUsers());
-		} catch (SQLException e) {
-			mostrarError("Error carregant clients: " + e.getMessage());
+	@Override
+	public void refresh() {
+		if (clientSearchField.getText() == null || clientSearchField.getText().isBlank()) {
+			carregarClients();
 		}
+		if (productSearchField.getText() == null || productSearchField.getText().isBlank()) {
+			carregarProductes();
+		}
+		carregarTiquets();
 	}
 
 	/**
-	 * Carrega tots els productes des de la base de dades.
-	 * 
-	 * @throws SQLException si hi ha un error a la base de dades
+	 * Carrega tots els clients des de la base de dades en segon pla.
 	 */
-	private void carregarProductes() throws SQLException {
-		products.setAll(drinkDAO.getAllDrinks());
+	private void carregarClients() {
+		dataService.submit("users.getAll", conn -> new UserDAO(conn).getAllUsers()).thenAccept(clients::setAll)
+				.exceptionally(e -> mostrarErrorOperacio("Error carregant clients: ", e));
 	}
 
 	/**
-	 * Carrega tots els tiquets des de la base de dades.
-	 * 
-	 * @throws SQLException si hi ha un error a la base de dades
+	 * Carrega tots els productes des de la base de dades en segon pla.
+	 */
+	private void carregarProductes() {
+		dataService.submit("drinks.getAll", conn -> new DrinkDAO(conn).getAllDrinks()).thenAccept(products::setAll)
+				.exceptionally(e -> mostrarErrorOperacio("Error carregant productes: ", e));
+	}
+
+	/**
+	 * Carrega en segon pla els tiquets més recents, sense recórrer tot
+	 * l'historial.
 	 */
-	private void carregarTiquets() throws SQLException {
-		tickets.setAll(ticketDAO.getAllTickets());
+	private void carregarTiquets() {
+		dataService.submit("tickets.recent", conn -> new TicketDAO(conn).getTicketsPage(null, null, TIQUETS_RECENTS))
+				.thenAccept(tickets::setAll).exceptionally(e -> mostrarErrorOperacio("Error carregant tiquets: ", e));
 	}
 
 	/**
-	 * Filtra la llista de clients segons un text de cerca.
+	 * Cerca clients segons un text de cerca, en segon pla amb el servei de dades.
 	 * 
 	 * @param filtre text pel qual filtrar els clients (nom o usuari)
+	 * @return futur amb els clients que coincideixen, o tots si el filtre és buit
 	 */
-	private void buscarClients(String filtre) {
-		try {
-			if (filtre == null || filtre.isBlank()) {
-				clients.setAll(userDAO.getAllUsers());
-			} else {
-				clients.setAll(userDAO.searchUsersByName(filtre));
-			}
-		} catch (SQLException e) {
-			mostrarError("Error en la cerca de clients: " + e.getMessage());
+	private CompletableFuture<List<User>> buscarClients(String filtre) {
+		if (filtre == null || filtre.isBlank()) {
+			return dataService.submit("users.getAll", conn -> new UserDAO(conn).getAllUsers());
 		}
+		return dataService.submit("users.search", conn -> new UserDAO(conn).searchUsersByName(filtre));
 	}
 
 	/**
-	 * Filtra la llista de productes segons un text de cerca.
+	 * Cerca productes segons un text de cerca, en segon pla amb el servei de
+	 * dades.
 	 * 
-	 * @param filtre text pel qual filtrar els productes (nom)
-	 * @throws SQLException si hi ha un error a la base de dades
+	 * @param filtre text pel qual filtrar els productes
+	 * @return futur amb els productes que coincideixen, o tots si el filtre és buit
 	 */
-	private void buscarProductes(String filtre) throws SQLException {
+	private CompletableFuture<List<Drink>> buscarProductes(String filtre) {
 		if (filtre == null || filtre.isBlank()) {
-			products.setAll(drinkDAO.getAllDrinks());
-		} else {
-			products.setAll(drinkDAO.searchDrinksByName(filtre));
+			return dataService.submit("drinks.getAll", conn -> new DrinkDAO(conn).getAllDrinks());
 		}
+		return dataService.submit("drinks.search", conn -> new DrinkDAO(conn).searchDrinksByName(filtre));
 	}
 
 	/**
@@ -375,22 +460,47 @@ public class CreateTicketController {
 			return;
 		}
 
-		try {
-			Ticket ticket = new Ticket(selectedClient, ESTAT_CREAT);
-			ticketLines.forEach(ticket::addLine);
-
-			boolean saved = ticketDAO.insertTicket(ticket);
-			if (saved) {
-				mostrarAlerta(Alert.AlertType.INFORMATION, "Tiquet creat correctament.");
-				ticketLines.clear();
-				actualitzarTotal();
+		// Còpia per desar, amb línies noves: l'escriptor hi assigna els ids des del
+		// seu fil i el tiquet en curs es pot continuar editant mentre es desa
+		Ticket ticket = new Ticket(selectedClient, ESTAT_CREAT);
+		List<TicketLine> copia = new ArrayList<>(tiquetEnCurs.getLines().size());
+		for (TicketLine line : tiquetEnCurs.getLines()) {
+			copia.add(new TicketLine(0, 0, line.getDrink(), line.getQuantity(), line.getPrice()));
+		}
+		ticket.setLines(copia);
+		// Es conserva fins que el tiquet es desa o es modifica: si un enviament
+		// fallit sí que s'havia desat, tornar-lo a enviar no el duplica
+		if (clauEnviament == null) {
+			clauEnviament = UUID.randomUUID().toString();
+		}
+		String clau = clauEnviament;
+		ticket.setIdempotencyKey(clau);
+
+		// Evita crear el mateix tiquet dues vegades mentre es desa
+		finishTicketButton.setDisable(true);
+		// L'escriptor agrupa en una transacció els tiquets de diverses caixes
+		ticketWriter.submit(ticket).whenCompleteAsync((ticketId, e) -> {
+			finishTicketButton.setDisable(false);
+			if (e != null) {
+				mostrarErrorOperacio("Error creant tiquet: ", e);
+				return;
+			}
+			// Qualsevol canvi al tiquet en curs descarta la clau: si ja no és la
+			// mateixa, s'ha editat mentre es desava i no s'ha de perdre
+			if (!clau.equals(clauEnviament)) {
+				mostrarAlerta(Alert.AlertType.INFORMATION, "Tiquet " + ticketId
+						+ " creat amb les línies que tenia en finalitzar-lo. Els canvis posteriors es conserven al tiquet en curs.");
 				carregarTiquets();
-			} else {
-				mostrarAlerta(Alert.AlertType.ERROR, "No s'ha pogut crear el tiquet.");
+				return;
 			}
-		} catch (Exception e) {
-			mostrarError("Error creant tiquet: " + e.getMessage());
-		}
+			mostrarAlerta(Alert.AlertType.INFORMATION, "Tiquet " + ticketId + " creat correctament.");
+			clauEnviament = null;
+			tiquetEnCurs.clearLines();
+			liniesPerBeguda.clear();
+			ticketLines.clear();
+			actualitzarTotal();
+			carregarTiquets();
+		}, Platform::runLater);
 	}
 
 	/**
@@ -420,6 +530,18 @@ public class CreateTicketController {
 		mostrarAlerta(Alert.AlertType.ERROR, missatge);
 	}
 
+	/**
+	 * Mostra l'error d'una operació asíncrona de base de dades.
+	 * 
+	 * @param prefix text que precedeix el missatge de l'error
+	 * @param e      error rebut de l'operació
+	 * @return sempre null, per poder-se usar a {@code exceptionally}
+	 */
+	private Void mostrarErrorOperacio(String prefix, Throwable e) {
+		mostrarError(prefix + DataService.unwrap(e).getMessage());
+		return null;
+	}
+
 	/**
 	 * Mostra un missatge en un diàleg d'alerta.
 	 * 
@@ -433,4 +555,26 @@ public class CreateTicketController {
 		alert.setContentText(missatge);
 		alert.showAndWait();
 	}
+
+	/**
+	 * Línia del tiquet en curs amb la quantitat i el subtotal com a propietats,
+	 * perquè la seva fila de la taula s'actualitzi sense refrescar-la sencera.
+	 * 
+	 * @param line      línia del tiquet
+	 * @param quantitat quantitat mostrada
+	 * @param subtotal  subtotal mostrat
+	 */
+	private record LiniaEnCurs(TicketLine line, SimpleObjectProperty<Integer> quantitat,
+			SimpleObjectProperty<Double> subtotal) {
+
+		LiniaEnCurs(TicketLine line) {
+			this(line, new SimpleObjectProperty<>(line.getQuantity()), new SimpleObjectProperty<>(line.getSubtotal()));
+		}
+
+		/** Copia a les propietats els valors actuals de la línia. */
+		void actualitzar() {
+			quantitat.set(line.getQuantity());
+			subtotal.set(line.getSubtotal());
+		}
+	}
 }
@@ -0,0 +1,165 @@
+package com.projecteprogramacio.controller;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+import com.projecteprogramacio.util.ConnectionPool;
+import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.QueryMetrics;
+import com.projecteprogramacio.util.TicketWriter;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.fxml.FXML;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.util.Callback;
+import javafx.util.Duration;
+
+/**
+ * Controlador de la vista de diagnòstic.
+ * <p>
+ * Mostra les mètriques de {@link QueryMetrics} per operació dels DAO
+ * (crides, errors, files i latències), el registre de consultes lentes,
+ * l'estat del pool de connexions i el de l'escriptor de tiquets. Les dades es refresquen cada
+ * {@link #REFRESH_SECONDS} segons mentre la vista és visible.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class DiagnosticsController implements RefreshableView {
+
+	/** Interval de refresc automàtic. */
+	private static final double REFRESH_SECONDS = 2;
+
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+	@FXML
+	private TableView<QueryMetrics.Stats> statsTable;
+	@FXML
+	private TableColumn<QueryMetrics.Stats, String> colOperation;
+	@FXML
+	private TableColumn<QueryMetrics.Stats, Long> colCalls, colErrors, colRows;
+	@FXML
+	private TableColumn<QueryMetrics.Stats, String> colAvg, colP50, colP95, colP99, colMax;
+
+	@FXML
+	private TableView<QueryMetrics.SlowQuery> slowTable;
+	@FXML
+	private TableColumn<QueryMetrics.SlowQuery, String> colSlowTime, colSlowOperation, colSlowMillis, colSlowSql,
+			colSlowParams;
+
+	@FXML
+	private TextField thresholdField;
+	@FXML
+	private Label poolLabel, writerLabel, sinceLabel, statusLabel;
+
+	private final QueryMetrics metrics = QueryMetrics.getInstance();
+
+	/** Refresc automàtic; es crea a {@link #initialize()}. */
+	private Timeline refresher;
+
+	/**
+	 * Inicialitza les columnes i engega el refresc automàtic, que s'atura quan la
+	 * vista surt de l'escena.
+	 */
+	@FXML
+	public void initialize() {
+		colOperation.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().operation()));
+		colCalls.setCellValueFactory(c -> new SimpleObjectProperty<>(c.getValue().calls()));
+		colErrors.setCellValueFactory(c -> new SimpleObjectProperty<>(c.getValue().errors()));
+		colRows.setCellValueFactory(c -> new SimpleObjectProperty<>(c.getValue().rows()));
+		colAvg.setCellValueFactory(millis(QueryMetrics.Stats::avgMillis));
+		colP50.setCellValueFactory(millis(QueryMetrics.Stats::p50Millis));
+		colP95.setCellValueFactory(millis(QueryMetrics.Stats::p95Millis));
+		colP99.setCellValueFactory(millis(QueryMetrics.Stats::p99Millis));
+		colMax.setCellValueFactory(millis(QueryMetrics.Stats::maxMillis));
+
+		colSlowTime.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().time().format(TIME_FORMAT)));
+		colSlowOperation.setCellValueFactory(
+				c -> new SimpleStringProperty(c.getValue().operation() + (c.getValue().failed() ? " (error)" : "")));
+		colSlowMillis.setCellValueFactory(millis(QueryMetrics.SlowQuery::millis));
+		colSlowSql.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().sql()));
+		colSlowParams.setCellValueFactory(c -> new SimpleStringProperty(String.join(", ", c.getValue().params())));
+
+		thresholdField.setText(Long.toString(metrics.getSlowThresholdMillis()));
+		thresholdField.setOnAction(e -> applyThreshold());
+
+		refresher = new Timeline(new KeyFrame(Duration.seconds(REFRESH_SECONDS), e -> refresh()));
+		refresher.setCycleCount(Timeline.INDEFINITE);
+		statsTable.sceneProperty().addListener((obs, oldScene, newScene) -> {
+			if (newScene != null) {
+				refresher.play();
+			} else {
+				refresher.stop();
+			}
+		});
+		refresh();
+	}
+
+	/**
+	 * Torna a llegir les mètriques.
+	 */
+	@FXML
+	private void handleRefresh() {
+		statusLabel.setText("");
+		applyThreshold();
+		refresh();
+	}
+
+	/**
+	 * Esborra les mètriques i el registre de consultes lentes.
+	 */
+	@FXML
+	private void handleReset() {
+		metrics.reset();
+		refresh();
+		statusLabel.setText("Mètriques reiniciades.");
+	}
+
+	/**
+	 * Torna a llegir les mètriques, l'estat del pool i el de l'escriptor.
+	 */
+	@Override
+	public void refresh() {
+		statsTable.setItems(FXCollections.observableArrayList(metrics.getStats()));
+		slowTable.setItems(FXCollections.observableArrayList(metrics.getSlowQueries()));
+
+		ConnectionPool.Stats pool = Database.getPoolStats();
+		poolLabel.setText(String.format(Locale.ROOT,
+				"Pool: %d/%d actives, %d lliures, %d préstecs, %d esperes esgotades, espera mitjana %.2f ms (màx %.2f ms)",
+				pool.active(), pool.maxSize(), pool.idle(), pool.leases(), pool.timeouts(), pool.avgWaitMillis(),
+				pool.maxWaitMillis()));
+		TicketWriter.Stats writer = TicketWriter.getSharedStats();
+		writerLabel.setText(String.format(Locale.ROOT,
+				"Escriptor de tiquets: %d desats en %d transaccions (%.1f per transacció, màx %d), %d fallits, %d a la cua",
+				writer.written(), writer.batches(), writer.avgBatch(), writer.largestBatch(), writer.failed(),
+				writer.queued()));
+		sinceLabel.setText("Mesures des de les " + metrics.getSince().format(TIME_FORMAT));
+	}
+
+	/**
+	 * Aplica el llindar de consulta lenta escrit al camp.
+	 */
+	private void applyThreshold() {
+		try {
+			metrics.setSlowThresholdMillis(Long.parseLong(thresholdField.getText().trim()));
+		} catch (IllegalArgumentException e) {
+			statusLabel.setText("Llindar no vàlid.");
+			thresholdField.setText(Long.toString(metrics.getSlowThresholdMillis()));
+		}
+	}
+
+	/** Cel·la amb una durada en mil·lisegons amb tres decimals. */
+	private static <S> Callback<TableColumn.CellDataFeatures<S, String>, ObservableValue<String>> millis(
+			ToDoubleFunction<S> value) {
+		return c -> new SimpleStringProperty(String.format(Locale.ROOT, "%.3f", value.applyAsDouble(c.getValue())));
+	}
+}
@@ -3,9 +3,13 @@ package com.projecteprogramacio.controller;
 import com.projecteprogramacio.dao.DrinkDAO;
 import com.projecteprogramacio.dao.DrinkTypeDAO;
 import com.projecteprogramacio.dao.BrandDAO;
+import com.projecteprogramacio.dao.ReferenceDataCache;
 import com.projecteprogramacio.model.Drink;
-import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.CatalogImporter;
+import com.projecteprogramacio.util.DataService;
+import com.projecteprogramacio.util.ThumbnailCache;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
@@ -13,13 +17,18 @@ import javafx.scene.image.ImageView;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.beans.property.*;
+import javafx.stage.FileChooser;
 
+import java.io.File;
 import java.sql.Connection;
-import java.sql.SQLException;
+import java.util.Locale;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.io.ByteArrayInputStream;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Controlador per gestionar la vista de begudes.
@@ -29,10 +38,10 @@ import java.io.ByteArrayInputStream;
  * begudes, així com els camps del formulari per introduir o modificar la
  * informació.
  * <p>
- * Utilitza mapes per relacionar tipus i marques amb els seus identificadors,
- * facilitant la conversió entre noms i ids.
+ * Els noms de tipus i marques es prenen del {@link ReferenceDataCache}, que es
+ * comparteix amb la resta de vistes.
  */
-public class DrinkController {
+public class DrinkController implements RefreshableView {
 
 	@FXML
 	private TableView<Drink> drinkTable;
@@ -55,7 +64,7 @@ public class DrinkController {
 	@FXML
 	private TableColumn<Drink, String> colCountry;
 	@FXML
-	private TableColumn<Drink, ImageView> colImage;
+	private TableColumn<Drink, Integer> colImage;
 
 	@FXML
 	private TextField nameField;
@@ -81,61 +90,63 @@ public class DrinkController {
 	@FXML
 	private Button deleteButton;
 	@FXML
+	private Button importButton;
+	@FXML
 	private Label statusLabel;
 
 	private ObservableList<Drink> drinkList;
-	private DrinkDAO drinkDAO;
-	private DrinkTypeDAO typeDAO;
-	private BrandDAO brandDAO;
 
-	// Mapes id -> nom i nom -> id per tipus i marques
-	private Map<Integer, String> typeNamesMap;
-	private Map<Integer, String> brandNamesMap;
-	private Map<String, Integer> typeIdsMap;
-	private Map<String, Integer> brandIdsMap;
+	/** Servei que executa les consultes fora del fil de JavaFX. */
+	private final DataService dataService = DataService.getInstance();
+
+	/** Noms de tipus i marques per identificador */
+	private final ReferenceDataCache referenceData = ReferenceDataCache.getInstance();
+
+	/** Temps màxim d'una importació de catàleg. */
+	private static final long IMPORT_TIMEOUT_MS = 60 * 60 * 1000;
+
+	/** Mida (en píxels) de les miniatures de la columna d'imatge. */
+	private static final int THUMBNAIL_SIZE = 60;
+	private static final String THUMBNAIL_NAMESPACE = "drink";
 
-	private Connection conn;
+	/** Cel·les que esperen la imatge d'una beguda, per id de beguda. */
+	private final Map<Integer, List<Consumer<byte[]>>> pendingImages = new HashMap<>();
+
+	/** Begudes que ja sabem que no tenen imatge, per no tornar-la a demanar. */
+	private final Set<Integer> drinksWithoutImage = new HashSet<>();
+
+	private final ThumbnailCache thumbnails = ThumbnailCache.getInstance();
 
 	/**
 	 * Inicialitza el controlador.
 	 * <p>
-	 * Estableix connexió amb la base de dades i inicialitza els DAOs per begudes,
-	 * tipus i marques. Carrega els mapes per a conversió ràpida entre noms i IDs,
-	 * configura les columnes de la taula i carrega la llista de begudes.
+	 * Configura les columnes de la taula i carrega en segon pla les dades de
+	 * referència (si encara no s'han carregat) i la llista de begudes.
 	 */
 	@FXML
 	public void initialize() {
-		try {
-			conn = Database.getConnection();
-
-			drinkDAO = new DrinkDAO(conn);
-			typeDAO = new DrinkTypeDAO(conn);
-			brandDAO = new BrandDAO(conn);
+		setupTableColumns();
 
-			// Carregar mapes de tipus i marques
-			typeNamesMap = typeDAO.getAllDrinkTypes().stream()
-					.collect(Collectors.toMap(t -> t.getTypeId(), t -> t.getName()));
-			brandNamesMap = brandDAO.getAllBrands().stream()
-					.collect(Collectors.toMap(b -> b.getBrandId(), b -> b.getName()));
+		// Omplir formulari quan es selecciona una beguda
+		drinkTable.getSelectionModel().selectedItemProperty()
+				.addListener((obs, oldVal, newVal) -> fillFormFields(newVal));
 
-			// Invertir mapes per buscar ID a partir del nom
-			typeIdsMap = typeNamesMap.entrySet().stream()
-					.collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
-			brandIdsMap = brandNamesMap.entrySet().stream()
-					.collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
-
-			setupTableColumns();
-
-			// Omplir formulari quan es selecciona una beguda
-			drinkTable.getSelectionModel().selectedItemProperty()
-					.addListener((obs, oldVal, newVal) -> fillFormFields(newVal));
-
-			loadDrinks();
+		loadReferenceData();
+		loadDrinks();
+	}
 
-		} catch (SQLException e) {
-			e.printStackTrace();
-			statusLabel.setText("Error en la connexió a la base de dades.");
+	/**
+	 * Carrega les dades de referència si cal i refresca la taula quan arriben. Si
+	 * ja són a memòria no consulta la base de dades.
+	 */
+	private void loadReferenceData() {
+		if (referenceData.isLoaded()) {
+			return;
 		}
+		dataService.submit("referenceData.load", conn -> {
+			referenceData.ensureLoaded(conn);
+			return null;
+		}).thenAccept(v -> drinkTable.refresh()).exceptionally(this::showError);
 	}
 
 	/**
@@ -152,12 +163,12 @@ public class DrinkController {
 		colVolume.setCellValueFactory(cellData -> new SimpleDoubleProperty(cellData.getValue().getVolume()).asObject());
 
 		colType.setCellValueFactory(cellData -> {
-			String name = typeNamesMap.get(cellData.getValue().getTypeId());
+			String name = referenceData.getTypeName(cellData.getValue().getTypeId());
 			return new SimpleStringProperty(name != null ? name : "Desconegut");
 		});
 
 		colBrand.setCellValueFactory(cellData -> {
-			String name = brandNamesMap.get(cellData.getValue().getBrandId());
+			String name = referenceData.getBrandName(cellData.getValue().getBrandId());
 			return new SimpleStringProperty(name != null ? name : "Desconegut");
 		});
 
@@ -166,28 +177,160 @@ public class DrinkController {
 			return new SimpleStringProperty(country != null && !country.isEmpty() ? country : "Desconegut");
 		});
 
-		colImage.setCellValueFactory(cellData -> {
-			byte[] img = cellData.getValue().getImage();
-			if (img != null && img.length > 0) {
-				Image image = new Image(new ByteArrayInputStream(img));
-				ImageView iv = new ImageView(image);
-				iv.setFitWidth(60);
-				iv.setFitHeight(60);
+		// Les begudes es carreguen sense imatge: cada cel·la visible busca la
+		// miniatura a la memòria cau i, si no hi és, en demana els bytes (agrupats
+		// en una sola consulta) i la descodifica en segon pla
+		colImage.setCellValueFactory(
+				cellData -> new SimpleIntegerProperty(cellData.getValue().getDrinkId()).asObject());
+		colImage.setCellFactory(col -> new TableCell<>() {
+			private final ImageView iv = new ImageView();
+
+			{
+				iv.setFitWidth(THUMBNAIL_SIZE);
+				iv.setFitHeight(THUMBNAIL_SIZE);
 				iv.setPreserveRatio(true);
-				return new SimpleObjectProperty<>(iv);
-			} else {
-				return new SimpleObjectProperty<>(null);
+			}
+
+			@Override
+			protected void updateItem(Integer drinkId, boolean empty) {
+				super.updateItem(drinkId, empty);
+				if (empty || drinkId == null || drinksWithoutImage.contains(drinkId)) {
+					iv.setImage(null);
+					setGraphic(null);
+					return;
+				}
+				setGraphic(iv);
+
+				Image cached = thumbnails.get(THUMBNAIL_NAMESPACE, drinkId, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+				if (cached != null) {
+					iv.setImage(cached);
+					return;
+				}
+
+				iv.setImage(ThumbnailCache.PLACEHOLDER);
+				requestImage(drinkId, bytes -> {
+					if (bytes == null) {
+						drinksWithoutImage.add(drinkId);
+						deliverThumbnail(drinkId, null);
+						return;
+					}
+					thumbnails.getOrDecode(THUMBNAIL_NAMESPACE, drinkId, bytes, THUMBNAIL_SIZE, THUMBNAIL_SIZE,
+							image -> deliverThumbnail(drinkId, image));
+				});
+			}
+
+			private void deliverThumbnail(Integer drinkId, Image image) {
+				// La cel·la pot haver canviat de fila mentre es carregava
+				if (drinkId.equals(getItem())) {
+					iv.setImage(image);
+					setGraphic(image != null ? iv : null);
+				}
 			}
 		});
 	}
 
 	/**
-	 * Carrega la llista de begudes de la base de dades i l'estableix a la taula.
+	 * Oblida la miniatura i l'estat "sense imatge" d'una beguda, perquè la
+	 * següent vegada que es mostri es torni a llegir de la base de dades.
+	 *
+	 * @param drinkId identificador de la beguda
+	 */
+	private void forgetImage(int drinkId) {
+		thumbnails.invalidate(THUMBNAIL_NAMESPACE, drinkId);
+		drinksWithoutImage.remove(drinkId);
+	}
+
+	/**
+	 * Demana la imatge d'una beguda. Les peticions fetes durant el mateix pols de
+	 * JavaFX s'agrupen i es resolen amb una sola consulta.
+	 *
+	 * @param drinkId  identificador de la beguda
+	 * @param callback acció a executar amb els bytes de la imatge, o amb null si
+	 *                 no en té
+	 */
+	private void requestImage(int drinkId, Consumer<byte[]> callback) {
+		if (pendingImages.isEmpty()) {
+			Platform.runLater(this::loadPendingImages);
+		}
+		pendingImages.computeIfAbsent(drinkId, id -> new ArrayList<>()).add(callback);
+	}
+
+	/**
+	 * Carrega en lot i en segon pla les imatges pendents i les lliura a les
+	 * cel·les que les han demanat.
+	 */
+	private void loadPendingImages() {
+		Map<Integer, List<Consumer<byte[]>>> requests = new HashMap<>(pendingImages);
+		pendingImages.clear();
+
+		dataService.submit("drinks.getImages", conn -> new DrinkDAO(conn).getDrinkImages(requests.keySet()))
+				.thenAccept(images -> requests.forEach((drinkId, callbacks) -> {
+					byte[] bytes = images.get(drinkId);
+					byte[] result = bytes != null && bytes.length > 0 ? bytes : null;
+					callbacks.forEach(callback -> callback.accept(result));
+				})).exceptionally(this::showError);
+	}
+
+	/**
+	 * Torna a carregar les dades quan la vista es torna a mostrar.
+	 */
+	@Override
+	public void refresh() {
+		loadDrinks();
+	}
+
+	/**
+	 * Carrega la llista de begudes de la base de dades en segon pla i l'estableix
+	 * a la taula.
 	 */
 	private void loadDrinks() {
-		List<Drink> drinks = drinkDAO.getAllDrinks();
-		drinkList = FXCollections.observableArrayList(drinks);
-		drinkTable.setItems(drinkList);
+		dataService.submit("drinks.getAll", conn -> new DrinkDAO(conn).getAllDrinks()).thenAccept(drinks -> {
+			drinksWithoutImage.clear();
+			drinkList = FXCollections.observableArrayList(drinks);
+			drinkTable.setItems(drinkList);
+		}).exceptionally(this::showError);
+	}
+
+	/**
+	 * Mostra a l'etiqueta d'estat l'error d'una operació de base de dades. Els
+	 * errors de validació ({@link IllegalStateException}) es mostren amb el seu
+	 * missatge; la resta, amb un missatge genèric.
+	 *
+	 * @param e error rebut de l'operació
+	 * @return sempre null, per poder-se usar a {@code exceptionally}
+	 */
+	private Void showError(Throwable e) {
+		Throwable cause = DataService.unwrap(e);
+		if (cause instanceof IllegalStateException) {
+			statusLabel.setText(cause.getMessage());
+		} else {
+			cause.printStackTrace();
+			statusLabel.setText("Error en la connexió a la base de dades.");
+		}
+		return null;
+	}
+
+	/**
+	 * Obté (o crea) el tipus i la marca pel seu nom i els assigna a la beguda.
+	 * S'executa dins d'una operació del {@link DataService}.
+	 *
+	 * @throws IllegalStateException si no es pot crear o recuperar el tipus o la
+	 *                               marca
+	 */
+	private static void resolveTypeAndBrand(Connection conn, Drink drink, String typeName,
+			String brandName) {
+		int typeId = new DrinkTypeDAO(conn).getOrInsert(typeName, null);
+		if (typeId == -1) {
+			throw new IllegalStateException("Error al crear o recuperar el tipus.");
+		}
+
+		int brandId = new BrandDAO(conn).getIdOrInsert(brandName, null);
+		if (brandId == -1) {
+			throw new IllegalStateException("Error al crear o recuperar la marca.");
+		}
+
+		drink.setTypeId(typeId);
+		drink.setBrandId(brandId);
 	}
 
 	/**
@@ -205,10 +348,10 @@ public class DrinkController {
 			descriptionField.setText(drink.getDescription());
 			volumeField.setText(String.valueOf(drink.getVolume()));
 
-			String typeName = typeNamesMap.get(drink.getTypeId());
+			String typeName = referenceData.getTypeName(drink.getTypeId());
 			typeField.setText(typeName != null ? typeName : "");
 
-			String brandName = brandNamesMap.get(drink.getBrandId());
+			String brandName = referenceData.getBrandName(drink.getBrandId());
 			brandField.setText(brandName != null ? brandName : "");
 
 			countryField.setText(drink.getCountryCode());
@@ -220,112 +363,90 @@ public class DrinkController {
 	/**
 	 * Gestiona l'acció d'afegir una nova beguda.
 	 * <p>
-	 * Recull les dades del formulari, crea o recupera els identificadors de tipus i
-	 * marca, i insereix la beguda a la base de dades. Actualitza la taula i els
-	 * mapes corresponents després d'afegir la beguda.
-	 *
-	 * @throws SQLException si hi ha un error a la base de dades
+	 * Recull les dades del formulari i, en segon pla, crea o recupera els
+	 * identificadors de tipus i marca i insereix la beguda a la base de dades.
+	 * Actualitza la taula després d'afegir la beguda.
 	 */
 	@FXML
-	private void handleAddDrink() throws SQLException {
-		try {
-			String name = nameField.getText().trim();
-			String typeName = typeField.getText().trim();
-			String brandName = brandField.getText().trim();
-
-			if (name.isEmpty() || typeName.isEmpty() || brandName.isEmpty()) {
-				statusLabel.setText("El nom, tipus i marca són obligatoris.");
-				return;
-			}
-
-			Integer typeId = typeDAO.getOrInsert(typeName, null);
-			if (typeId == -1) {
-				statusLabel.setText("Error al crear o recuperar el tipus.");
-				return;
-			}
+	private void handleAddDrink() {
+		String name = nameField.getText().trim();
+		String typeName = typeField.getText().trim();
+		String brandName = brandField.getText().trim();
 
-			Integer brandId = brandDAO.getIdOrInsert(brandName, null);
-			if (brandId == -1) {
-				statusLabel.setText("Error al crear o recuperar la marca.");
-				return;
-			}
+		if (name.isEmpty() || typeName.isEmpty() || brandName.isEmpty()) {
+			statusLabel.setText("El nom, tipus i marca són obligatoris.");
+			return;
+		}
 
-			Drink drink = new Drink();
+		Drink drink = new Drink();
+		try {
 			drink.setName(name);
-			drink.setTypeId(typeId);
-			drink.setBrandId(brandId);
 			drink.setAlcoholContent(Double.parseDouble(alcoholField.getText()));
 			drink.setPrice(Double.parseDouble(priceField.getText()));
 			drink.setDescription(descriptionField.getText());
 			drink.setVolume(Double.parseDouble(volumeField.getText()));
 			drink.setCountryCode(countryField.getText());
+		} catch (NumberFormatException e) {
+			statusLabel.setText("Comprova els valors numèrics.");
+			return;
+		}
 
-			drinkDAO.insertDrink(drink);
+		dataService.submit("drinks.insert", conn -> {
+			resolveTypeAndBrand(conn, drink, typeName, brandName);
+			if (!new DrinkDAO(conn).insertDrink(drink)) {
+				throw new IllegalStateException("Error en afegir la beguda.");
+			}
+			return drink;
+		}).thenAccept(saved -> {
+			// Un id esborrat es pot reutilitzar: no s'ha de mostrar la imatge antiga
+			forgetImage(saved.getDrinkId());
 			statusLabel.setText("Beguda afegida correctament.");
-
-			// Actualitzar mapes i llista
-			typeNamesMap.putIfAbsent(typeId, typeName);
-			brandNamesMap.putIfAbsent(brandId, brandName);
-			typeIdsMap.putIfAbsent(typeName, typeId);
-			brandIdsMap.putIfAbsent(brandName, brandId);
-
 			loadDrinks();
 			clearForm();
-
-		} catch (NumberFormatException e) {
-			statusLabel.setText("Comprova els valors numèrics.");
-		}
+		}).exceptionally(this::showError);
 	}
 
 	/**
 	 * Gestiona l'acció d'actualitzar la beguda seleccionada amb les dades del
 	 * formulari.
 	 * <p>
-	 * Actualitza la base de dades i la vista després de l'operació.
-	 *
-	 * @throws SQLException si hi ha un error a la base de dades
+	 * Actualitza la base de dades en segon pla i la vista després de l'operació.
 	 */
 	@FXML
-	private void handleUpdateDrink() throws SQLException {
+	private void handleUpdateDrink() {
 		Drink selected = drinkTable.getSelectionModel().getSelectedItem();
 		if (selected == null) {
 			statusLabel.setText("Selecciona una beguda per actualitzar.");
 			return;
 		}
 
-		try {
-			String typeName = typeField.getText().trim();
-			String brandName = brandField.getText().trim();
-
-			Integer typeId = typeDAO.getOrInsert(typeName, null);
-			if (typeId == -1) {
-				statusLabel.setText("Error al crear o recuperar el tipus.");
-				return;
-			}
+		String typeName = typeField.getText().trim();
+		String brandName = brandField.getText().trim();
 
-			Integer brandId = brandDAO.getIdOrInsert(brandName, null);
-			if (brandId == -1) {
-				statusLabel.setText("Error al crear o recuperar la marca.");
-				return;
-			}
-
-			selected.setName(nameField.getText());
-			selected.setAlcoholContent(Double.parseDouble(alcoholField.getText()));
-			selected.setPrice(Double.parseDouble(priceField.getText()));
-			selected.setDescription(descriptionField.getText());
-			selected.setVolume(Double.parseDouble(volumeField.getText()));
-			selected.setTypeId(typeId);
-			selected.setBrandId(brandId);
-			selected.setCountryCode(countryField.getText());
+		// Es treballa sobre una còpia perquè la fila no canviï si l'operació falla
+		Drink drink = new Drink();
+		try {
+			drink.setDrinkId(selected.getDrinkId());
+			drink.setName(nameField.getText());
+			drink.setAlcoholContent(Double.parseDouble(alcoholField.getText()));
+			drink.setPrice(Double.parseDouble(priceField.getText()));
+			drink.setDescription(descriptionField.getText());
+			drink.setVolume(Double.parseDouble(volumeField.getText()));
+			drink.setCountryCode(countryField.getText());
+		} catch (NumberFormatException e) {
+			statusLabel.setText("Comprova els valors numèrics.");
+			return;
+		}
 
-			drinkDAO.updateDrink(selected);
+		dataService.submit("drinks.update", conn -> {
+			resolveTypeAndBrand(conn, drink, typeName, brandName);
+			return new DrinkDAO(conn).updateDrink(drink);
+		}).thenAccept(updated -> {
+			forgetImage(drink.getDrinkId());
 			statusLabel.setText("Beguda actualitzada correctament.");
 			loadDrinks();
 			clearForm();
-
-		} catch (NumberFormatException e) {
-			statusLabel.setText("Comprova els valors numèrics.");
-		}
+		}).exceptionally(this::showError);
 	}
 
 	/**
@@ -333,11 +454,9 @@ public class DrinkController {
 	 * <p>
 	 * Mostra un diàleg de confirmació abans d'eliminar i actualitza la taula
 	 * després.
-	 *
-	 * @throws SQLException si hi ha un error a la base de dades
 	 */
 	@FXML
-	private void handleDeleteDrink() throws SQLException {
+	private void handleDeleteDrink() {
 		Drink selected = drinkTable.getSelectionModel().getSelectedItem();
 		if (selected == null) {
 			statusLabel.setText("Selecciona una beguda per eliminar.");
@@ -350,11 +469,58 @@ public class DrinkController {
 		alert.setContentText("Beguda: " + selected.getName());
 
 		if (alert.showAndWait().filter(response -> response == ButtonType.OK).isPresent()) {
-			drinkDAO.deleteDrink(selected.getDrinkId());
-			statusLabel.setText("Beguda eliminada correctament.");
-			loadDrinks();
-			clearForm();
+			int drinkId = selected.getDrinkId();
+			dataService.submit("drinks.delete", conn -> new DrinkDAO(conn).deleteDrink(drinkId)).thenAccept(deleted -> {
+				forgetImage(drinkId);
+				statusLabel.setText("Beguda eliminada correctament.");
+				loadDrinks();
+				clearForm();
+			}).exceptionally(this::showError);
+		}
+	}
+
+	/**
+	 * Gestiona l'acció d'importar un catàleg de begudes des d'un fitxer CSV o
+	 * JSON.
+	 * <p>
+	 * La importació s'executa en segon pla i mostra el progrés a l'etiqueta
+	 * d'estat. Si falla, tornar a importar el mateix fitxer continua des de
+	 * l'últim lot desat.
+	 */
+	@FXML
+	private void handleImportCatalog() {
+		FileChooser chooser = new FileChooser();
+		chooser.setTitle("Importar catàleg");
+		chooser.getExtensionFilters().addAll(
+				new FileChooser.ExtensionFilter("Catàlegs (CSV, JSON)", "*.csv", "*.json", "*.jsonl", "*.ndjson"),
+				new FileChooser.ExtensionFilter("Tots els fitxers", "*.*"));
+		File file = chooser.showOpenDialog(drinkTable.getScene().getWindow());
+		if (file == null) {
+			return;
 		}
+
+		importButton.setDisable(true);
+		statusLabel.setText("Important " + file.getName() + "...");
+		dataService.submit("drinks.importCatalog", IMPORT_TIMEOUT_MS, conn -> {
+			CatalogImporter importer = new CatalogImporter(conn);
+			importer.setListener(progress -> Platform.runLater(() -> statusLabel.setText(String.format(Locale.ROOT,
+					"Important... %.0f%% (%d begudes, %d descartades, %.0f/s)", progress.fraction() * 100,
+					progress.imported(), progress.rejected(), progress.drinksPerSecond()))));
+			return importer.importFile(file.toPath());
+		}).thenAccept(result -> {
+			if (result.imported() == 0 && result.rejected() == 0 && result.resumedFrom() > 0) {
+				statusLabel.setText("Aquest fitxer ja s'havia importat.");
+			} else {
+				statusLabel.setText(String.format(Locale.ROOT, "Importades %d begudes (%d descartades) en %.1f s.",
+						result.imported(), result.rejected(), result.elapsedMillis() / 1000.0));
+				result.errors().forEach(System.err::println);
+			}
+			loadDrinks();
+		}).exceptionally(e -> {
+			DataService.unwrap(e).printStackTrace();
+			statusLabel.setText("Error en la importació. Torna-la a executar per continuar-la.");
+			return null;
+		}).whenComplete((v, e) -> importButton.setDisable(false));
 	}
 
 	/**
@@ -2,17 +2,14 @@ package com.projecteprogramacio.controller;
 
 import com.projecteprogramacio.dao.DrinkTypeDAO;
 import com.projecteprogramacio.model.DrinkType;
-import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.DataService;
+import com.projecteprogramacio.util.ThumbnailCache;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
-import java.sql.Connection;
-import java.util.List;
-
 /**
  * Controlador per a la vista de tipus de begudes. Gestiona la taula amb els
  * tipus de beguda, carrega dades des de la base de dades i mostra la imatge
@@ -20,7 +17,7 @@ import java.util.List;
  * 
  * @author Josuè González
  */
-public class DrinkTypeController {
+public class DrinkTypeController implements RefreshableView {
 
 	@FXML
 	private TableView<DrinkType> drinkTypeTable;
@@ -37,25 +34,20 @@ public class DrinkTypeController {
 	@FXML
 	private Label statusLabel;
 
+	/** Mida (en píxels) de la vista prèvia de la imatge del tipus. */
+	private static final int PREVIEW_SIZE = 200;
+	private static final String THUMBNAIL_NAMESPACE = "drinkType";
+
 	private ObservableList<DrinkType> drinkTypeList;
-	private DrinkTypeDAO drinkTypeDAO;
+	private final DataService dataService = DataService.getInstance();
 
 	/**
-	 * Inicialitza el controlador. Estableix la connexió amb la base de dades,
-	 * configura les columnes de la taula, carrega els tipus de beguda i configura
-	 * el comportament per mostrar la imatge quan un tipus de beguda és seleccionat.
+	 * Inicialitza el controlador. Configura les columnes de la taula, carrega els
+	 * tipus de beguda en segon pla i configura el comportament per mostrar la
+	 * imatge quan un tipus de beguda és seleccionat.
 	 */
 	@FXML
 	public void initialize() {
-		try {
-			Connection conn = Database.getConnection();
-			drinkTypeDAO = new DrinkTypeDAO(conn);
-		} catch (Exception e) {
-			statusLabel.setText("Error en la connexió a la base de dades");
-			e.printStackTrace();
-			return;
-		}
-
 		// Configurar columnes
 		colId.setCellValueFactory(
 				cellData -> new javafx.beans.property.SimpleIntegerProperty(cellData.getValue().getTypeId())
@@ -66,26 +58,46 @@ public class DrinkTypeController {
 		// Carregar dades
 		loadDrinkTypes();
 
-		// Mostrar imatge quan se selecciona un tipus
+		// Mostrar imatge quan se selecciona un tipus; es descodifica en segon pla a
+		// la mida de la vista prèvia i es reutilitza des de la memòria cau
 		drinkTypeTable.getSelectionModel().selectedItemProperty().addListener((obs, oldSel, newSel) -> {
-			if (newSel != null && newSel.getImage() != null) {
-				Image img = new Image(new java.io.ByteArrayInputStream(newSel.getImage()));
-				imageView.setImage(img);
+			if (newSel != null && newSel.getImage() != null && newSel.getImage().length > 0) {
+				imageView.setImage(ThumbnailCache.PLACEHOLDER);
+				ThumbnailCache.getInstance().getOrDecode(THUMBNAIL_NAMESPACE, newSel.getTypeId(), newSel.getImage(),
+						PREVIEW_SIZE, PREVIEW_SIZE, img -> {
+							if (newSel == drinkTypeTable.getSelectionModel().getSelectedItem()) {
+								imageView.setImage(img);
+							}
+						});
 			} else {
 				imageView.setImage(null);
 			}
 		});
 	}
 
+	/**
+	 * Torna a carregar les dades quan la vista es torna a mostrar.
+	 */
+	@Override
+	public void refresh() {
+		loadDrinkTypes();
+	}
+
 	/**
 	 * Carrega tots els tipus de beguda des de la base de dades i actualitza la
 	 * taula. També actualitza l'etiqueta d'estat amb el nombre de registres
 	 * carregats.
 	 */
 	private void loadDrinkTypes() {
-		List<DrinkType> list = drinkTypeDAO.getAllDrinkTypes();
-		drinkTypeList = FXCollections.observableArrayList(list);
-		drinkTypeTable.setItems(drinkTypeList);
-		statusLabel.setText("Tipus de beguda carregats: " + list.size());
+		statusLabel.setText("Carregant tipus de beguda...");
+		dataService.submit("drinkTypes.getAll", conn -> new DrinkTypeDAO(conn).getAllDrinkTypes()).thenAccept(list -> {
+			drinkTypeList = FXCollections.observableArrayList(list);
+			drinkTypeTable.setItems(drinkTypeList);
+			statusLabel.setText("Tipus de beguda carregats: " + list.size());
+		}).exceptionally(e -> {
+			statusLabel.setText("Error en la connexió a la base de dades");
+			DataService.unwrap(e).printStackTrace();
+			return null;
+		});
 	}
 }
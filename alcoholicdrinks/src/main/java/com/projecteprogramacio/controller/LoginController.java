@@ -1,14 +1,14 @@
 package com.projecteprogramacio.controller;
 
 import com.projecteprogramacio.model.User;
-import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.DataService;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 
@@ -26,6 +26,9 @@ public class LoginController {
 	@FXML
 	private PasswordField passwordField;
 
+	@FXML
+	private Button loginButton;
+
 	@FXML
 	private Label statusLabel;
 
@@ -42,8 +45,9 @@ public class LoginController {
 
 	/**
 	 * Gestiona l'acció de login quan l'usuari prem el botó o fa enter. Comprova que
-	 * els camps no estiguin buits, valida l'usuari i contrasenya, i si són
-	 * correctes, passa l'usuari a l'aplicació principal i tanca la finestra.
+	 * els camps no estiguin buits, valida l'usuari i contrasenya (la consulta es
+	 * fa en segon pla), i si són correctes, passa l'usuari a l'aplicació principal
+	 * i tanca la finestra.
 	 */
 	@FXML
 	private void handleLogin() {
@@ -59,44 +63,65 @@ public class LoginController {
 			return;
 		}
 
-		try (Connection conn = Database.getConnection()) {
-			String sql = "SELECT user_id, password, role FROM users WHERE username = ?";
-			PreparedStatement stmt = conn.prepareStatement(sql);
-			stmt.setString(1, username);
-			ResultSet rs = stmt.executeQuery();
-
-			if (rs.next()) {
-				String storedPassword = rs.getString("password");
-				String role = rs.getString("role");
-
-				// Compara la contrasenya introduïda amb la de la BBDD
-				if (!password.equals(storedPassword)) {
-					statusLabel.setText("Contrasenya incorrecta.");
-					return;
+		// Evita obrir el menú principal dues vegades mentre es valida
+		setFormDisabled(true);
+		String sql = "SELECT user_id, password, role FROM users WHERE username = ?";
+		DataService.getInstance().submit("users.login", conn -> {
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, username);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (!rs.next()) {
+						return null;
+					}
+					User stored = new User();
+					stored.setUserId(rs.getInt("user_id"));
+					stored.setUsername(username);
+					stored.setPassword(rs.getString("password"));
+					stored.setRole(rs.getString("role"));
+					return stored;
 				}
+			}
+		}).thenAccept(stored -> {
+			if (stored == null) {
+				statusLabel.setText("Usuari no trobat.");
+				return;
+			}
 
-				// Login correcte
-				User user = new User();
-				user.setUserId(rs.getInt("user_id"));
-				user.setUsername(username);
-				user.setRole(role);
+			// Compara la contrasenya introduïda amb la de la BBDD
+			if (!password.equals(stored.getPassword())) {
+				statusLabel.setText("Contrasenya incorrecta.");
+				return;
+			}
 
-				statusLabel.setText("Benvingut, " + username + " (" + role + ")");
+			// Login correcte
+			User user = new User();
+			user.setUserId(stored.getUserId());
+			user.setUsername(username);
+			user.setRole(stored.getRole());
 
-				// Tanquem la finestra de login
-				Stage stage = (Stage) usernameField.getScene().getWindow();
-				stage.close();
+			statusLabel.setText("Benvingut, " + username + " (" + user.getRole() + ")");
 
-				// Passem l'usuari loguejat a l'app principal
-				mainApp.setLoggedUser(user);
+			// Tanquem la finestra de login
+			Stage stage = (Stage) usernameField.getScene().getWindow();
+			stage.close();
 
-			} else {
-				statusLabel.setText("Usuari no trobat.");
-			}
-
-		} catch (Exception e) {
-			e.printStackTrace();
+			// Passem l'usuari loguejat a l'app principal
+			mainApp.setLoggedUser(user);
+		}).exceptionally(e -> {
+			DataService.unwrap(e).printStackTrace();
 			statusLabel.setText("Error en la connexió a la BBDD.");
-		}
+			return null;
+		}).whenComplete((v, e) -> setFormDisabled(false));
+	}
+
+	/**
+	 * Activa o desactiva el formulari de login.
+	 * 
+	 * @param disable true per deshabilitar-lo mentre es valida l'usuari
+	 */
+	private void setFormDisabled(boolean disable) {
+		usernameField.setDisable(disable);
+		passwordField.setDisable(disable);
+		loginButton.setDisable(disable);
 	}
 }
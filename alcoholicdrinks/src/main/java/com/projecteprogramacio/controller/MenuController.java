@@ -1,7 +1,6 @@
 package com.projecteprogramacio.controller;
 
 import com.projecteprogramacio.model.User;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
@@ -9,6 +8,7 @@ import javafx.scene.control.MenuItem;
 import javafx.scene.layout.BorderPane;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Controlador per gestionar el menú principal de l'aplicació segons el rol de
@@ -18,9 +18,16 @@ import java.io.IOException;
  */
 public class MenuController {
 
+	/** Vistes que es precarreguen després del login, per ordre. */
+	private static final List<String> PREWARM_VIEWS = List.of("/view/DrinkView.fxml", "/view/TicketView.fxml",
+			"/view/UserView.fxml", "/view/TicketCreation.fxml");
+
 	private final User loggedUser;
 	private final BorderPane rootLayout;
 
+	/** Vistes ja carregades de la sessió, reutilitzades entre navegacions. */
+	private final ViewRegistry views = new ViewRegistry();
+
 	/**
 	 * Crea un nou MenuController amb l'usuari actual i el BorderPane arrel on es
 	 * mostraran les vistes.
@@ -78,17 +85,48 @@ public class MenuController {
 		menuView.getItems().add(menuCreateTicket);
 
 		menuBar.getMenus().add(menuView);
+
+		Menu menuReports = new Menu("Informes");
+
+		MenuItem menuSales = new MenuItem("Vendes");
+		menuSales.setOnAction(e -> loadView("/view/SalesReportView.fxml"));
+		menuReports.getItems().add(menuSales);
+
+		menuBar.getMenus().add(menuReports);
+
+		Menu menuTools = new Menu("Eines");
+
+		MenuItem menuDiagnostics = new MenuItem("Diagnòstic BD");
+		menuDiagnostics.setOnAction(e -> loadView("/view/DiagnosticsView.fxml"));
+		menuTools.getItems().add(menuDiagnostics);
+
+		menuBar.getMenus().add(menuTools);
 		return menuBar;
 	}
 
 	/**
-	 * Carrega la vista especificada i la posa al centre del BorderPane principal.
+	 * Carrega en segon pla les vistes del menú que encara no s'han obert, perquè
+	 * el primer clic sigui immediat. Només ho fa per als administradors, que són
+	 * els que tenen menú.
+	 */
+	public void prewarmViews() {
+		if ("admin".equalsIgnoreCase(loggedUser.getRole())) {
+			views.prewarm(PREWARM_VIEWS);
+		}
+	}
+
+	/**
+	 * Mostra la vista especificada al centre del BorderPane principal.
+	 * <p>
+	 * La primera vegada es carrega; les següents es reutilitza la mateixa vista i
+	 * se'n refresquen les dades (vegeu {@link ViewRegistry}).
+	 * </p>
 	 * 
 	 * @param fxmlPath la ruta del fitxer FXML de la vista a carregar
 	 */
-	private void loadView(String fxmlPath) {
+	public void loadView(String fxmlPath) {
 		try {
-			Parent view = FXMLLoader.load(getClass().getResource(fxmlPath));
+			Parent view = views.show(fxmlPath);
 			rootLayout.setCenter(view);
 		} catch (IOException e) {
 			e.printStackTrace();
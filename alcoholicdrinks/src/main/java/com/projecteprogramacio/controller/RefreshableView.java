@@ -0,0 +1,21 @@
+package com.projecteprogramacio.controller;
+
+/**
+ * Controlador d'una vista que el {@link ViewRegistry} reutilitza entre
+ * navegacions.
+ * <p>
+ * La vista es carrega una sola vegada; cada vegada que es torna a mostrar es
+ * crida {@link #refresh()} perquè actualitzi les dades que poden haver canviat
+ * des d'una altra vista.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public interface RefreshableView {
+
+	/**
+	 * Es crida al fil de JavaFX quan la vista ja carregada es torna a mostrar. Ha
+	 * de tornar ràpid: les consultes s'han de fer en segon pla.
+	 */
+	void refresh();
+}
@@ -0,0 +1,157 @@
+package com.projecteprogramacio.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+import com.projecteprogramacio.dao.SalesRollup;
+import com.projecteprogramacio.util.DataService;
+
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.fxml.FXML;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+
+/**
+ * Controlador de l'informe de vendes.
+ * <p>
+ * Respon preguntes de l'estil "import per mes i marca" o "unitats per hora i
+ * beguda d'aquesta setmana" a partir dels resums de {@link SalesRollup}, sense
+ * recórrer les línies de tiquet. També permet reconstruir els resums des de
+ * zero.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class SalesReportController implements RefreshableView {
+
+	/** Temps màxim de la reconstrucció, que recorre totes les línies. */
+	private static final long REBUILD_TIMEOUT_MS = 10 * 60_000;
+
+	@FXML
+	private DatePicker fromPicker, toPicker;
+	@FXML
+	private ComboBox<SalesRollup.Period> periodCombo;
+	@FXML
+	private ComboBox<SalesRollup.Dimension> dimensionCombo;
+	@FXML
+	private TextField statusField;
+	@FXML
+	private Button queryButton, rebuildButton;
+
+	@FXML
+	private TableView<SalesRollup.Row> reportTable;
+	@FXML
+	private TableColumn<SalesRollup.Row, String> colPeriod, colName, colRevenue;
+	@FXML
+	private TableColumn<SalesRollup.Row, Long> colLines, colQuantity;
+
+	@FXML
+	private Label summaryLabel, statusLabel;
+
+	private final DataService dataService = DataService.getInstance();
+
+	/**
+	 * Inicialitza les columnes i els desplegables, per defecte vendes per dia del
+	 * mes en curs, i fa la primera consulta.
+	 */
+	@FXML
+	public void initialize() {
+		colPeriod.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().period()));
+		colName.setCellValueFactory(c -> new SimpleStringProperty(
+				c.getValue().name() != null ? c.getValue().name() : c.getValue().key()));
+		colLines.setCellValueFactory(c -> new SimpleObjectProperty<>(c.getValue().lines()));
+		colQuantity.setCellValueFactory(c -> new SimpleObjectProperty<>(c.getValue().quantity()));
+		colRevenue.setCellValueFactory(
+				c -> new SimpleStringProperty(String.format(Locale.ROOT, "%.2f", c.getValue().revenue())));
+
+		periodCombo.setItems(FXCollections.observableArrayList(SalesRollup.Period.values()));
+		periodCombo.setValue(SalesRollup.Period.DAY);
+		dimensionCombo.setItems(FXCollections.observableArrayList(SalesRollup.Dimension.values()));
+		dimensionCombo.setValue(SalesRollup.Dimension.NONE);
+
+		LocalDate today = LocalDate.now();
+		fromPicker.setValue(today.withDayOfMonth(1));
+		toPicker.setValue(today);
+
+		handleQuery();
+	}
+
+	/**
+	 * Torna a fer la consulta actual, per incloure les vendes noves.
+	 */
+	@Override
+	public void refresh() {
+		handleQuery();
+	}
+
+	/**
+	 * Consulta les vendes entre les dates triades (ambdues incloses), agrupades
+	 * pel període i la dimensió triats.
+	 */
+	@FXML
+	private void handleQuery() {
+		LocalDate from = fromPicker.getValue();
+		LocalDate to = toPicker.getValue();
+		if (from != null && to != null && to.isBefore(from)) {
+			statusLabel.setText("La data final no pot ser anterior a la inicial.");
+			return;
+		}
+
+		String status = statusField.getText() == null ? "" : statusField.getText().trim();
+		SalesRollup.Query query = new SalesRollup.Query(from != null ? from.atStartOfDay() : null,
+				to != null ? to.plusDays(1).atStartOfDay() : null, periodCombo.getValue(), dimensionCombo.getValue(),
+				status.isEmpty() ? null : status);
+
+		queryButton.setDisable(true);
+		statusLabel.setText("");
+		long start = System.nanoTime();
+		dataService.submit("sales.query", conn -> new SalesRollup(conn).query(query)).thenAccept(rows -> {
+			reportTable.setItems(FXCollections.observableArrayList(rows));
+			showSummary(rows, (System.nanoTime() - start) / 1_000_000.0);
+		}).exceptionally(e -> {
+			DataService.unwrap(e).printStackTrace();
+			statusLabel.setText("Error en consultar les vendes.");
+			return null;
+		}).whenComplete((v, e) -> queryButton.setDisable(false));
+	}
+
+	/**
+	 * Torna a calcular els resums a partir de totes les línies de tiquet i repeteix
+	 * la consulta.
+	 */
+	@FXML
+	private void handleRebuild() {
+		rebuildButton.setDisable(true);
+		statusLabel.setText("Reconstruint els resums de vendes...");
+		long start = System.nanoTime();
+		dataService.submit("sales.rebuild", REBUILD_TIMEOUT_MS, conn -> new SalesRollup(conn).rebuild())
+				.thenAccept(rows -> {
+					statusLabel.setText(String.format(Locale.ROOT, "Resums reconstruïts: %d files per hora en %.1f s.",
+							rows, (System.nanoTime() - start) / 1e9));
+					handleQuery();
+				}).exceptionally(e -> {
+					DataService.unwrap(e).printStackTrace();
+					statusLabel.setText("Error en reconstruir els resums.");
+					return null;
+				}).whenComplete((v, e) -> rebuildButton.setDisable(false));
+	}
+
+	private void showSummary(List<SalesRollup.Row> rows, double millis) {
+		long quantity = 0;
+		long revenueCents = 0;
+		for (SalesRollup.Row row : rows) {
+			quantity += row.quantity();
+			revenueCents += row.revenueCents();
+		}
+		summaryLabel.setText(String.format(Locale.ROOT, "Total: %.2f € en %d unitats (%d files, %.1f ms)",
+				revenueCents / 100.0, quantity, rows.size(), millis));
+	}
+}
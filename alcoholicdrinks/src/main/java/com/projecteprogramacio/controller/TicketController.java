@@ -1,19 +1,24 @@
 package com.projecteprogramacio.controller;
 
+import java.io.File;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 import com.projecteprogramacio.dao.DrinkDAO;
 import com.projecteprogramacio.dao.TicketDAO;
+import com.projecteprogramacio.dao.TicketFilter;
 import com.projecteprogramacio.dao.TicketLineDAO;
 import com.projecteprogramacio.model.Drink;
 import com.projecteprogramacio.model.Ticket;
 import com.projecteprogramacio.model.TicketLine;
 import com.projecteprogramacio.model.User;
-import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.DataService;
+import com.projecteprogramacio.util.PagedObservableList;
+import com.projecteprogramacio.util.TicketExporter;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -23,12 +28,14 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 /**
@@ -41,7 +48,7 @@ import javafx.stage.Stage;
  * 
  * @author
  */
-public class TicketController {
+public class TicketController implements RefreshableView {
 
 	@FXML
 	private TableView<Ticket> ticketTable;
@@ -61,6 +68,13 @@ public class TicketController {
 	@FXML
 	private Button goToCreateTicketButton;
 
+	@FXML
+	private DatePicker exportFromPicker, exportToPicker;
+	@FXML
+	private TextField exportStatusField;
+	@FXML
+	private Button exportButton;
+
 	@FXML
 	private TableView<TicketLine> ticketLinesTable;
 	@FXML
@@ -75,11 +89,22 @@ public class TicketController {
 	@FXML
 	private Button addLineButton, deleteLineButton;
 
-	private ObservableList<Ticket> ticketList;
+	/** Tiquets per pàgina i pàgines màximes en memòria a la taula principal. */
+	private static final int PAGE_SIZE = 100;
+	private static final int MAX_CACHED_PAGES = 5;
+
+	/** Temps màxim d'una exportació; les grans poden trigar minuts. */
+	private static final long EXPORT_TIMEOUT_MS = 60 * 60 * 1000;
+
+	/** Format de data i hora de les columnes {@code created_at}. */
+	private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	private PagedObservableList<Ticket, TicketDAO.PageKey> ticketList;
+	private final TicketFilter ticketFilter = new TicketFilter();
 	private ObservableList<TicketLine> ticketLineList;
-	private TicketDAO ticketDAO;
-	private TicketLineDAO ticketLineDAO;
-	private DrinkDAO drinkDAO;
+
+	/** Servei que executa la resta d'operacions fora del fil de JavaFX. */
+	private final DataService dataService = DataService.getInstance();
 
 	private User loggedUser; // Usuari loguejat
 
@@ -93,23 +118,11 @@ public class TicketController {
 	}
 
 	/**
-	 * Inicialitza el controlador. Estableix la connexió amb la base de dades,
-	 * configura les taules i combobox, i carrega les dades inicials.
+	 * Inicialitza el controlador. Configura les taules i combobox, i carrega les
+	 * dades inicials.
 	 */
 	@FXML
 	public void initialize() {
-		try {
-			Connection conn = Database.getConnection();
-			ticketDAO = new TicketDAO(conn);
-			ticketLineDAO = new TicketLineDAO(conn);
-			drinkDAO = new DrinkDAO(conn);
-		} catch (Exception e) {
-			statusLabel.setText("Error en la connexió a la base de dades.");
-			e.printStackTrace();
-			disableAllButtons();
-			return;
-		}
-
 		setupTicketTable();
 		setupLineTable();
 		setupDrinkComboBox();
@@ -134,18 +147,25 @@ public class TicketController {
 	 * Configura les columnes de la taula de tiquets amb els valors corresponents.
 	 */
 	private void setupTicketTable() {
-		colTicketId.setCellValueFactory(
-				cell -> new javafx.beans.property.SimpleIntegerProperty(cell.getValue().getTicketId()).asObject());
-		colUserId.setCellValueFactory(
-				cell -> new javafx.beans.property.SimpleIntegerProperty(cell.getValue().getUserId()).asObject());
-		colTotal.setCellValueFactory(
-				cell -> new javafx.beans.property.SimpleDoubleProperty(cell.getValue().getTotal()).asObject());
-		colStatus.setCellValueFactory(
-				cell -> new javafx.beans.property.SimpleStringProperty(cell.getValue().getStatus()));
-		colCreatedAt.setCellValueFactory(
-				cell -> new javafx.beans.property.SimpleStringProperty(cell.getValue().getCreatedAt()));
-		colUpdatedAt.setCellValueFactory(
-				cell -> new javafx.beans.property.SimpleStringProperty(cell.getValue().getUpdatedAt()));
+		// Una fila pot quedar buida si la llista s'escurça mentre es pinta
+		colTicketId.setCellValueFactory(cell -> cell.getValue() == null ? null
+				: new javafx.beans.property.SimpleIntegerProperty(cell.getValue().getTicketId()).asObject());
+		colUserId.setCellValueFactory(cell -> cell.getValue() == null ? null
+				: new javafx.beans.property.SimpleIntegerProperty(cell.getValue().getUserId()).asObject());
+		colTotal.setCellValueFactory(cell -> cell.getValue() == null ? null
+				: new javafx.beans.property.SimpleDoubleProperty(cell.getValue().getTotal()).asObject());
+		colStatus.setCellValueFactory(cell -> cell.getValue() == null ? null
+				: new javafx.beans.property.SimpleStringProperty(cell.getValue().getStatus()));
+		colCreatedAt.setCellValueFactory(cell -> cell.getValue() == null ? null
+				: new javafx.beans.property.SimpleStringProperty(cell.getValue().getCreatedAt()));
+		colUpdatedAt.setCellValueFactory(cell -> cell.getValue() == null ? null
+				: new javafx.beans.property.SimpleStringProperty(cell.getValue().getUpdatedAt()));
+
+		// L'ordre és el de la paginació: ordenar a la taula copiaria tota la llista
+		// virtual, i per tant tot l'historial, al fil de JavaFX
+		for (TableColumn<Ticket, ?> col : ticketTable.getColumns()) {
+			col.setSortable(false);
+		}
 	}
 
 	/**
@@ -160,19 +180,16 @@ public class TicketController {
 		});
 		colQuantity.setCellValueFactory(
 				cell -> new javafx.beans.property.SimpleIntegerProperty(cell.getValue().getQuantity()).asObject());
-		colPrice.setCellValueFactory(cell -> {
-			Drink drink = cell.getValue().getDrink();
-			return new javafx.beans.property.SimpleDoubleProperty(drink != null ? drink.getPrice() : 0.0).asObject();
-		});
+		colPrice.setCellValueFactory(
+				cell -> new javafx.beans.property.SimpleDoubleProperty(cell.getValue().getPrice()).asObject());
 	}
 
 	/**
 	 * Configura el ComboBox de begudes i gestiona la visualització dels noms i
-	 * actualització del preu.
+	 * actualització del preu. Les begudes es carreguen en segon pla.
 	 */
 	private void setupDrinkComboBox() {
-		List<Drink> drinks = drinkDAO.getAllDrinks();
-		drinkComboBox.setItems(FXCollections.observableArrayList(drinks));
+		loadDrinks();
 
 		drinkComboBox.setCellFactory(cb -> new ListCell<>() {
 			@Override
@@ -195,16 +212,6 @@ public class TicketController {
 		});
 	}
 
-	/**
-	 * Deshabilita tots els botons per evitar interaccions.
-	 */
-	private void disableAllButtons() {
-		addButton.setDisable(true);
-		updateButton.setDisable(true);
-		deleteButton.setDisable(true);
-		disableLineButtons(true);
-	}
-
 	/**
 	 * Activa o desactiva els botons relacionats amb les línies de tiquet.
 	 * 
@@ -238,23 +245,92 @@ public class TicketController {
 	}
 
 	/**
-	 * Carrega tots els tiquets de la base de dades i els mostra a la taula.
+	 * Carrega en segon pla les begudes del ComboBox.
+	 */
+	private void loadDrinks() {
+		dataService.submit("drinks.getAll", conn -> new DrinkDAO(conn).getAllDrinks())
+				.thenAccept(drinks -> drinkComboBox.setItems(FXCollections.observableArrayList(drinks)))
+				.exceptionally(this::showError);
+	}
+
+	/**
+	 * Torna a carregar els tiquets i les begudes quan la vista es torna a mostrar.
+	 */
+	@Override
+	public void refresh() {
+		loadDrinks();
+		loadTickets();
+	}
+
+	/**
+	 * Carrega els tiquets a la taula de manera paginada.
+	 * <p>
+	 * La primera vegada crea la llista virtual; les següents només la refresca.
+	 * El recompte i les pàgines que la taula mostra es consulten en segon pla.
+	 * </p>
 	 */
 	private void loadTickets() {
-		ticketList = FXCollections.observableArrayList(ticketDAO.getAllTickets());
-		ticketTable.setItems(ticketList);
-		statusLabel.setText("Tiquets carregats.");
+		if (ticketList == null) {
+			ticketList = new PagedObservableList<>(new PagedObservableList.PageSource<Ticket, TicketDAO.PageKey>() {
+				@Override
+				public CompletableFuture<Integer> count() {
+					return dataService.submit("tickets.count", conn -> new TicketDAO(conn).countTickets(ticketFilter));
+				}
+
+				@Override
+				public CompletableFuture<List<Ticket>> fetchAfter(TicketDAO.PageKey after, int limit) {
+					return dataService.submit("tickets.page",
+							conn -> new TicketDAO(conn).getTicketsPage(ticketFilter, after, limit));
+				}
+
+				@Override
+				public CompletableFuture<TicketDAO.PageKey> keyAt(TicketDAO.PageKey after, int offset) {
+					return dataService.submit("tickets.pageKey",
+							conn -> new TicketDAO(conn).getPageKeyAt(ticketFilter, after, offset));
+				}
+
+				@Override
+				public TicketDAO.PageKey keyOf(Ticket ticket) {
+					return TicketDAO.PageKey.of(ticket);
+				}
+			}, PAGE_SIZE, MAX_CACHED_PAGES);
+			ticketList.setOnError(this::showError);
+			ticketTable.setItems(ticketList);
+		}
+		ticketList.refresh().thenAccept(count -> statusLabel.setText("Tiquets carregats: " + count))
+				.exceptionally(this::showError);
 	}
 
 	/**
-	 * Carrega les línies de tiquet associades a un tiquet concret i les mostra a la
-	 * taula.
+	 * Carrega en segon pla les línies de tiquet associades a un tiquet concret i
+	 * les mostra a la taula, si el tiquet encara és el seleccionat.
 	 * 
 	 * @param ticketId identificador del tiquet
 	 */
 	private void loadTicketLines(int ticketId) {
-		ticketLineList = FXCollections.observableArrayList(ticketLineDAO.getLinesByTicketId(ticketId));
-		ticketLinesTable.setItems(ticketLineList);
+		dataService.submit("ticketLines.getByTicket", conn -> new TicketLineDAO(conn).getLinesByTicketId(ticketId))
+				.thenAccept(lines -> {
+					Ticket selected = ticketTable.getSelectionModel().getSelectedItem();
+					if (selected != null && selected.getTicketId() == ticketId) {
+						// El tiquet en memòria ha de tenir les línies guardades per
+						// no perdre-les si després s'actualitza
+						selected.setLines(lines);
+						ticketLineList = FXCollections.observableArrayList(lines);
+						ticketLinesTable.setItems(ticketLineList);
+					}
+				}).exceptionally(this::showError);
+	}
+
+	/**
+	 * Mostra a l'etiqueta d'estat l'error d'una operació de base de dades.
+	 *
+	 * @param e error rebut de l'operació
+	 * @return sempre null, per poder-se usar a {@code exceptionally}
+	 */
+	private Void showError(Throwable e) {
+		DataService.unwrap(e).printStackTrace();
+		statusLabel.setText("Error en la connexió a la base de dades.");
+		return null;
 	}
 
 	/**
@@ -282,13 +358,16 @@ public class TicketController {
 			}
 
 			Ticket newTicket = new Ticket(0, userId, total, status, null, null);
-			if (ticketDAO.insertTicket(newTicket)) {
-				statusLabel.setText("Tiquet afegit correctament.");
-				loadTickets();
-				clearFields();
-			} else {
-				statusLabel.setText("Error en afegir tiquet.");
-			}
+			dataService.submit("tickets.insert", conn -> new TicketDAO(conn).insertTicket(newTicket))
+					.thenAccept(inserted -> {
+						if (inserted) {
+							statusLabel.setText("Tiquet afegit correctament.");
+							loadTickets();
+							clearFields();
+						} else {
+							statusLabel.setText("Error en afegir tiquet.");
+						}
+					}).exceptionally(this::showError);
 		} catch (NumberFormatException e) {
 			statusLabel.setText("UserId o Total no vàlids.");
 		}
@@ -319,13 +398,16 @@ public class TicketController {
 			selected.setTotal(total);
 			selected.setStatus(status);
 
-			if (ticketDAO.updateTicket(selected)) {
-				statusLabel.setText("Tiquet actualitzat.");
-				loadTickets();
-				clearFields();
-			} else {
-				statusLabel.setText("Error en actualitzar tiquet.");
-			}
+			dataService.submit("tickets.update", conn -> new TicketDAO(conn).updateTicket(selected))
+					.thenAccept(updated -> {
+						if (updated) {
+							statusLabel.setText("Tiquet actualitzat.");
+							loadTickets();
+							clearFields();
+						} else {
+							statusLabel.setText("Error en actualitzar tiquet.");
+						}
+					}).exceptionally(this::showError);
 		} catch (NumberFormatException e) {
 			statusLabel.setText("UserId o Total no vàlids.");
 		}
@@ -342,23 +424,24 @@ public class TicketController {
 			return;
 		}
 
-		if (ticketDAO.deleteTicket(selected.getTicketId())) {
-			statusLabel.setText("Tiquet eliminat.");
-			loadTickets();
-			clearFields();
-			clearTicketLines();
-		} else {
-			statusLabel.setText("Error en eliminar tiquet.");
-		}
+		int ticketId = selected.getTicketId();
+		dataService.submit("tickets.delete", conn -> new TicketDAO(conn).deleteTicket(ticketId)).thenAccept(deleted -> {
+			if (deleted) {
+				statusLabel.setText("Tiquet eliminat.");
+				loadTickets();
+				clearFields();
+				clearTicketLines();
+			} else {
+				statusLabel.setText("Error en eliminar tiquet.");
+			}
+		}).exceptionally(this::showError);
 	}
 
 	/**
 	 * Gestiona l'acció d'afegir una línia nova a un tiquet seleccionat.
-	 * 
-	 * @throws SQLException si hi ha un error a la base de dades
 	 */
 	@FXML
-	private void handleAddLine() throws SQLException {
+	private void handleAddLine() {
 		Ticket selectedTicket = ticketTable.getSelectionModel().getSelectedItem();
 		if (selectedTicket == null) {
 			statusLabel.setText("Selecciona un tiquet.");
@@ -379,14 +462,17 @@ public class TicketController {
 			}
 
 			TicketLine line = new TicketLine(0, selectedTicket.getTicketId(), drink, quantity);
-			if (ticketLineDAO.insertLine(line)) {
-				statusLabel.setText("Línia afegida.");
-				loadTicketLines(selectedTicket.getTicketId());
-				updateTicketTotal(selectedTicket.getTicketId());
-				clearLineFields();
-			} else {
-				statusLabel.setText("Error en afegir línia.");
-			}
+			dataService.submit("ticketLines.insert", conn -> new TicketDAO(conn).addLine(line))
+					.thenAccept(inserted -> {
+						if (inserted) {
+							statusLabel.setText("Línia afegida.");
+							loadTicketLines(selectedTicket.getTicketId());
+							updateTicketTotal(selectedTicket);
+							clearLineFields();
+						} else {
+							statusLabel.setText("Error en afegir línia.");
+						}
+					}).exceptionally(this::showError);
 		} catch (NumberFormatException e) {
 			statusLabel.setText("Quantitat no vàlida.");
 		}
@@ -404,43 +490,90 @@ public class TicketController {
 			return;
 		}
 
-		if (ticketLineDAO.deleteLine(selectedLine.getTicketLineId())) {
-			statusLabel.setText("Línia eliminada.");
-			loadTicketLines(selectedTicket.getTicketId());
-			updateTicketTotal(selectedTicket.getTicketId());
-		} else {
-			statusLabel.setText("Error en eliminar línia.");
-		}
+		int ticketId = selectedTicket.getTicketId();
+		int lineId = selectedLine.getTicketLineId();
+		dataService.submit("ticketLines.delete", conn -> new TicketDAO(conn).removeLine(ticketId, lineId))
+				.thenAccept(deleted -> {
+					if (deleted) {
+						statusLabel.setText("Línia eliminada.");
+						loadTicketLines(selectedTicket.getTicketId());
+						updateTicketTotal(selectedTicket);
+					} else {
+						statusLabel.setText("Error en eliminar línia.");
+					}
+				}).exceptionally(this::showError);
 	}
 
 	/**
-	 * Actualitza el total del tiquet sumant el preu de totes les seves línies.
+	 * Recalcula en segon pla el total del tiquet a la base de dades i actualitza
+	 * només la seva fila de la taula, sense tornar a carregar la llista.
 	 * 
-	 * @param ticketId id del tiquet a actualitzar
+	 * @param ticket tiquet a actualitzar
 	 */
-	private void updateTicketTotal(int ticketId) {
-		try {
-			List<TicketLine> lines = ticketLineDAO.getLinesByTicketId(ticketId);
-			double newTotal = 0.0;
-			for (TicketLine line : lines) {
-				Drink drink = line.getDrink();
-				if (drink != null) {
-					newTotal += drink.getPrice() * line.getQuantity();
-				}
-			}
+	private void updateTicketTotal(Ticket ticket) {
+		int ticketId = ticket.getTicketId();
+		dataService.submit("tickets.updateTotal", conn -> new TicketDAO(conn).recalculateTotal(ticketId))
+				.thenAccept(updated -> {
+					if (updated == null) {
+						statusLabel.setText("Error en actualitzar total.");
+						return;
+					}
+					ticket.setTotal(updated.getTotal());
+					ticket.setUpdatedAt(updated.getUpdatedAt());
+					ticketList.replaceLoaded(ticket, ticket);
+					if (ticket == ticketTable.getSelectionModel().getSelectedItem()) {
+						populateFields(ticket);
+					}
+				}).exceptionally(e -> {
+					statusLabel.setText("Error en actualitzar total.");
+					DataService.unwrap(e).printStackTrace();
+					return null;
+				});
+	}
 
-			Ticket ticket = ticketDAO.getTicketById(ticketId);
-			if (ticket != null) {
-				ticket.setTotal(newTotal);
-				ticketDAO.updateTicket(ticket);
-				loadTickets();
-				ticketTable.getSelectionModel().select(ticket);
-				populateFields(ticket);
-			}
-		} catch (Exception e) {
-			statusLabel.setText("Error en actualitzar total.");
-			e.printStackTrace();
+	/**
+	 * Gestiona l'acció d'exportar tiquets i línies a un fitxer CSV o JSON Lines
+	 * (amb {@code .gz} es comprimeix).
+	 * <p>
+	 * Exporta els tiquets entre les dates triades (ambdues incloses) i amb
+	 * l'estat indicat; si no se'n tria cap, els exporta tots. L'exportació
+	 * s'executa en segon pla.
+	 */
+	@FXML
+	private void handleExportTickets() {
+		LocalDate from = exportFromPicker.getValue();
+		LocalDate to = exportToPicker.getValue();
+		if (from != null && to != null && to.isBefore(from)) {
+			statusLabel.setText("La data final no pot ser anterior a la inicial.");
+			return;
 		}
+
+		FileChooser chooser = new FileChooser();
+		chooser.setTitle("Exportar tiquets");
+		chooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("CSV", "*.csv", "*.csv.gz"),
+				new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl", "*.jsonl.gz"));
+		chooser.setInitialFileName("tiquets.csv");
+		File file = chooser.showSaveDialog(ticketTable.getScene().getWindow());
+		if (file == null) {
+			return;
+		}
+
+		String status = exportStatusField.getText() == null ? "" : exportStatusField.getText().trim();
+		TicketFilter filter = new TicketFilter(status.isEmpty() ? null : status, null,
+				from != null ? from.atStartOfDay().format(DATE_TIME_FORMAT) : null,
+				to != null ? to.plusDays(1).atStartOfDay().format(DATE_TIME_FORMAT) : null);
+
+		exportButton.setDisable(true);
+		statusLabel.setText("Exportant a " + file.getName() + "...");
+		dataService.submit("tickets.export", EXPORT_TIMEOUT_MS,
+				conn -> new TicketExporter(conn).export(filter, file.toPath())).thenAccept(result -> {
+					statusLabel.setText(String.format(Locale.ROOT, "Exportades %d línies de %d tiquets en %.1f s.",
+							result.rows(), result.tickets(), result.elapsedMillis() / 1000.0));
+				}).exceptionally(e -> {
+					DataService.unwrap(e).printStackTrace();
+					statusLabel.setText("Error en l'exportació.");
+					return null;
+				}).whenComplete((v, e) -> exportButton.setDisable(false));
 	}
 
 	/**
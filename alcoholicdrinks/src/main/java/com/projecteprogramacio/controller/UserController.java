@@ -2,16 +2,12 @@ package com.projecteprogramacio.controller;
 
 import com.projecteprogramacio.dao.UserDAO;
 import com.projecteprogramacio.model.User;
-import com.projecteprogramacio.util.Database;
+import com.projecteprogramacio.util.DataService;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.util.List;
-
 /**
  * Controlador JavaFX per a la gestió d’usuaris. Aquesta classe s’encarrega de
  * mostrar la taula d’usuaris, i de gestionar les accions de crear, actualitzar
@@ -19,7 +15,7 @@ import java.util.List;
  * 
  * @author Josuè González
  */
-public class UserController {
+public class UserController implements RefreshableView {
 
 	@FXML
 	private TableView<User> userTable;
@@ -51,7 +47,7 @@ public class UserController {
 	private Button deleteButton;
 
 	private ObservableList<User> userList;
-	private UserDAO userDAO;
+	private final DataService dataService = DataService.getInstance();
 
 	// Guardem la contrasenya real temporalment per evitar mostrar-la
 	private String currentPassword = "";
@@ -62,15 +58,6 @@ public class UserController {
 	 */
 	@FXML
 	public void initialize() {
-		try {
-			Connection conn = Database.getConnection();
-			userDAO = new UserDAO(conn);
-		} catch (SQLException e) {
-			statusLabel.setText("Error connexió a la BBDD: " + e.getMessage());
-			e.printStackTrace();
-			return;
-		}
-
 		colUserId.setCellValueFactory(
 				cellData -> new javafx.beans.property.SimpleIntegerProperty(cellData.getValue().getUserId())
 						.asObject());
@@ -106,18 +93,28 @@ public class UserController {
 	}
 
 	/**
-	 * Carrega tots els usuaris des de la base de dades i actualitza la taula.
+	 * Torna a carregar les dades quan la vista es torna a mostrar.
+	 */
+	@Override
+	public void refresh() {
+		loadUsers();
+	}
+
+	/**
+	 * Carrega tots els usuaris des de la base de dades en segon pla i actualitza
+	 * la taula.
 	 */
 	private void loadUsers() {
-		try {
-			List<User> users = userDAO.getAllUsers();
+		dataService.submit("users.getAll", conn -> new UserDAO(conn).getAllUsers()).thenAccept(users -> {
 			userList = FXCollections.observableArrayList(users);
 			userTable.setItems(userList);
 			statusLabel.setText("Usuaris carregats correctament.");
-		} catch (SQLException e) {
-			statusLabel.setText("Error al carregar usuaris: " + e.getMessage());
-			e.printStackTrace();
-		}
+		}).exceptionally(e -> {
+			Throwable cause = DataService.unwrap(e);
+			statusLabel.setText("Error al carregar usuaris: " + cause.getMessage());
+			cause.printStackTrace();
+			return null;
+		});
 	}
 
 	/**
@@ -139,8 +136,7 @@ public class UserController {
 		String now = java.time.LocalDateTime.now().toString();
 		User newUser = new User(0, username, password, email, now, now, now, role);
 
-		try {
-			boolean created = userDAO.createUser(newUser);
+		dataService.submit("users.create", conn -> new UserDAO(conn).createUser(newUser)).thenAccept(created -> {
 			if (created) {
 				statusLabel.setText("Usuari afegit correctament.");
 				clearInputFields();
@@ -148,10 +144,7 @@ public class UserController {
 			} else {
 				statusLabel.setText("Error afegint usuari.");
 			}
-		} catch (SQLException e) {
-			statusLabel.setText("Error BBDD: " + e.getMessage());
-			e.printStackTrace();
-		}
+		}).exceptionally(this::showDatabaseError);
 	}
 
 	/**
@@ -186,8 +179,7 @@ public class UserController {
 			selectedUser.setPassword(currentPassword); // Es manté la contrasenya anterior
 		}
 
-		try {
-			boolean updated = userDAO.updateUser(selectedUser);
+		dataService.submit("users.update", conn -> new UserDAO(conn).updateUser(selectedUser)).thenAccept(updated -> {
 			if (updated) {
 				statusLabel.setText("Usuari actualitzat correctament.");
 				clearInputFields();
@@ -195,10 +187,7 @@ public class UserController {
 			} else {
 				statusLabel.setText("Error actualitzant usuari.");
 			}
-		} catch (SQLException e) {
-			statusLabel.setText("Error BBDD: " + e.getMessage());
-			e.printStackTrace();
-		}
+		}).exceptionally(this::showDatabaseError);
 	}
 
 	/**
@@ -213,18 +202,28 @@ public class UserController {
 			return;
 		}
 
-		try {
-			boolean deleted = userDAO.deleteUser(selectedUser.getUserId());
+		int userId = selectedUser.getUserId();
+		dataService.submit("users.delete", conn -> new UserDAO(conn).deleteUser(userId)).thenAccept(deleted -> {
 			if (deleted) {
 				statusLabel.setText("Usuari eliminat correctament.");
 				loadUsers();
 			} else {
 				statusLabel.setText("Error eliminant usuari.");
 			}
-		} catch (SQLException e) {
-			statusLabel.setText("Error BBDD: " + e.getMessage());
-			e.printStackTrace();
-		}
+		}).exceptionally(this::showDatabaseError);
+	}
+
+	/**
+	 * Mostra a l'etiqueta d'estat l'error d'una operació de base de dades.
+	 *
+	 * @param e error rebut de l'operació
+	 * @return sempre null, per poder-se usar a {@code exceptionally}
+	 */
+	private Void showDatabaseError(Throwable e) {
+		Throwable cause = DataService.unwrap(e);
+		statusLabel.setText("Error BBDD: " + cause.getMessage());
+		cause.printStackTrace();
+		return null;
 	}
 
 	/**
@@ -0,0 +1,111 @@
+package com.projecteprogramacio.controller;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+
+/**
+ * Registre de les vistes FXML carregades durant una sessió.
+ * <p>
+ * Cada vista es carrega (FXML, controlador i dades inicials) una sola vegada.
+ * Les navegacions següents reutilitzen el mateix {@link Parent} i controlador,
+ * i si el controlador implementa {@link RefreshableView} se li demana que
+ * actualitzi les dades. Amb {@link #prewarm(List)} es poden carregar vistes per
+ * avançat, una per pols del fil de JavaFX, perquè el primer clic ja sigui
+ * immediat.
+ * </p>
+ * <p>
+ * Només s'ha d'usar des del fil de JavaFX. Un {@code Parent} només pot estar en
+ * un lloc de l'escena alhora, així que les vistes del registre només s'han de
+ * mostrar a través d'ell.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class ViewRegistry {
+
+	/**
+	 * Vista carregada.
+	 *
+	 * @param root       node arrel de la vista
+	 * @param controller controlador creat per l'FXML, o null si no en té
+	 */
+	private record LoadedView(Parent root, Object controller) {
+	}
+
+	private final Map<String, LoadedView> views = new HashMap<>();
+
+	/** Vistes pendents de precàrrega. */
+	private final Deque<String> prewarmQueue = new ArrayDeque<>();
+
+	/**
+	 * Retorna una vista per mostrar-la: la carrega si és la primera vegada o, si
+	 * ja estava carregada, en refresca les dades.
+	 *
+	 * @param fxmlPath ruta del fitxer FXML (p. ex. "/view/DrinkView.fxml")
+	 * @return node arrel de la vista
+	 * @throws IOException si no es pot carregar l'FXML
+	 */
+	public Parent show(String fxmlPath) throws IOException {
+		LoadedView view = views.get(fxmlPath);
+		if (view == null) {
+			return load(fxmlPath).root();
+		}
+		if (view.controller() instanceof RefreshableView refreshable) {
+			refreshable.refresh();
+		}
+		return view.root();
+	}
+
+	/**
+	 * Programa la càrrega de les vistes indicades que encara no s'han carregat.
+	 * Se'n carrega una per cada {@code Platform.runLater}, de manera que la UI
+	 * continua responent entre vista i vista. Els errors només s'informen.
+	 *
+	 * @param fxmlPaths rutes dels fitxers FXML, per ordre de prioritat
+	 */
+	public void prewarm(List<String> fxmlPaths) {
+		boolean idle = prewarmQueue.isEmpty();
+		prewarmQueue.addAll(fxmlPaths);
+		if (idle) {
+			Platform.runLater(this::prewarmNext);
+		}
+	}
+
+	private void prewarmNext() {
+		String fxmlPath = prewarmQueue.pollFirst();
+		if (fxmlPath == null) {
+			return;
+		}
+		if (!views.containsKey(fxmlPath)) {
+			try {
+				load(fxmlPath);
+			} catch (IOException | RuntimeException e) {
+				System.err.println("No s'ha pogut precarregar " + fxmlPath + ": " + e.getMessage());
+			}
+		}
+		if (!prewarmQueue.isEmpty()) {
+			Platform.runLater(this::prewarmNext);
+		}
+	}
+
+	private LoadedView load(String fxmlPath) throws IOException {
+		URL location = getClass().getResource(fxmlPath);
+		if (location == null) {
+			throw new IOException("No s'ha trobat la vista " + fxmlPath);
+		}
+		FXMLLoader loader = new FXMLLoader(location);
+		Parent root = loader.load();
+		LoadedView view = new LoadedView(root, loader.getController());
+		views.put(fxmlPath, view);
+		return view;
+	}
+}
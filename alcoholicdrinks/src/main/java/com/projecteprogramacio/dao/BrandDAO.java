@@ -2,7 +2,9 @@ package com.projecteprogramacio.dao;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.projecteprogramacio.model.Brand;
 
@@ -30,6 +32,11 @@ public class BrandDAO {
 	 * Retorna l'identificador (brand_id) d'una marca amb el nom indicat. Si no
 	 * existeix, crea la marca amb el nom i codi de país indicats i retorna el nou
 	 * ID.
+	 * <p>
+	 * Consulta primer el {@link ReferenceDataCache}; si no hi és, obté o crea la
+	 * marca amb un sol {@code INSERT ... ON CONFLICT ... RETURNING}, de manera
+	 * que dos terminals que creen la mateixa marca alhora obtenen el mateix ID.
+	 * </p>
 	 * 
 	 * @param brandName   Nom de la marca.
 	 * @param countryCode Codi del país de la marca (ex. "ESP", "USA"). Si és null o
@@ -38,37 +45,24 @@ public class BrandDAO {
 	 *         error.
 	 */
 	public int getIdOrInsert(String brandName, String countryCode) {
-		// Assegura que el countryCode no és null ni buit
-		if (countryCode == null || countryCode.trim().isEmpty()) {
-			countryCode = "XX"; // codi per defecte
+		ReferenceDataCache cache = ReferenceDataCache.getInstance();
+		Integer cachedId = cache.getBrandId(brandName);
+		if (cachedId != null) {
+			return cachedId;
 		}
 
-		try {
-			// Consulta si la marca ja existeix a la base de dades
-			String selectSql = "SELECT brand_id FROM brands WHERE name = ?";
-			try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
-				stmt.setString(1, brandName);
-				ResultSet rs = stmt.executeQuery();
-				if (rs.next()) {
-					return rs.getInt("brand_id");
-				}
-			}
+		// Si la marca ja existeix, l'UPDATE no canvia res però fa que RETURNING la retorni
+		String sql = "INSERT INTO brands (name, country_code) VALUES (?, ?) "
+				+ "ON CONFLICT (name) DO UPDATE SET name = excluded.name RETURNING brand_id, country_code";
 
-			// Si no existeix, insereix la nova marca
-			String insertSql = "INSERT INTO brands (name, country_code) VALUES (?, ?)";
-			try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-				stmt.setString(1, brandName);
-				stmt.setString(2, countryCode);
-				int affectedRows = stmt.executeUpdate();
-
-				if (affectedRows > 0) {
-					// Obté l'últim ID inserit (SQLite específic)
-					try (Statement stmt2 = conn.createStatement();
-							ResultSet rs2 = stmt2.executeQuery("SELECT last_insert_rowid()")) {
-						if (rs2.next()) {
-							return rs2.getInt(1);
-						}
-					}
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setString(1, brandName);
+			stmt.setString(2, defaultCountry(countryCode));
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					int brandId = rs.getInt("brand_id");
+					cache.putBrand(new Brand(brandId, brandName, rs.getString("country_code")));
+					return brandId;
 				}
 			}
 		} catch (SQLException e) {
@@ -79,6 +73,63 @@ public class BrandDAO {
 		return -1;
 	}
 
+	/**
+	 * Versió en bloc de {@link #getIdOrInsert(String, String)}, pensada per a les
+	 * importacions de catàleg. Les marques que no són al {@link ReferenceDataCache}
+	 * s'insereixen en un sol lot i es llegeixen en blocs.
+	 * 
+	 * @param countryCodesByName codi de país de cada marca, per nom; només s'usa
+	 *                           per a les marques noves
+	 * @return identificador de cada marca, per nom, o null si hi ha algun error
+	 */
+	public Map<String, Integer> getIdsOrInsert(Map<String, String> countryCodesByName) {
+		ReferenceDataCache cache = ReferenceDataCache.getInstance();
+		Map<String, Integer> ids = new HashMap<>();
+		List<Object[]> rows = new ArrayList<>();
+		List<String> missing = new ArrayList<>();
+
+		for (Map.Entry<String, String> entry : countryCodesByName.entrySet()) {
+			String name = entry.getKey();
+			if (name == null) {
+				continue;
+			}
+			Integer cachedId = cache.getBrandId(name);
+			if (cachedId != null) {
+				ids.put(name, cachedId);
+			} else {
+				rows.add(new Object[] { name, defaultCountry(entry.getValue()) });
+				missing.add(name);
+			}
+		}
+		if (missing.isEmpty()) {
+			return ids;
+		}
+
+		List<Brand> resolved = new ArrayList<>();
+		try {
+			BulkUpsert.run(conn, "INSERT INTO brands (name, country_code) VALUES (?, ?) ON CONFLICT (name) DO NOTHING",
+					rows, "SELECT brand_id, name, country_code FROM brands WHERE name IN (", missing,
+					rs -> resolved.add(
+							new Brand(rs.getInt("brand_id"), rs.getString("name"), rs.getString("country_code"))));
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		for (Brand brand : resolved) {
+			cache.putBrand(brand);
+			ids.put(brand.getName(), brand.getBrandId());
+		}
+		return ids;
+	}
+
+	/**
+	 * Assegura que el codi de país no és null ni buit.
+	 */
+	private static String defaultCountry(String countryCode) {
+		return countryCode == null || countryCode.trim().isEmpty() ? "XX" : countryCode;
+	}
+
 	/**
 	 * Obté una llista de totes les marques (brands) presents a la base de dades.
 	 * 
@@ -0,0 +1,92 @@
+package com.projecteprogramacio.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Obtenció o creació en bloc de registres de referència per clau (nom de marca,
+ * nom de tipus, codi de país).
+ * <p>
+ * Insereix totes les claus en un sol lot amb {@code ON CONFLICT DO NOTHING} i
+ * després les llegeix per clau en blocs de {@link #CHUNK_SIZE}, de manera que
+ * resoldre milers de noms costa unes quantes sentències en lloc de tres per nom.
+ * Si la connexió no té cap transacció oberta, tot s'executa en una de pròpia.
+ * </p>
+ *
+ * @author Josuè González
+ */
+final class BulkUpsert {
+
+	/** Claus per consulta {@code IN (...)}, per sota del límit de paràmetres. */
+	static final int CHUNK_SIZE = 500;
+
+	/** Llegeix una fila resultant de la consulta per clau. */
+	@FunctionalInterface
+	interface RowReader {
+		void read(ResultSet rs) throws SQLException;
+	}
+
+	private BulkUpsert() {
+	}
+
+	/**
+	 * @param conn         connexió JDBC activa
+	 * @param insertSql    INSERT amb {@code ON CONFLICT DO NOTHING}
+	 * @param rows         paràmetres de l'INSERT per a cada clau que falta
+	 * @param selectPrefix consulta per clau acabada en {@code IN (}
+	 * @param keys         claus a llegir després d'inserir
+	 * @param reader       rep cada fila llegida
+	 * @throws SQLException si alguna sentència falla; la transacció pròpia es desfà
+	 */
+	static void run(Connection conn, String insertSql, List<Object[]> rows, String selectPrefix, List<String> keys,
+			RowReader reader) throws SQLException {
+		boolean ownTransaction = conn.getAutoCommit();
+		try {
+			if (ownTransaction) {
+				conn.setAutoCommit(false);
+			}
+
+			try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+				for (Object[] row : rows) {
+					for (int i = 0; i < row.length; i++) {
+						stmt.setObject(i + 1, row[i]);
+					}
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+			}
+
+			for (int from = 0; from < keys.size(); from += CHUNK_SIZE) {
+				List<String> chunk = keys.subList(from, Math.min(from + CHUNK_SIZE, keys.size()));
+				String sql = selectPrefix + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+					for (int i = 0; i < chunk.size(); i++) {
+						stmt.setString(i + 1, chunk.get(i));
+					}
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							reader.read(rs);
+						}
+					}
+				}
+			}
+
+			if (ownTransaction) {
+				conn.commit();
+			}
+		} catch (SQLException e) {
+			if (ownTransaction) {
+				conn.rollback();
+			}
+			throw e;
+		} finally {
+			if (ownTransaction) {
+				conn.setAutoCommit(true);
+			}
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.projecteprogramacio.model.Country;
 
@@ -33,6 +34,11 @@ public class CountryDAO {
 
 	/**
 	 * Comprova si un país amb el codi especificat existeix i, si no, l'insereix.
+	 * <p>
+	 * Consulta primer el {@link ReferenceDataCache}; si no hi és, obté o crea el
+	 * país amb un sol {@code INSERT ... ON CONFLICT ... RETURNING}. Si el país ja
+	 * existia, el seu nom no es modifica.
+	 * </p>
 	 * 
 	 * @param countryCode Codi del país (p. ex. "ES").
 	 * @param countryName Nom del país (p. ex. "Spain").
@@ -40,30 +46,69 @@ public class CountryDAO {
 	 *         d'error.
 	 */
 	public boolean getOrInsert(String countryCode, String countryName) {
-		String selectSql = "SELECT country_code FROM countries WHERE country_code = ?";
-		String insertSql = "INSERT INTO countries (country_code, name) VALUES (?, ?)";
+		ReferenceDataCache cache = ReferenceDataCache.getInstance();
+		if (cache.hasCountry(countryCode)) {
+			return true;
+		}
 
-		try {
-			// Comprova si ja existeix
-			try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
-				stmt.setString(1, countryCode);
-				ResultSet rs = stmt.executeQuery();
+		// Si el país ja existeix, l'UPDATE no canvia res però fa que RETURNING el retorni
+		String sql = "INSERT INTO countries (country_code, name) VALUES (?, ?) "
+				+ "ON CONFLICT (country_code) DO UPDATE SET country_code = excluded.country_code RETURNING name";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setString(1, countryCode);
+			stmt.setString(2, countryName);
+			try (ResultSet rs = stmt.executeQuery()) {
 				if (rs.next()) {
-					return true; // Ja existeix
+					cache.putCountry(new Country(countryCode, rs.getString("name")));
+					return true;
 				}
+				return false;
 			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
 
-			// Inserta nou país
-			try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-				stmt.setString(1, countryCode);
-				stmt.setString(2, countryName);
-				return stmt.executeUpdate() > 0;
+	/**
+	 * Versió en bloc de {@link #getOrInsert(String, String)}, pensada per a les
+	 * importacions de catàleg. Els països que no són al {@link ReferenceDataCache}
+	 * s'insereixen en un sol lot.
+	 * 
+	 * @param namesByCode nom de cada país, per codi; només s'usa per als països
+	 *                    nous
+	 * @return true si tots els països ja existien o s'han inserit; false en cas
+	 *         d'error
+	 */
+	public boolean getOrInsertAll(Map<String, String> namesByCode) {
+		ReferenceDataCache cache = ReferenceDataCache.getInstance();
+		List<Object[]> rows = new ArrayList<>();
+		List<String> missing = new ArrayList<>();
+
+		for (Map.Entry<String, String> entry : namesByCode.entrySet()) {
+			if (entry.getKey() != null && !cache.hasCountry(entry.getKey())) {
+				rows.add(new Object[] { entry.getKey(), entry.getValue() });
+				missing.add(entry.getKey());
 			}
+		}
+		if (missing.isEmpty()) {
+			return true;
+		}
 
+		List<Country> resolved = new ArrayList<>();
+		try {
+			BulkUpsert.run(conn,
+					"INSERT INTO countries (country_code, name) VALUES (?, ?) ON CONFLICT (country_code) DO NOTHING",
+					rows, "SELECT country_code, name FROM countries WHERE country_code IN (", missing,
+					rs -> resolved.add(new Country(rs.getString("country_code"), rs.getString("name"))));
 		} catch (SQLException e) {
 			e.printStackTrace();
 			return false;
 		}
+
+		resolved.forEach(cache::putCountry);
+		return resolved.size() == missing.size();
 	}
 
 	/**
@@ -3,7 +3,11 @@ package com.projecteprogramacio.dao;
 import com.projecteprogramacio.model.Drink;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Classe DAO per gestionar l'accés a la taula `drinks` de la base de dades.
@@ -14,9 +18,21 @@ import java.util.List;
  */
 public class DrinkDAO {
 
+	/** Nombre màxim de resultats per defecte de les cerques. */
+	public static final int DEFAULT_SEARCH_LIMIT = 50;
+
 	/** Connexió JDBC activa a la base de dades */
 	private final Connection conn;
 
+	/** Índex de text complet que es manté sincronitzat amb la taula */
+	private final DrinkSearchIndex searchIndex;
+
+	/** Noms de marques i països, per no haver-los de llegir amb JOIN */
+	private final ReferenceDataCache referenceData = ReferenceDataCache.getInstance();
+
+	/** Nombre màxim de resultats que retorna {@link #searchDrinksByName} */
+	private int searchLimit = DEFAULT_SEARCH_LIMIT;
+
 	/**
 	 * Constructor que inicialitza el DAO amb la connexió a la base de dades.
 	 * 
@@ -24,10 +40,26 @@ public class DrinkDAO {
 	 */
 	public DrinkDAO(Connection conn) {
 		this.conn = conn;
+		this.searchIndex = new DrinkSearchIndex(conn);
+	}
+
+	/**
+	 * @return nombre màxim de resultats de les cerques
+	 */
+	public int getSearchLimit() {
+		return searchLimit;
+	}
+
+	/**
+	 * @param searchLimit nou nombre màxim de resultats de les cerques
+	 */
+	public void setSearchLimit(int searchLimit) {
+		this.searchLimit = searchLimit;
 	}
 
 	/**
-	 * Insereix una nova beguda a la base de dades.
+	 * Insereix una nova beguda a la base de dades i l'afegeix a l'índex de cerca.
+	 * Si té èxit, assigna a {@code drink} l'identificador generat.
 	 * 
 	 * @param drink objecte Drink a inserir
 	 * @return true si la inserció ha tingut èxit; false en cas contrari
@@ -47,7 +79,18 @@ public class DrinkDAO {
 			stmt.setDouble(8, drink.getPrice());
 			stmt.setBytes(9, drink.getImage());
 
-			return stmt.executeUpdate() > 0;
+			if (stmt.executeUpdate() == 0) {
+				return false;
+			}
+
+			try (Statement idStmt = conn.createStatement();
+					ResultSet rs = idStmt.executeQuery("SELECT last_insert_rowid()")) {
+				if (rs.next()) {
+					drink.setDrinkId(rs.getInt(1));
+					searchIndex.index(drink.getDrinkId());
+				}
+			}
+			return true;
 
 		} catch (SQLException e) {
 			System.err.println("Error inserting drink: " + e.getMessage());
@@ -55,16 +98,70 @@ public class DrinkDAO {
 		}
 	}
 
+	/**
+	 * Insereix un lot de begudes amb una sola sentència preparada i les afegeix a
+	 * l'índex de cerca. Assigna a cada beguda l'identificador generat.
+	 * <p>
+	 * No gestiona la transacció: s'ha de cridar amb una transacció oberta, que
+	 * garanteix que els identificadors del lot són consecutius.
+	 * </p>
+	 * 
+	 * @param drinks begudes a inserir
+	 * @return nombre de begudes inserides
+	 * @throws SQLException si alguna inserció falla
+	 */
+	public int insertDrinks(List<Drink> drinks) throws SQLException {
+		if (drinks.isEmpty()) {
+			return 0;
+		}
+		String sql = "INSERT INTO drinks (name, type_id, brand_id, country_code, alcohol_content, "
+				+ "description, volume, price, image) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (Drink drink : drinks) {
+				stmt.setString(1, drink.getName());
+				stmt.setInt(2, drink.getTypeId());
+				stmt.setInt(3, drink.getBrandId());
+				stmt.setString(4, drink.getCountryCode());
+				stmt.setDouble(5, drink.getAlcoholContent());
+				stmt.setString(6, drink.getDescription());
+				stmt.setDouble(7, drink.getVolume());
+				stmt.setDouble(8, drink.getPrice());
+				stmt.setBytes(9, drink.getImage());
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+
+		int lastId;
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+			rs.next();
+			lastId = rs.getInt(1);
+		}
+		int id = lastId - drinks.size() + 1;
+		for (Drink drink : drinks) {
+			drink.setDrinkId(id++);
+		}
+		searchIndex.indexRange(lastId - drinks.size() + 1, lastId);
+		return drinks.size();
+	}
+
 	/**
 	 * Actualitza les dades d'una beguda existent a la base de dades.
+	 * <p>
+	 * Les begudes del catàleg es carreguen sense imatge, així que la columna
+	 * {@code image} només s'actualitza si el Drink en porta una; si és null, es
+	 * conserva la imatge guardada.
+	 * </p>
 	 * 
 	 * @param drink objecte Drink amb les dades actualitzades (ha de tenir l'id
 	 *              correcte)
 	 * @return true si l'actualització ha tingut èxit; false en cas contrari
 	 */
 	public boolean updateDrink(Drink drink) {
+		boolean withImage = drink.getImage() != null;
 		String sql = "UPDATE drinks SET name=?, type_id=?, brand_id=?, country_code=?, alcohol_content=?, "
-				+ "description=?, volume=?, price=?, image=? WHERE drink_id=?";
+				+ "description=?, volume=?, price=?" + (withImage ? ", image=?" : "") + " WHERE drink_id=?";
 
 		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 			stmt.setString(1, drink.getName());
@@ -75,10 +172,17 @@ public class DrinkDAO {
 			stmt.setString(6, drink.getDescription());
 			stmt.setDouble(7, drink.getVolume());
 			stmt.setDouble(8, drink.getPrice());
-			stmt.setBytes(9, drink.getImage());
-			stmt.setInt(10, drink.getDrinkId());
+			int index = 9;
+			if (withImage) {
+				stmt.setBytes(index++, drink.getImage());
+			}
+			stmt.setInt(index, drink.getDrinkId());
 
-			return stmt.executeUpdate() > 0;
+			if (stmt.executeUpdate() == 0) {
+				return false;
+			}
+			searchIndex.index(drink.getDrinkId());
+			return true;
 
 		} catch (SQLException e) {
 			System.err.println("Error updating drink: " + e.getMessage());
@@ -97,7 +201,11 @@ public class DrinkDAO {
 
 		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 			stmt.setInt(1, drinkId);
-			return stmt.executeUpdate() > 0;
+			if (stmt.executeUpdate() == 0) {
+				return false;
+			}
+			searchIndex.remove(drinkId);
+			return true;
 
 		} catch (SQLException e) {
 			System.err.println("Error deleting drink: " + e.getMessage());
@@ -106,24 +214,31 @@ public class DrinkDAO {
 	}
 
 	/**
-	 * Obté una beguda segons el seu identificador.
+	 * Columnes del catàleg de begudes. No inclou {@code d.image}: les imatges es
+	 * carreguen a part amb {@link #getDrinkImage(int)} o
+	 * {@link #getDrinkImages(Collection)} només quan es mostren. Els noms de la
+	 * marca i el país surten del {@link ReferenceDataCache}.
+	 */
+	private static final String CATALOG_SELECT = "SELECT d.drink_id, d.name, d.type_id, d.brand_id, d.country_code, "
+			+ "d.alcohol_content, d.description, d.volume, d.price FROM drinks d ";
+
+	/**
+	 * Obté una beguda segons el seu identificador, sense la imatge.
 	 * 
 	 * @param drinkId identificador de la beguda
 	 * @return objecte Drink si es troba; null en cas contrari
 	 */
 	public Drink getDrinkById(int drinkId) {
-		String sql = "SELECT d.drink_id, d.name, d.type_id, d.brand_id, d.country_code, d.alcohol_content, "
-				+ "d.description, d.volume, d.price, d.image, " + "b.name AS brandName, c.name AS countryName "
-				+ "FROM drinks d " + "LEFT JOIN brands b ON d.brand_id = b.brand_id "
-				+ "LEFT JOIN countries c ON d.country_code = c.country_code " + "WHERE d.drink_id = ?";
+		String sql = CATALOG_SELECT + "WHERE d.drink_id = ?";
 
 		Drink drink = null;
 
 		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			referenceData.ensureLoaded(conn);
 			stmt.setInt(1, drinkId);
 			try (ResultSet rs = stmt.executeQuery()) {
 				if (rs.next()) {
-					drink = extractDrinkFromResultSet(rs);
+					drink = extractDrinkWithoutImage(rs);
 				}
 			}
 
@@ -135,21 +250,19 @@ public class DrinkDAO {
 	}
 
 	/**
-	 * Obté totes les begudes disponibles a la base de dades.
+	 * Obté totes les begudes disponibles a la base de dades, sense les imatges.
 	 * 
 	 * @return llista de tots els objectes Drink
 	 */
 	public List<Drink> getAllDrinks() {
 		List<Drink> drinks = new ArrayList<>();
-		String sql = "SELECT d.drink_id, d.name, d.type_id, d.brand_id, d.country_code, d.alcohol_content, "
-				+ "d.description, d.volume, d.price, d.image, " + "b.name AS brandName, c.name AS countryName "
-				+ "FROM drinks d " + "LEFT JOIN brands b ON d.brand_id = b.brand_id "
-				+ "LEFT JOIN countries c ON d.country_code = c.country_code";
-
-		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
 
-			while (rs.next()) {
-				drinks.add(extractDrinkFromResultSet(rs));
+		try (Statement stmt = conn.createStatement()) {
+			referenceData.ensureLoaded(conn);
+			try (ResultSet rs = stmt.executeQuery(CATALOG_SELECT)) {
+				while (rs.next()) {
+					drinks.add(extractDrinkWithoutImage(rs));
+				}
 			}
 
 		} catch (SQLException e) {
@@ -160,28 +273,52 @@ public class DrinkDAO {
 	}
 
 	/**
-	 * Cerca begudes pel seu nom que continguin un filtre de text.
+	 * Cerca begudes que coincideixin amb un text, fins a {@link #getSearchLimit()}
+	 * resultats. No carrega les imatges.
+	 * 
+	 * @param nameFilter text a cercar
+	 * @return llista de begudes que coincideixen amb el filtre, de més a menys
+	 *         rellevant; pot ser buida si no hi ha coincidències
+	 * @see #searchDrinks(String, int)
+	 */
+	public List<Drink> searchDrinksByName(String nameFilter) {
+		return searchDrinks(nameFilter, searchLimit);
+	}
+
+	/**
+	 * Cerca begudes amb l'índex de text complet sobre el nom, la descripció, la
+	 * marca i el tipus. Cada paraula del filtre es tracta com a prefix i totes han
+	 * d'aparèixer; els resultats s'ordenen per rellevància. No carrega les
+	 * imatges.
+	 * <p>
+	 * Si la versió de SQLite no té FTS5, fa una cerca {@code LIKE} sobre el nom.
+	 * </p>
 	 * 
-	 * @param nameFilter text a cercar dins el nom de la beguda
+	 * @param filter text a cercar
+	 * @param limit  nombre màxim de resultats
 	 * @return llista de begudes que coincideixen amb el filtre; pot ser buida si no
 	 *         hi ha coincidències
 	 */
-	public List<Drink> searchDrinksByName(String nameFilter) {
-		List<Drink> drinks = new ArrayList<>();
-		String sql = "SELECT d.drink_id, d.name, d.type_id, d.brand_id, d.country_code, d.alcohol_content, "
-				+ "d.description, d.volume, d.price, d.image, " + "b.name AS brandName, c.name AS countryName "
-				+ "FROM drinks d " + "LEFT JOIN brands b ON d.brand_id = b.brand_id "
-				+ "LEFT JOIN countries c ON d.country_code = c.country_code " + "WHERE d.name LIKE ?";
+	public List<Drink> searchDrinks(String filter, int limit) {
+		if (filter == null || filter.trim().isEmpty()) {
+			return new ArrayList<>();
+		}
 
-		if (nameFilter == null || nameFilter.trim().isEmpty()) {
+		List<Drink> drinks = searchIndex.search(filter, limit);
+		if (drinks != null) {
 			return drinks;
 		}
 
+		drinks = new ArrayList<>();
+		String sql = CATALOG_SELECT + "WHERE d.name LIKE ? LIMIT ?";
+
 		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			stmt.setString(1, "%" + nameFilter + "%");
+			referenceData.ensureLoaded(conn);
+			stmt.setString(1, "%" + filter + "%");
+			stmt.setInt(2, limit);
 			try (ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
-					drinks.add(extractDrinkFromResultSet(rs));
+					drinks.add(extractDrinkWithoutImage(rs));
 				}
 			}
 
@@ -193,17 +330,78 @@ public class DrinkDAO {
 	}
 
 	/**
-	 * Mètode auxiliar per extreure un objecte Drink del ResultSet.
+	 * Obté la imatge d'una beguda.
+	 * 
+	 * @param drinkId identificador de la beguda
+	 * @return bytes de la imatge, o null si no en té o no existeix
+	 */
+	public byte[] getDrinkImage(int drinkId) {
+		String sql = "SELECT image FROM drinks WHERE drink_id = ?";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setInt(1, drinkId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return rs.getBytes("image");
+				}
+			}
+		} catch (SQLException e) {
+			System.err.println("Error retrieving drink image: " + e.getMessage());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Obté les imatges d'un conjunt de begudes amb una sola consulta.
+	 * 
+	 * @param drinkIds identificadors de les begudes
+	 * @return mapa drink_id → bytes de la imatge; les begudes sense imatge no hi
+	 *         apareixen
+	 */
+	public Map<Integer, byte[]> getDrinkImages(Collection<Integer> drinkIds) {
+		Map<Integer, byte[]> images = new HashMap<>();
+		if (drinkIds.isEmpty()) {
+			return images;
+		}
+
+		String placeholders = String.join(", ", Collections.nCopies(drinkIds.size(), "?"));
+		String sql = "SELECT drink_id, image FROM drinks WHERE image IS NOT NULL AND drink_id IN (" + placeholders
+				+ ")";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			int index = 1;
+			for (Integer id : drinkIds) {
+				stmt.setInt(index++, id);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					images.put(rs.getInt("drink_id"), rs.getBytes("image"));
+				}
+			}
+		} catch (SQLException e) {
+			System.err.println("Error retrieving drink images: " + e.getMessage());
+		}
+
+		return images;
+	}
+
+	/**
+	 * Construeix un Drink sense imatge a partir d'una fila que conté les columnes
+	 * del catàleg. Els noms de la marca i el país es prenen del
+	 * {@link ReferenceDataCache}, que s'ha d'haver carregat abans; si la marca o
+	 * el tipus no hi són, es torna a llegir.
 	 * 
 	 * @param rs ResultSet posicionat a la fila actual
-	 * @return objecte Drink amb les dades extretes
+	 * @return objecte Drink amb {@code image} a null
 	 * @throws SQLException en cas d'error d'accés al ResultSet
 	 */
-	private Drink extractDrinkFromResultSet(ResultSet rs) throws SQLException {
-		Drink drink = new Drink(rs.getInt("drink_id"), rs.getString("name"), rs.getInt("type_id"),
-				rs.getInt("brand_id"), rs.getString("country_code"), rs.getDouble("alcohol_content"),
-				rs.getString("description"), rs.getDouble("volume"), rs.getDouble("price"), rs.getBytes("image"),
-				rs.getString("brandName"), rs.getString("countryName"));
-		return drink;
+	static Drink extractDrinkWithoutImage(ResultSet rs) throws SQLException {
+		ReferenceDataCache cache = ReferenceDataCache.getInstance();
+		cache.ensureKnown(rs.getStatement().getConnection(), rs.getInt("brand_id"), rs.getInt("type_id"));
+		return new Drink(rs.getInt("drink_id"), rs.getString("name"), rs.getInt("type_id"), rs.getInt("brand_id"),
+				rs.getString("country_code"), rs.getDouble("alcohol_content"), rs.getString("description"),
+				rs.getDouble("volume"), rs.getDouble("price"), null, cache.getBrandName(rs.getInt("brand_id")),
+				cache.getCountryName(rs.getString("country_code")));
 	}
 }
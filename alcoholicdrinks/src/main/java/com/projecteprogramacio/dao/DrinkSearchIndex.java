@@ -0,0 +1,285 @@
+package com.projecteprogramacio.dao;
+
+import com.projecteprogramacio.model.Drink;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Índex de cerca de text complet (FTS5) sobre les begudes.
+ * <p>
+ * Indexa el nom i la descripció de la beguda i els noms de la seva marca i del
+ * seu tipus a la taula virtual {@code drinks_fts} (creada per la migració V7),
+ * amb {@code rowid} igual al {@code drink_id} i la rellevància ponderada per
+ * columna a {@code rank}. El DrinkDAO el manté al dia a cada inserció,
+ * actualització i eliminació. Si alguna d'aquestes actualitzacions falla,
+ * l'índex es marca com a desfasat i es reconstrueix a la següent cerca.
+ * </p>
+ *
+ * @author Josuè González
+ * @version 1.0
+ */
+public class DrinkSearchIndex {
+
+	/** Estat de l'índex compartit per totes les connexions del procés. */
+	private enum State {
+		UNKNOWN, READY, STALE, UNAVAILABLE
+	}
+
+	private static final Object LOCK = new Object();
+	private static volatile State state = State.UNKNOWN;
+
+	/** Files que alimenten l'índex, amb els noms de marca i tipus resolts. */
+	private static final String SOURCE_SELECT = "SELECT d.drink_id, d.name, d.description, b.name, t.name "
+			+ "FROM drinks d " + "LEFT JOIN brands b ON d.brand_id = b.brand_id "
+			+ "LEFT JOIN drink_types t ON d.type_id = t.type_id ";
+
+	/** Connexió JDBC activa */
+	private final Connection conn;
+
+	/**
+	 * @param conn connexió JDBC activa
+	 */
+	public DrinkSearchIndex(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * Comprova que l'índex es pot fer servir i el reconstrueix si està desfasat.
+	 * L'índex el crea i l'omple la migració V7; aquí només es fa feina la primera
+	 * vegada per procés o després d'un error de sincronització.
+	 * <p>
+	 * Dins d'una transacció d'un altre codi no es compara amb {@code drinks}: les
+	 * begudes a mig inserir (p. ex. un lot d'importació) farien semblar l'índex
+	 * desfasat.
+	 * </p>
+	 *
+	 * @return true si l'índex es pot fer servir; false si SQLite no té FTS5
+	 */
+	public boolean ensureReady() {
+		if (state == State.READY) {
+			return true;
+		}
+		if (state == State.UNAVAILABLE) {
+			return false;
+		}
+
+		synchronized (LOCK) {
+			if (state == State.READY || state == State.UNAVAILABLE) {
+				return state == State.READY;
+			}
+			try {
+				if (state == State.STALE) {
+					rebuild();
+				} else if (conn.getAutoCommit()) {
+					if (!isInSync()) {
+						rebuild();
+					}
+				} else {
+					try (Statement stmt = conn.createStatement()) {
+						stmt.executeQuery("SELECT 1 FROM drinks_fts LIMIT 1").close();
+					}
+				}
+				state = State.READY;
+			} catch (SQLException e) {
+				System.err.println("Índex de cerca no disponible, es farà servir LIKE: " + e.getMessage());
+				state = State.UNAVAILABLE;
+			}
+			return state == State.READY;
+		}
+	}
+
+	/**
+	 * Torna a omplir l'índex a partir de la taula {@code drinks}. Si la connexió
+	 * ja té una transacció oberta, es fa dins d'un punt de desat i és qui l'ha
+	 * oberta qui confirma o desfà.
+	 *
+	 * @throws SQLException si hi ha un error a la base de dades
+	 */
+	public void rebuild() throws SQLException {
+		boolean ownTransaction = conn.getAutoCommit();
+		Savepoint savepoint = null;
+		try (Statement stmt = conn.createStatement()) {
+			if (ownTransaction) {
+				conn.setAutoCommit(false);
+			} else {
+				savepoint = conn.setSavepoint();
+			}
+			stmt.executeUpdate("DELETE FROM drinks_fts");
+			stmt.executeUpdate(
+					"INSERT INTO drinks_fts (rowid, name, description, brand_name, type_name) " + SOURCE_SELECT);
+			if (ownTransaction) {
+				conn.commit();
+			} else {
+				conn.releaseSavepoint(savepoint);
+			}
+		} catch (SQLException e) {
+			if (ownTransaction) {
+				conn.rollback();
+			} else if (savepoint != null) {
+				conn.rollback(savepoint);
+				conn.releaseSavepoint(savepoint);
+			}
+			throw e;
+		} finally {
+			if (ownTransaction) {
+				conn.setAutoCommit(true);
+			}
+		}
+	}
+
+	/**
+	 * Indexa (o torna a indexar) una beguda.
+	 *
+	 * @param drinkId identificador de la beguda
+	 */
+	public void index(int drinkId) {
+		if (!ensureReady()) {
+			return;
+		}
+		try {
+			deleteRow(drinkId);
+			try (PreparedStatement stmt = conn
+					.prepareStatement("INSERT INTO drinks_fts (rowid, name, description, brand_name, type_name) "
+							+ SOURCE_SELECT + "WHERE d.drink_id = ?")) {
+				stmt.setInt(1, drinkId);
+				stmt.executeUpdate();
+			}
+		} catch (SQLException e) {
+			markStale(e);
+		}
+	}
+
+	/**
+	 * Indexa les begudes amb identificador dins d'un interval, amb una sola
+	 * sentència. Pensat per a les insercions en bloc, que generen identificadors
+	 * consecutius.
+	 *
+	 * @param fromId primer identificador (inclòs)
+	 * @param toId   últim identificador (inclòs)
+	 */
+	public void indexRange(int fromId, int toId) {
+		if (!ensureReady()) {
+			return;
+		}
+		try (PreparedStatement delete = conn.prepareStatement("DELETE FROM drinks_fts WHERE rowid BETWEEN ? AND ?");
+				PreparedStatement insert = conn
+						.prepareStatement("INSERT INTO drinks_fts (rowid, name, description, brand_name, type_name) "
+								+ SOURCE_SELECT + "WHERE d.drink_id BETWEEN ? AND ?")) {
+			delete.setInt(1, fromId);
+			delete.setInt(2, toId);
+			delete.executeUpdate();
+			insert.setInt(1, fromId);
+			insert.setInt(2, toId);
+			insert.executeUpdate();
+		} catch (SQLException e) {
+			markStale(e);
+		}
+	}
+
+	/**
+	 * Treu una beguda de l'índex.
+	 *
+	 * @param drinkId identificador de la beguda
+	 */
+	public void remove(int drinkId) {
+		if (!ensureReady()) {
+			return;
+		}
+		try {
+			deleteRow(drinkId);
+		} catch (SQLException e) {
+			markStale(e);
+		}
+	}
+
+	/**
+	 * Cerca begudes per paraules, ordenades per rellevància. Cada paraula es
+	 * tracta com a prefix i totes han d'aparèixer (en qualsevol columna).
+	 *
+	 * @param text  text introduït per l'usuari
+	 * @param limit nombre màxim de resultats
+	 * @return begudes trobades (sense imatge), o null si l'índex no està
+	 *         disponible
+	 */
+	public List<Drink> search(String text, int limit) {
+		if (!ensureReady()) {
+			return null;
+		}
+
+		List<Drink> drinks = new ArrayList<>();
+		String match = toMatchQuery(text);
+		if (match.isEmpty()) {
+			return drinks;
+		}
+
+		String sql = "SELECT d.drink_id, d.name, d.type_id, d.brand_id, d.country_code, d.alcohol_content, "
+				+ "d.description, d.volume, d.price FROM (SELECT rowid AS drink_id, rank "
+				+ "FROM drinks_fts WHERE drinks_fts MATCH ? ORDER BY rank LIMIT ?) f "
+				+ "JOIN drinks d ON d.drink_id = f.drink_id ORDER BY f.rank";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			ReferenceDataCache.getInstance().ensureLoaded(conn);
+			stmt.setString(1, match);
+			stmt.setInt(2, limit);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					drinks.add(DrinkDAO.extractDrinkWithoutImage(rs));
+				}
+			}
+		} catch (SQLException e) {
+			System.err.println("Error searching drinks: " + e.getMessage());
+		}
+
+		return drinks;
+	}
+
+	/**
+	 * Converteix el text de l'usuari en una consulta FTS5 segura: cada paraula
+	 * entre cometes (per neutralitzar la sintaxi FTS) i amb {@code *} de prefix.
+	 *
+	 * @param text text introduït per l'usuari
+	 * @return consulta MATCH, o cadena buida si no hi ha cap paraula
+	 */
+	static String toMatchQuery(String text) {
+		if (text == null) {
+			return "";
+		}
+		StringBuilder query = new StringBuilder();
+		for (String token : text.split("[^\\p{L}\\p{N}]+")) {
+			if (token.isEmpty()) {
+				continue;
+			}
+			if (query.length() > 0) {
+				query.append(' ');
+			}
+			query.append('"').append(token).append("\"*");
+		}
+		return query.toString();
+	}
+
+	private boolean isInSync() throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery(
+						"SELECT (SELECT COUNT(*) FROM drinks_fts) = (SELECT COUNT(*) FROM drinks)")) {
+			return rs.next() && rs.getBoolean(1);
+		}
+	}
+
+	private void deleteRow(int drinkId) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM drinks_fts WHERE rowid = ?")) {
+			stmt.setInt(1, drinkId);
+			stmt.executeUpdate();
+		}
+	}
+
+	private static void markStale(SQLException e) {
+		System.err.println("Error actualitzant l'índex de cerca, es reconstruirà: " + e.getMessage());
+		synchronized (LOCK) {
+			if (state == State.READY) {
+				state = State.STALE;
+			}
+		}
+	}
+}
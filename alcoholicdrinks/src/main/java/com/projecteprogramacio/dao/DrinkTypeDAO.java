@@ -4,7 +4,12 @@ import com.projecteprogramacio.model.DrinkType;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Classe DAO per gestionar l'accés a la taula `drink_types` de la base de
@@ -30,44 +35,93 @@ public class DrinkTypeDAO {
 	/**
 	 * Obté l'identificador d'un tipus de beguda pel seu nom. Si no existeix,
 	 * l'insereix i retorna el nou identificador.
+	 * <p>
+	 * Consulta primer el {@link ReferenceDataCache}; si no hi és, obté o crea el
+	 * tipus amb un sol {@code INSERT ... ON CONFLICT ... RETURNING}. Si el tipus
+	 * ja existia, la seva imatge no es modifica.
+	 * </p>
 	 * 
 	 * @param name  nom del tipus de beguda
 	 * @param image imatge associada al tipus (pot ser null)
 	 * @return l'identificador del tipus existent o nou creat; -1 en cas d'error
 	 */
 	public int getOrInsert(String name, byte[] image) {
-		String selectSql = "SELECT type_id FROM drink_types WHERE name = ?";
-		String insertSql = "INSERT INTO drink_types (name, image) VALUES (?, ?)";
-		try {
-			// Comprova si ja existeix
-			try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
-				stmt.setString(1, name);
-				ResultSet rs = stmt.executeQuery();
+		ReferenceDataCache cache = ReferenceDataCache.getInstance();
+		Integer cachedId = cache.getTypeId(name);
+		if (cachedId != null) {
+			return cachedId;
+		}
+
+		// Si el tipus ja existeix, l'UPDATE no canvia res però fa que RETURNING el retorni
+		String sql = "INSERT INTO drink_types (name, image) VALUES (?, ?) "
+				+ "ON CONFLICT (name) DO UPDATE SET name = excluded.name RETURNING type_id";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setString(1, name);
+			stmt.setBytes(2, image);
+			try (ResultSet rs = stmt.executeQuery()) {
 				if (rs.next()) {
-					return rs.getInt("type_id"); // Ja existeix
+					int typeId = rs.getInt("type_id");
+					cache.putDrinkType(new DrinkType(typeId, name, null));
+					return typeId;
 				}
 			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
 
-			// Insereix nou tipus
-			try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-				stmt.setString(1, name);
-				stmt.setBytes(2, image);
-				int affectedRows = stmt.executeUpdate();
-
-				if (affectedRows > 0) {
-					// Recupera l'ID de l'última fila inserida
-					try (Statement stmt2 = conn.createStatement();
-							ResultSet rs2 = stmt2.executeQuery("SELECT last_insert_rowid()")) {
-						if (rs2.next()) {
-							return rs2.getInt(1);
-						}
-					}
-				}
+		return -1; // error
+	}
+
+	/**
+	 * Versió en bloc de {@link #getOrInsert(String, byte[])}, sense imatge,
+	 * pensada per a les importacions de catàleg. Els tipus que no són al
+	 * {@link ReferenceDataCache} s'insereixen en un sol lot i es llegeixen en
+	 * blocs.
+	 * 
+	 * @param names noms dels tipus de beguda
+	 * @return identificador de cada tipus, per nom, o null si hi ha algun error
+	 */
+	public Map<String, Integer> getOrInsertAll(Collection<String> names) {
+		ReferenceDataCache cache = ReferenceDataCache.getInstance();
+		Map<String, Integer> ids = new HashMap<>();
+		Set<String> missing = new LinkedHashSet<>();
+
+		for (String name : names) {
+			if (name == null) {
+				continue;
+			}
+			Integer cachedId = cache.getTypeId(name);
+			if (cachedId != null) {
+				ids.put(name, cachedId);
+			} else {
+				missing.add(name);
 			}
+		}
+		if (missing.isEmpty()) {
+			return ids;
+		}
+
+		List<Object[]> rows = new ArrayList<>();
+		for (String name : missing) {
+			rows.add(new Object[] { name });
+		}
+
+		List<DrinkType> resolved = new ArrayList<>();
+		try {
+			BulkUpsert.run(conn, "INSERT INTO drink_types (name) VALUES (?) ON CONFLICT (name) DO NOTHING", rows,
+					"SELECT type_id, name FROM drink_types WHERE name IN (", new ArrayList<>(missing),
+					rs -> resolved.add(new DrinkType(rs.getInt("type_id"), rs.getString("name"), null)));
 		} catch (SQLException e) {
 			e.printStackTrace();
+			return null;
 		}
-		return -1; // error
+
+		for (DrinkType type : resolved) {
+			cache.putDrinkType(type);
+			ids.put(type.getName(), type.getTypeId());
+		}
+		return ids;
 	}
 
 	/**
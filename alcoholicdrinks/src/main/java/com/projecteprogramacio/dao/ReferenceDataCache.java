@@ -0,0 +1,298 @@
+package com.projecteprogramacio.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.projecteprogramacio.model.Brand;
+import com.projecteprogramacio.model.Country;
+import com.projecteprogramacio.model.DrinkType;
+
+/**
+ * Memòria cau de les taules de referència ({@code brands}, {@code drink_types}
+ * i {@code countries}) compartida per tota l'aplicació.
+ * <p>
+ * Es carrega sencera la primera vegada que es necessita i després dona les
+ * conversions id → nom i nom → id sense consultar la base de dades. Els DAO
+ * que hi escriuen ({@link BrandDAO#getIdOrInsert}, {@link DrinkTypeDAO#getOrInsert}
+ * i {@link CountryDAO#getOrInsert}) hi afegeixen els registres nous. Els tipus
+ * es guarden sense imatge. Les marques i tipus creats des d'una altra caixa es
+ * llegeixen quan apareix una beguda que els fa servir
+ * ({@link #ensureKnown(Connection, int, int)}).
+ * </p>
+ * <p>
+ * Si una inserció es desfà dins d'una transacció, s'ha de cridar
+ * {@link #invalidate()} perquè la memòria cau no conservi registres que no
+ * existeixen.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class ReferenceDataCache {
+
+	private static final ReferenceDataCache INSTANCE = new ReferenceDataCache();
+
+	/**
+	 * Contingut de la memòria cau. Cada càrrega en construeix un de nou i el
+	 * substitueix sencer, de manera que els lectors mai no veuen les taules a
+	 * mig omplir.
+	 */
+	private record Tables(Map<Integer, Brand> brandsById, Map<String, Integer> brandIdsByName,
+			Map<Integer, DrinkType> typesById, Map<String, Integer> typeIdsByName,
+			Map<String, Country> countriesByCode, Set<Integer> missingBrandIds, Set<Integer> missingTypeIds) {
+
+		static Tables empty() {
+			return new Tables(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+					new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet(),
+					ConcurrentHashMap.newKeySet());
+		}
+	}
+
+	private volatile Tables tables = Tables.empty();
+
+	private volatile boolean loaded;
+
+	private ReferenceDataCache() {
+	}
+
+	/**
+	 * @return memòria cau compartida
+	 */
+	public static ReferenceDataCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Carrega les taules de referència si encara no s'han carregat.
+	 *
+	 * @param conn connexió JDBC activa
+	 * @throws SQLException si hi ha un error a la base de dades; la memòria cau
+	 *                      queda sense carregar
+	 */
+	public void ensureLoaded(Connection conn) throws SQLException {
+		if (loaded) {
+			return;
+		}
+		synchronized (this) {
+			if (loaded) {
+				return;
+			}
+			reload(conn);
+		}
+	}
+
+	/**
+	 * Comprova que la marca i el tipus d'una beguda són a la memòria cau. Si algun
+	 * no hi és (p. ex. l'ha creat una altra caixa), torna a llegir les taules una
+	 * vegada. Els identificadors que tampoc no hi són després de tornar-les a
+	 * llegir es recorden, perquè no provoquin una lectura a cada fila.
+	 *
+	 * @param conn    connexió JDBC activa
+	 * @param brandId identificador de la marca
+	 * @param typeId  identificador del tipus de beguda
+	 * @throws SQLException si hi ha un error a la base de dades
+	 */
+	public void ensureKnown(Connection conn, int brandId, int typeId) throws SQLException {
+		if (isKnown(tables, brandId, typeId)) {
+			return;
+		}
+		synchronized (this) {
+			// Potser un altre fil ja les ha tornat a llegir mentre s'esperava
+			Tables current = tables;
+			if (!isKnown(current, brandId, typeId)) {
+				current = reload(conn);
+			}
+			if (!current.brandsById().containsKey(brandId)) {
+				current.missingBrandIds().add(brandId);
+			}
+			if (!current.typesById().containsKey(typeId)) {
+				current.missingTypeIds().add(typeId);
+			}
+		}
+	}
+
+	/**
+	 * Descarta les dades carregades; es tornaran a llegir al següent
+	 * {@link #ensureLoaded(Connection)}.
+	 */
+	public synchronized void invalidate() {
+		loaded = false;
+		tables = Tables.empty();
+	}
+
+	/** @return true si les taules ja s'han carregat */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * @param brandId identificador de la marca
+	 * @return nom de la marca, o null si no es coneix
+	 */
+	public String getBrandName(int brandId) {
+		Brand brand = tables.brandsById().get(brandId);
+		return brand != null ? brand.getName() : null;
+	}
+
+	/**
+	 * @param name nom de la marca
+	 * @return identificador de la marca, o null si no es coneix
+	 */
+	public Integer getBrandId(String name) {
+		return name != null ? tables.brandIdsByName().get(name) : null;
+	}
+
+	/**
+	 * @param typeId identificador del tipus de beguda
+	 * @return nom del tipus, o null si no es coneix
+	 */
+	public String getTypeName(int typeId) {
+		DrinkType type = tables.typesById().get(typeId);
+		return type != null ? type.getName() : null;
+	}
+
+	/**
+	 * @param name nom del tipus de beguda
+	 * @return identificador del tipus, o null si no es coneix
+	 */
+	public Integer getTypeId(String name) {
+		return name != null ? tables.typeIdsByName().get(name) : null;
+	}
+
+	/**
+	 * @param countryCode codi del país
+	 * @return nom del país, o null si no es coneix
+	 */
+	public String getCountryName(String countryCode) {
+		Country country = countryCode != null ? tables.countriesByCode().get(countryCode) : null;
+		return country != null ? country.getName() : null;
+	}
+
+	/**
+	 * @param countryCode codi del país
+	 * @return true si el país és a la memòria cau
+	 */
+	public boolean hasCountry(String countryCode) {
+		return countryCode != null && tables.countriesByCode().containsKey(countryCode);
+	}
+
+	/**
+	 * @return marques ordenades per identificador
+	 */
+	public List<Brand> getBrands() {
+		List<Brand> brands = new ArrayList<>(tables.brandsById().values());
+		brands.sort(Comparator.comparingInt(Brand::getBrandId));
+		return brands;
+	}
+
+	/**
+	 * @return tipus de beguda (sense imatge) ordenats per identificador
+	 */
+	public List<DrinkType> getDrinkTypes() {
+		List<DrinkType> types = new ArrayList<>(tables.typesById().values());
+		types.sort(Comparator.comparingInt(DrinkType::getTypeId));
+		return types;
+	}
+
+	/**
+	 * @return països ordenats per codi
+	 */
+	public List<Country> getCountries() {
+		List<Country> countries = new ArrayList<>(tables.countriesByCode().values());
+		countries.sort(Comparator.comparing(Country::getCountryCode));
+		return countries;
+	}
+
+	/**
+	 * Afegeix o substitueix una marca.
+	 *
+	 * @param brand marca guardada a la base de dades
+	 */
+	public void putBrand(Brand brand) {
+		putBrand(tables, brand);
+	}
+
+	/**
+	 * Afegeix o substitueix un tipus de beguda. La imatge no es guarda.
+	 *
+	 * @param type tipus guardat a la base de dades
+	 */
+	public void putDrinkType(DrinkType type) {
+		putDrinkType(tables, type);
+	}
+
+	/**
+	 * Afegeix o substitueix un país.
+	 *
+	 * @param country país guardat a la base de dades
+	 */
+	public void putCountry(Country country) {
+		putCountry(tables, country);
+	}
+
+	/**
+	 * Llegeix les taules en un contingut nou i el posa en lloc de l'actual. S'ha
+	 * de cridar amb el monitor agafat.
+	 *
+	 * @return contingut nou
+	 */
+	private Tables reload(Connection conn) throws SQLException {
+		Tables fresh = Tables.empty();
+		try (Statement stmt = conn.createStatement()) {
+			try (ResultSet rs = stmt.executeQuery("SELECT brand_id, name, country_code FROM brands")) {
+				while (rs.next()) {
+					putBrand(fresh, new Brand(rs.getInt("brand_id"), rs.getString("name"), rs.getString("country_code")));
+				}
+			}
+			try (ResultSet rs = stmt.executeQuery("SELECT type_id, name FROM drink_types")) {
+				while (rs.next()) {
+					putDrinkType(fresh, new DrinkType(rs.getInt("type_id"), rs.getString("name"), null));
+				}
+			}
+			try (ResultSet rs = stmt.executeQuery("SELECT country_code, name FROM countries")) {
+				while (rs.next()) {
+					putCountry(fresh, new Country(rs.getString("country_code"), rs.getString("name")));
+				}
+			}
+		}
+		tables = fresh;
+		loaded = true;
+		return fresh;
+	}
+
+	private static boolean isKnown(Tables t, int brandId, int typeId) {
+		return (t.brandsById().containsKey(brandId) || t.missingBrandIds().contains(brandId))
+				&& (t.typesById().containsKey(typeId) || t.missingTypeIds().contains(typeId));
+	}
+
+	private static void putBrand(Tables t, Brand brand) {
+		t.brandsById().put(brand.getBrandId(), brand);
+		t.missingBrandIds().remove(brand.getBrandId());
+		if (brand.getName() != null) {
+			t.brandIdsByName().put(brand.getName(), brand.getBrandId());
+		}
+	}
+
+	private static void putDrinkType(Tables t, DrinkType type) {
+		DrinkType withoutImage = type.getImage() == null ? type
+				: new DrinkType(type.getTypeId(), type.getName(), null);
+		t.typesById().put(type.getTypeId(), withoutImage);
+		t.missingTypeIds().remove(type.getTypeId());
+		if (type.getName() != null) {
+			t.typeIdsByName().put(type.getName(), type.getTypeId());
+		}
+	}
+
+	private static void putCountry(Tables t, Country country) {
+		if (country.getCountryCode() != null) {
+			t.countriesByCode().put(country.getCountryCode(), country);
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package com.projecteprogramacio.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resums de vendes per hora i per dia ({@code sales_hourly} i
+ * {@code sales_daily}), amb les línies, les unitats i l'import en cèntims per
+ * beguda i estat del tiquet.
+ * <p>
+ * El TicketDAO els manté al dia dins la transacció de cada escriptura: abans de
+ * modificar un tiquet en resta l'aportació ({@link #removeTicket(int)}) i
+ * després hi suma la nova ({@link #addTicket(int)}), amb una sola sentència per
+ * taula. Les consultes ({@link #query(Query)}) agrupen els resums per període i
+ * per una dimensió (beguda, tipus, marca, país o estat) sense tocar les línies,
+ * de manera que el cost depèn del nombre de períodes i begudes i no del de
+ * vendes. {@link #rebuild()} els torna a calcular des de zero.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class SalesRollup {
+
+	/** Agrupació dels resultats en el temps. */
+	public enum Period {
+		HOUR("Hora"), DAY("Dia"), MONTH("Mes"), YEAR("Any"), TOTAL("Tot el període");
+
+		private final String label;
+
+		Period(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * @param column columna de període del resum ({@code hour} o {@code day})
+		 * @return expressió SQL amb el període de cada fila
+		 */
+		private String expression(String column) {
+			return switch (this) {
+			case HOUR -> column;
+			case DAY -> "substr(" + column + ", 1, 10)";
+			case MONTH -> "substr(" + column + ", 1, 7)";
+			case YEAR -> "substr(" + column + ", 1, 4)";
+			case TOTAL -> "''";
+			};
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/** Dimensió per la qual es desglossen les vendes de cada període. */
+	public enum Dimension {
+		NONE("Cap", "''", "'Total'", ""),
+		DRINK("Beguda", "r.drink_id", "d.name", "LEFT JOIN drinks d ON d.drink_id = r.drink_id "),
+		TYPE("Tipus", "d.type_id", "ty.name", "LEFT JOIN drinks d ON d.drink_id = r.drink_id "
+				+ "LEFT JOIN drink_types ty ON ty.type_id = d.type_id "),
+		BRAND("Marca", "d.brand_id", "b.name", "LEFT JOIN drinks d ON d.drink_id = r.drink_id "
+				+ "LEFT JOIN brands b ON b.brand_id = d.brand_id "),
+		COUNTRY("País", "d.country_code", "c.name", "LEFT JOIN drinks d ON d.drink_id = r.drink_id "
+				+ "LEFT JOIN countries c ON c.country_code = d.country_code "),
+		STATUS("Estat", "r.status", "r.status", "");
+
+		private final String label;
+		private final String key;
+		private final String name;
+		private final String joins;
+
+		Dimension(String label, String key, String name, String joins) {
+			this.label = label;
+			this.key = key;
+			this.name = name;
+			this.joins = joins;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/** Clau de període de {@code sales_hourly}. */
+	private static final DateTimeFormatter HOUR_KEY = DateTimeFormatter.ofPattern("yyyy-MM-dd HH");
+
+	/** Clau de període de {@code sales_daily}. */
+	private static final DateTimeFormatter DAY_KEY = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+	/**
+	 * Aportació d'un tiquet per hora, beguda i estat, multiplicada pel signe del
+	 * primer paràmetre. Els tiquets sense data no entren als resums.
+	 */
+	private static final String TICKET_CONTRIBUTION = "SELECT %s, COALESCE(tl.drink_id, 0), COALESCE(t.status, ''), "
+			+ "? * COUNT(*), ? * SUM(tl.quantity), ? * SUM(CAST(ROUND(tl.quantity * tl.price * 100) AS INTEGER)) "
+			+ "FROM tickets t JOIN ticket_lines tl ON tl.ticket_id = t.ticket_id "
+			+ "WHERE t.ticket_id = ? AND t.created_at IS NOT NULL GROUP BY 1, 2, 3";
+
+	private static final String ADD_HOURLY = "INSERT INTO sales_hourly "
+			+ "(hour, drink_id, status, lines, quantity, revenue_cents) "
+			+ String.format(TICKET_CONTRIBUTION, "substr(t.created_at, 1, 13)")
+			+ " ON CONFLICT (hour, drink_id, status) DO UPDATE SET lines = lines + excluded.lines, "
+			+ "quantity = quantity + excluded.quantity, revenue_cents = revenue_cents + excluded.revenue_cents";
+
+	private static final String ADD_DAILY = "INSERT INTO sales_daily "
+			+ "(day, drink_id, status, lines, quantity, revenue_cents) "
+			+ String.format(TICKET_CONTRIBUTION, "substr(t.created_at, 1, 10)")
+			+ " ON CONFLICT (day, drink_id, status) DO UPDATE SET lines = lines + excluded.lines, "
+			+ "quantity = quantity + excluded.quantity, revenue_cents = revenue_cents + excluded.revenue_cents";
+
+	/** Connexió JDBC activa */
+	private final Connection conn;
+
+	/**
+	 * @param conn connexió JDBC activa
+	 */
+	public SalesRollup(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * Suma als resums les línies guardades d'un tiquet. S'ha de cridar dins la
+	 * transacció que l'ha desat.
+	 *
+	 * @param ticketId identificador del tiquet
+	 * @throws SQLException si hi ha un error a la base de dades
+	 */
+	void addTicket(int ticketId) throws SQLException {
+		apply(ticketId, 1);
+	}
+
+	/**
+	 * Resta dels resums les línies guardades d'un tiquet i elimina les files que
+	 * queden buides. S'ha de cridar dins la transacció que el modificarà, abans
+	 * de tocar-lo.
+	 *
+	 * @param ticketId identificador del tiquet
+	 * @throws SQLException si hi ha un error a la base de dades
+	 */
+	void removeTicket(int ticketId) throws SQLException {
+		apply(ticketId, -1);
+
+		try (PreparedStatement hourly = conn.prepareStatement("DELETE FROM sales_hourly WHERE lines = 0 AND hour = "
+				+ "(SELECT substr(created_at, 1, 13) FROM tickets WHERE ticket_id = ?)");
+				PreparedStatement daily = conn.prepareStatement("DELETE FROM sales_daily WHERE lines = 0 AND day = "
+						+ "(SELECT substr(created_at, 1, 10) FROM tickets WHERE ticket_id = ?)")) {
+			hourly.setInt(1, ticketId);
+			hourly.executeUpdate();
+			daily.setInt(1, ticketId);
+			daily.executeUpdate();
+		}
+	}
+
+	private void apply(int ticketId, int sign) throws SQLException {
+		try (PreparedStatement hourly = conn.prepareStatement(ADD_HOURLY);
+				PreparedStatement daily = conn.prepareStatement(ADD_DAILY)) {
+			for (PreparedStatement stmt : List.of(hourly, daily)) {
+				stmt.setInt(1, sign);
+				stmt.setInt(2, sign);
+				stmt.setInt(3, sign);
+				stmt.setInt(4, ticketId);
+				stmt.executeUpdate();
+			}
+		}
+	}
+
+	/**
+	 * Torna a calcular els dos resums a partir de totes les línies de tiquet, en
+	 * una sola transacció. Serveix per carregar l'historial o per corregir-los si
+	 * s'han modificat les taules per fora de l'aplicació.
+	 *
+	 * @return files del resum per hores
+	 * @throws SQLException si hi ha un error a la base de dades
+	 */
+	public int rebuild() throws SQLException {
+		return TransactionTemplate.execute(conn, tx -> {
+			try (Statement stmt = tx.createStatement()) {
+				stmt.executeUpdate("DELETE FROM sales_hourly");
+				stmt.executeUpdate("DELETE FROM sales_daily");
+				int rows = stmt.executeUpdate("INSERT INTO sales_hourly "
+						+ "(hour, drink_id, status, lines, quantity, revenue_cents) "
+						+ "SELECT substr(t.created_at, 1, 13), COALESCE(tl.drink_id, 0), COALESCE(t.status, ''), "
+						+ "COUNT(*), SUM(tl.quantity), SUM(CAST(ROUND(tl.quantity * tl.price * 100) AS INTEGER)) "
+						+ "FROM tickets t JOIN ticket_lines tl ON tl.ticket_id = t.ticket_id "
+						+ "WHERE t.created_at IS NOT NULL GROUP BY 1, 2, 3");
+				stmt.executeUpdate("INSERT INTO sales_daily (day, drink_id, status, lines, quantity, revenue_cents) "
+						+ "SELECT substr(hour, 1, 10), drink_id, status, SUM(lines), SUM(quantity), "
+						+ "SUM(revenue_cents) FROM sales_hourly GROUP BY 1, 2, 3");
+				return rows;
+			}
+		});
+	}
+
+	/**
+	 * Vendes d'un interval agrupades per període i dimensió. Si l'agrupació és
+	 * per hores o algun límit no cau a mitjanit es llegeix el resum per hores i
+	 * els límits es trunquen a l'hora; si no, el resum per dies.
+	 *
+	 * @param query interval, agrupació i filtre
+	 * @return files ordenades per període i, dins de cada període, per import
+	 *         descendent
+	 * @throws SQLException si hi ha un error a la base de dades
+	 */
+	public List<Row> query(Query query) throws SQLException {
+		boolean hourly = query.groupBy() == Period.HOUR || !isMidnight(query.from()) || !isMidnight(query.to());
+		String column = hourly ? "r.hour" : "r.day";
+		DateTimeFormatter keyFormat = hourly ? HOUR_KEY : DAY_KEY;
+		Dimension dimension = query.dimension();
+
+		StringBuilder sql = new StringBuilder("SELECT ").append(query.groupBy().expression(column))
+				.append(" AS period, ").append(dimension.key).append(" AS dim_key, ").append(dimension.name)
+				.append(" AS dim_name, SUM(r.lines), SUM(r.quantity), SUM(r.revenue_cents) FROM ")
+				.append(hourly ? "sales_hourly" : "sales_daily").append(" r ").append(dimension.joins);
+
+		List<String> conditions = new ArrayList<>();
+		List<Object> params = new ArrayList<>();
+		if (query.from() != null) {
+			conditions.add(column + " >= ?");
+			params.add(query.from().format(keyFormat));
+		}
+		if (query.to() != null) {
+			conditions.add(column + " < ?");
+			params.add(query.to().format(keyFormat));
+		}
+		if (query.status() != null) {
+			conditions.add("r.status = ?");
+			params.add(query.status());
+		}
+		if (!conditions.isEmpty()) {
+			sql.append("WHERE ").append(String.join(" AND ", conditions)).append(' ');
+		}
+		sql.append("GROUP BY period, dim_key ORDER BY period, SUM(r.revenue_cents) DESC");
+
+		List<Row> rows = new ArrayList<>();
+		try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+			for (int i = 0; i < params.size(); i++) {
+				stmt.setObject(i + 1, params.get(i));
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					rows.add(new Row(rs.getString(1), rs.getString(2), rs.getString(3), rs.getLong(4), rs.getLong(5),
+							rs.getLong(6)));
+				}
+			}
+		}
+		return rows;
+	}
+
+	private static boolean isMidnight(LocalDateTime time) {
+		return time == null || time.toLocalTime().equals(LocalTime.MIDNIGHT);
+	}
+
+	/**
+	 * Pregunta a respondre des dels resums.
+	 *
+	 * @param from      inici de l'interval (inclòs), o null sense límit
+	 * @param to        final de l'interval (exclòs), o null sense límit
+	 * @param groupBy   agrupació en el temps
+	 * @param dimension desglossament de cada període
+	 * @param status    només els tiquets amb aquest estat, o null per a tots
+	 */
+	public record Query(LocalDateTime from, LocalDateTime to, Period groupBy, Dimension dimension, String status) {
+
+		public Query {
+			if (groupBy == null || dimension == null) {
+				throw new IllegalArgumentException("Cal indicar l'agrupació i la dimensió");
+			}
+			if (from != null && to != null && !from.isBefore(to)) {
+				throw new IllegalArgumentException("L'inici ha de ser anterior al final");
+			}
+		}
+	}
+
+	/**
+	 * Vendes d'un període i valor de la dimensió.
+	 *
+	 * @param period       període ({@code yyyy-MM-dd HH}, {@code yyyy-MM-dd},
+	 *                     {@code yyyy-MM}, {@code yyyy} o buit per al total)
+	 * @param key          valor de la dimensió (identificador, codi o estat)
+	 * @param name         nom del valor de la dimensió, si en té
+	 * @param lines        línies de tiquet
+	 * @param quantity     unitats venudes
+	 * @param revenueCents import en cèntims
+	 */
+	public record Row(String period, String key, String name, long lines, long quantity, long revenueCents) {
+
+		/** @return import en euros */
+		public double revenue() {
+			return revenueCents / 100.0;
+		}
+	}
+}
@@ -3,18 +3,22 @@ package com.projecteprogramacio.dao;
 import com.projecteprogramacio.model.Ticket;
 import com.projecteprogramacio.model.TicketLine;
 
+import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Classe DAO per gestionar l'accés a la taula tickets i realitzar operacions
  * CRUD relacionades.
  * <p>
- * També gestiona les línies de tiquet mitjançant TicketLineDAO i s’encarrega de
- * la gestió de transaccions.
+ * També gestiona les línies de tiquet mitjançant TicketLineDAO. Les escriptures
+ * de diverses sentències s'executen amb {@link TransactionTemplate}, de manera
+ * que el DAO es pot usar des de diversos fils alhora.
  * </p>
  * 
  * @author Josuè González
@@ -31,6 +35,9 @@ public class TicketDAO {
 	/** DAO per a les línies del tiquet */
 	private final TicketLineDAO ticketLineDAO;
 
+	/** Resums de vendes que es mantenen a cada escriptura */
+	private final SalesRollup salesRollup;
+
 	/**
 	 * Constructor que inicialitza el DAO amb la connexió a la base de dades.
 	 * 
@@ -39,101 +46,202 @@ public class TicketDAO {
 	public TicketDAO(Connection conn) {
 		this.conn = conn;
 		this.ticketLineDAO = new TicketLineDAO(conn);
+		this.salesRollup = new SalesRollup(conn);
 	}
 
 	/**
 	 * Insereix un nou tiquet amb les seves línies a la base de dades. La inserció
 	 * és atòmica (transacció).
+	 * <p>
+	 * Si el tiquet porta clau d'idempotència i ja s'ha desat un tiquet amb la
+	 * mateixa clau, no s'insereix res: se li assigna el ticketId existent i es
+	 * retorna {@code true}.
+	 * </p>
 	 * 
 	 * @param ticket tiquet a inserir
 	 * @return {@code true} si la inserció ha estat correcta; {@code false} en cas
 	 *         contrari
 	 */
 	public boolean insertTicket(Ticket ticket) {
-		String sql = "INSERT INTO tickets (user_id, total, status, created_at, updated_at) VALUES (?, ?, ?, ?, ?)";
 		String now = LocalDateTime.now().format(formatter);
 
 		try {
-			conn.setAutoCommit(false);
-
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setInt(1, ticket.getUserId());
-				stmt.setDouble(2, ticket.getTotal());
-				stmt.setString(3, ticket.getStatus());
-				stmt.setString(4, now);
-				stmt.setString(5, now);
-
-				int rowsAffected = stmt.executeUpdate();
-				if (rowsAffected == 0) {
-					conn.rollback();
-					return false;
+			// Un reenviament es resol amb una lectura, sense agafar el bloqueig d'escriptura
+			if (ticket.getIdempotencyKey() != null) {
+				int existing = findTicketIdByKey(conn, ticket.getIdempotencyKey());
+				if (existing != 0) {
+					ticket.setTicketId(existing);
+					return true;
 				}
 			}
+			return TransactionTemplate.execute(conn, tx -> {
+				insertTicketRow(tx, ticket, now);
+				return true;
+			});
+		} catch (SQLException e) {
+			System.err.println("Error inserint el tiquet: " + e.getMessage());
+			return false;
+		}
+	}
 
-			// Obtenir l'ID generat pel ticket inserit
-			try (Statement idStmt = conn.createStatement();
-					ResultSet generatedKeys = idStmt.executeQuery("SELECT last_insert_rowid()")) {
-				if (generatedKeys.next()) {
-					int generatedId = generatedKeys.getInt(1);
-					ticket.setTicketId(generatedId);
-
-					// Inserir línies del tiquet
-					for (TicketLine line : ticket.getLines()) {
-						line.setTicketId(generatedId);
-						if (!ticketLineDAO.insertLine(line)) {
-							conn.rollback();
-							return false;
-						}
-					}
-				} else {
-					conn.rollback();
-					return false;
+	/**
+	 * Insereix diversos tiquets amb les seves línies en una sola transacció, de
+	 * manera que el cost de confirmar-la es reparteix entre tots. Cada tiquet té
+	 * un punt de desament propi: si un falla, només es desfà aquell i la resta es
+	 * desen igualment.
+	 *
+	 * @param tickets tiquets a inserir; als inserits se'ls assigna el ticketId
+	 * @return error de cada tiquet, en el mateix ordre, o null per als inserits
+	 * @throws SQLException si falla la transacció sencera; llavors no se'n desa cap
+	 */
+	public List<SQLException> insertTickets(List<Ticket> tickets) throws SQLException {
+		String now = LocalDateTime.now().format(formatter);
+
+		return TransactionTemplate.execute(conn, tx -> {
+			List<SQLException> errors = new ArrayList<>(tickets.size());
+			for (Ticket ticket : tickets) {
+				Savepoint savepoint = tx.setSavepoint();
+				try {
+					insertTicketRow(tx, ticket, now);
+					errors.add(null);
+				} catch (SQLException e) {
+					tx.rollback(savepoint);
+					ticket.setTicketId(0);
+					errors.add(e);
 				}
+				tx.releaseSavepoint(savepoint);
 			}
+			return errors;
+		});
+	}
 
-			conn.commit();
-			return true;
+	/**
+	 * Insereix la fila d'un tiquet, les seves línies i la seva clau
+	 * d'idempotència, si en té. Si la clau ja existeix, només assigna al tiquet
+	 * el ticketId ja desat. S'ha de cridar dins d'una transacció oberta.
+	 */
+	private void insertTicketRow(Connection tx, Ticket ticket, String now) throws SQLException {
+		String sql = "INSERT INTO tickets (user_id, total, status, created_at, updated_at) VALUES (?, ?, ?, ?, ?)";
+		String key = ticket.getIdempotencyKey();
+
+		// Dins la transacció d'escriptura cap altra connexió pot desar la clau alhora
+		if (key != null) {
+			int existing = findTicketIdByKey(tx, key);
+			if (existing != 0) {
+				ticket.setTicketId(existing);
+				return;
+			}
+		}
 
-		} catch (SQLException e) {
-			e.printStackTrace();
-			try {
-				conn.rollback();
-			} catch (SQLException ex) {
-				ex.printStackTrace();
+		try (PreparedStatement stmt = tx.prepareStatement(sql)) {
+			stmt.setInt(1, ticket.getUserId());
+			stmt.setDouble(2, ticket.getTotal());
+			stmt.setString(3, ticket.getStatus());
+			stmt.setString(4, now);
+			stmt.setString(5, now);
+
+			if (stmt.executeUpdate() == 0) {
+				throw new SQLException("No s'ha inserit el tiquet");
 			}
-			return false;
-		} finally {
-			try {
-				conn.setAutoCommit(true);
-			} catch (SQLException ex) {
-				ex.printStackTrace();
+		}
+
+		// Obtenir l'ID generat pel ticket inserit
+		try (Statement idStmt = tx.createStatement();
+				ResultSet generatedKeys = idStmt.executeQuery("SELECT last_insert_rowid()")) {
+			if (!generatedKeys.next()) {
+				throw new SQLException("No s'ha obtingut l'identificador del tiquet");
+			}
+			int generatedId = generatedKeys.getInt(1);
+			ticket.setTicketId(generatedId);
+
+			// Inserir línies del tiquet en un sol lot
+			for (TicketLine line : ticket.getLines()) {
+				line.setTicketId(generatedId);
+			}
+			if (!insertLinesBatch(ticket)) {
+				throw new SQLException("No s'han inserit les línies del tiquet " + generatedId);
+			}
+		}
+
+		if (key != null) {
+			String keySql = "INSERT INTO ticket_idempotency (idempotency_key, ticket_id, created_at) VALUES (?, ?, ?)";
+			try (PreparedStatement stmt = tx.prepareStatement(keySql)) {
+				stmt.setString(1, key);
+				stmt.setInt(2, ticket.getTicketId());
+				stmt.setString(3, now);
+				stmt.executeUpdate();
 			}
 		}
+
+		salesRollup.addTicket(ticket.getTicketId());
 	}
 
 	/**
-	 * Obté tots els tiquets ordenats per data de creació descendent.
-	 * 
-	 * @return llista de tiquets
+	 * @return ticketId desat amb la clau d'idempotència, o 0 si no n'hi ha cap
 	 */
-	public List<Ticket> getAllTickets() {
-		List<Ticket> tickets = new ArrayList<>();
-		String sql = "SELECT * FROM tickets ORDER BY created_at DESC";
+	private static int findTicketIdByKey(Connection conn, String key) throws SQLException {
+		String sql = "SELECT ticket_id FROM ticket_idempotency WHERE idempotency_key = ?";
 
-		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-
-			while (rs.next()) {
-				Ticket ticket = new Ticket(rs.getInt("ticket_id"), rs.getInt("user_id"), rs.getDouble("total"),
-						rs.getString("status"), rs.getString("created_at"), rs.getString("updated_at"));
-				ticket.setLines(ticketLineDAO.getLinesByTicketId(ticket.getTicketId()));
-				tickets.add(ticket);
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setString(1, key);
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : 0;
 			}
+		}
+	}
 
+	/**
+	 * Elimina les claus d'idempotència desades abans d'un moment donat. Passat
+	 * aquest temps, un reenviament amb una clau purgada crearia un tiquet nou.
+	 *
+	 * @param olderThan les claus anteriors a aquest moment s'eliminen
+	 * @return claus eliminades, o -1 si hi ha un error
+	 */
+	public int purgeIdempotencyKeys(LocalDateTime olderThan) {
+		String sql = "DELETE FROM ticket_idempotency WHERE created_at < ?";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setString(1, olderThan.format(formatter));
+			return stmt.executeUpdate();
 		} catch (SQLException e) {
-			e.printStackTrace();
+			System.err.println("Error purgant les claus d'idempotència: " + e.getMessage());
+			return -1;
 		}
+	}
 
-		return tickets;
+	/**
+	 * Insereix totes les línies d'un tiquet en un sol lot i informa de les que
+	 * fallen. S'ha de cridar dins d'una transacció oberta.
+	 * 
+	 * @param ticket tiquet amb les línies ja assignades al seu identificador
+	 * @return {@code true} si totes les línies s'han inserit
+	 */
+	private boolean insertLinesBatch(Ticket ticket) {
+		if (ticket.getLines().isEmpty()) {
+			return true;
+		}
+
+		TicketLineDAO.BatchResult result = ticketLineDAO.insertLines(ticket.getLines());
+		if (result.isSuccess()) {
+			return true;
+		}
+
+		for (TicketLine failed : result.failedLines()) {
+			System.err.println("Error inserint línia del tiquet " + ticket.getTicketId() + ": " + failed);
+		}
+		if (result.error() != null) {
+			System.err.println("Error en el lot de línies: " + result.error().getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Obté tots els tiquets ordenats per data de creació descendent.
+	 * 
+	 * @return llista de tiquets
+	 */
+	public List<Ticket> getAllTickets() {
+		return getTicketsWithLines(null);
 	}
 
 	/**
@@ -168,103 +276,164 @@ public class TicketDAO {
 	 * @param ticket tiquet amb les dades actualitzades
 	 * @return {@code true} si l'actualització ha tingut èxit; {@code false} en cas
 	 *         contrari
+	 * @see #saveTicket(Ticket)
 	 */
 	public boolean updateTicket(Ticket ticket) {
+		return saveTicket(ticket) != null;
+	}
+
+	/**
+	 * Actualitza un tiquet i només les línies que han canviat, comparant-les per
+	 * {@code ticket_line_id} amb les guardades: insereix les noves, actualitza les
+	 * modificades i elimina les que ja no hi són. La operació és atòmica.
+	 * 
+	 * @param ticket tiquet amb les dades actualitzades
+	 * @return files de línies tocades, o null si l'actualització ha fallat
+	 */
+	public TicketLineDAO.LineChanges saveTicket(Ticket ticket) {
 		String sql = "UPDATE tickets SET user_id = ?, total = ?, status = ?, updated_at = ? WHERE ticket_id = ?";
 		String now = LocalDateTime.now().format(formatter);
 
 		try {
-			conn.setAutoCommit(false);
-
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setInt(1, ticket.getUserId());
-				stmt.setDouble(2, ticket.getTotal());
-				stmt.setString(3, ticket.getStatus());
-				stmt.setString(4, now);
-				stmt.setInt(5, ticket.getTicketId());
-
-				int updated = stmt.executeUpdate();
-				if (updated == 0) {
-					conn.rollback();
-					return false;
+			return TransactionTemplate.execute(conn, tx -> {
+				salesRollup.removeTicket(ticket.getTicketId());
+
+				try (PreparedStatement stmt = tx.prepareStatement(sql)) {
+					stmt.setInt(1, ticket.getUserId());
+					stmt.setDouble(2, ticket.getTotal());
+					stmt.setString(3, ticket.getStatus());
+					stmt.setString(4, now);
+					stmt.setInt(5, ticket.getTicketId());
+
+					if (stmt.executeUpdate() == 0) {
+						throw new SQLException("No existeix el tiquet " + ticket.getTicketId());
+					}
 				}
-			}
 
-			if (!ticketLineDAO.deleteLinesByTicketId(ticket.getTicketId())) {
-				conn.rollback();
-				return false;
-			}
+				TicketLineDAO.LineChanges changes = ticketLineDAO.syncLines(ticket.getTicketId(), ticket.getLines());
+				salesRollup.addTicket(ticket.getTicketId());
+				return changes;
+			});
+		} catch (SQLException e) {
+			System.err.println("Error actualitzant el tiquet: " + e.getMessage());
+			return null;
+		}
+	}
 
-			for (TicketLine line : ticket.getLines()) {
-				line.setTicketId(ticket.getTicketId());
-				if (!ticketLineDAO.insertLine(line)) {
-					conn.rollback();
-					return false;
+	/**
+	 * Recalcula el total d'un tiquet a partir de les seves línies guardades
+	 * ({@code quantity * price}) i el desa, tot en una sola sentència.
+	 *
+	 * @param ticketId identificador del tiquet
+	 * @return fila actualitzada del tiquet (sense línies), o null si no existeix o
+	 *         hi ha un error
+	 */
+	public Ticket recalculateTotal(int ticketId) {
+		String sql = "UPDATE tickets SET total = (SELECT COALESCE(SUM(quantity * price), 0) FROM ticket_lines "
+				+ "WHERE ticket_id = ?), updated_at = ? WHERE ticket_id = ? RETURNING *";
+		String now = LocalDateTime.now().format(formatter);
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setInt(1, ticketId);
+			stmt.setString(2, now);
+			stmt.setInt(3, ticketId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return mapTicket(rs);
 				}
 			}
-
-			conn.commit();
-			return true;
-
 		} catch (SQLException e) {
-			e.printStackTrace();
-			try {
-				conn.rollback();
-			} catch (SQLException ex) {
-				ex.printStackTrace();
-			}
-			return false;
-		} finally {
-			try {
-				conn.setAutoCommit(true);
-			} catch (SQLException ex) {
-				ex.printStackTrace();
-			}
+			System.err.println("Error recalculant el total del tiquet: " + e.getMessage());
 		}
+		return null;
 	}
 
 	/**
-	 * Elimina un tiquet i les seves línies associades. La eliminació és atòmica.
+	 * Elimina un tiquet, les seves línies associades i la seva clau
+	 * d'idempotència. La eliminació és atòmica.
 	 * 
 	 * @param ticketId identificador del tiquet a eliminar
 	 * @return {@code true} si la eliminació ha tingut èxit; {@code false} en cas
 	 *         contrari
 	 */
 	public boolean deleteTicket(int ticketId) {
+		String sql = "DELETE FROM tickets WHERE ticket_id = ?";
+
 		try {
-			conn.setAutoCommit(false);
+			return TransactionTemplate.execute(conn, tx -> {
+				salesRollup.removeTicket(ticketId);
 
-			if (!ticketLineDAO.deleteLinesByTicketId(ticketId)) {
-				conn.rollback();
-				return false;
-			}
+				if (!ticketLineDAO.deleteLinesByTicketId(ticketId)) {
+					throw new SQLException("No s'han eliminat les línies del tiquet " + ticketId);
+				}
 
-			String sql = "DELETE FROM tickets WHERE ticket_id = ?";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setInt(1, ticketId);
-				if (stmt.executeUpdate() == 0) {
-					conn.rollback();
-					return false;
+				try (PreparedStatement stmt = tx.prepareStatement(
+						"DELETE FROM ticket_idempotency WHERE ticket_id = ?")) {
+					stmt.setInt(1, ticketId);
+					stmt.executeUpdate();
 				}
-			}
 
-			conn.commit();
-			return true;
+				try (PreparedStatement stmt = tx.prepareStatement(sql)) {
+					stmt.setInt(1, ticketId);
+					if (stmt.executeUpdate() == 0) {
+						throw new SQLException("No existeix el tiquet " + ticketId);
+					}
+				}
+				return true;
+			});
+		} catch (SQLException e) {
+			System.err.println("Error eliminant el tiquet: " + e.getMessage());
+			return false;
+		}
+	}
 
+	/**
+	 * Afegeix una línia a un tiquet ja desat i actualitza els resums de vendes,
+	 * tot en una transacció.
+	 *
+	 * @param line línia amb el ticketId del tiquet assignat
+	 * @return {@code true} si s'ha afegit; {@code false} en cas contrari
+	 */
+	public boolean addLine(TicketLine line) {
+		try {
+			return TransactionTemplate.execute(conn, tx -> {
+				salesRollup.removeTicket(line.getTicketId());
+				boolean inserted = ticketLineDAO.insertLine(line);
+				salesRollup.addTicket(line.getTicketId());
+				return inserted;
+			});
 		} catch (SQLException e) {
-			e.printStackTrace();
-			try {
-				conn.rollback();
-			} catch (SQLException ex) {
-				ex.printStackTrace();
-			}
+			System.err.println("Error afegint la línia al tiquet " + line.getTicketId() + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Elimina una línia d'un tiquet desat i actualitza els resums de vendes, tot
+	 * en una transacció.
+	 *
+	 * @param ticketId     identificador del tiquet de la línia
+	 * @param ticketLineId identificador de la línia
+	 * @return {@code true} si s'ha eliminat; {@code false} en cas contrari
+	 */
+	public boolean removeLine(int ticketId, int ticketLineId) {
+		String sql = "DELETE FROM ticket_lines WHERE ticket_line_id = ? AND ticket_id = ?";
+
+		try {
+			return TransactionTemplate.execute(conn, tx -> {
+				salesRollup.removeTicket(ticketId);
+				int deleted;
+				try (PreparedStatement stmt = tx.prepareStatement(sql)) {
+					stmt.setInt(1, ticketLineId);
+					stmt.setInt(2, ticketId);
+					deleted = stmt.executeUpdate();
+				}
+				salesRollup.addTicket(ticketId);
+				return deleted > 0;
+			});
+		} catch (SQLException e) {
+			System.err.println("Error eliminant la línia " + ticketLineId + ": " + e.getMessage());
 			return false;
-		} finally {
-			try {
-				conn.setAutoCommit(true);
-			} catch (SQLException ex) {
-				ex.printStackTrace();
-			}
 		}
 	}
 
@@ -275,26 +444,281 @@ public class TicketDAO {
 	 * @return llista de tiquets amb l'estat especificat
 	 */
 	public List<Ticket> getTicketsByStatus(String status) {
+		return getTicketsWithLines("t.status = ?", status);
+	}
+
+	/**
+	 * Carrega els tiquets que compleixen un filtre juntament amb les seves línies.
+	 * <p>
+	 * Fa dues consultes en total (tiquets i línies amb la seva beguda) i munta el
+	 * graf d'objectes en memòria, en lloc de fer una consulta per tiquet i una
+	 * altra per línia.
+	 * </p>
+	 * 
+	 * @param ticketFilter condició SQL sobre l'àlies {@code t}, o null per
+	 *                     carregar-los tots
+	 * @param params       paràmetres de la condició
+	 * @return llista de tiquets ordenats per data de creació descendent
+	 */
+	private List<Ticket> getTicketsWithLines(String ticketFilter, Object... params) {
 		List<Ticket> tickets = new ArrayList<>();
-		String sql = "SELECT * FROM tickets WHERE status = ? ORDER BY created_at DESC";
+		String sql = "SELECT * FROM tickets t " + (ticketFilter != null ? "WHERE " + ticketFilter + " " : "")
+				+ "ORDER BY t.created_at DESC";
 
 		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			stmt.setString(1, status);
+			for (int i = 0; i < params.length; i++) {
+				stmt.setObject(i + 1, params[i]);
+			}
 			try (ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
-					Ticket ticket = new Ticket(rs.getInt("ticket_id"), rs.getInt("user_id"), rs.getDouble("total"),
-							rs.getString("status"), rs.getString("created_at"), rs.getString("updated_at"));
-					ticket.setLines(ticketLineDAO.getLinesByTicketId(ticket.getTicketId()));
-					tickets.add(ticket);
+					tickets.add(mapTicket(rs));
+				}
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return tickets;
+		}
+
+		if (tickets.isEmpty()) {
+			return tickets;
+		}
+
+		Map<Integer, List<TicketLine>> linesByTicket = ticketLineDAO.getLinesGroupedByTicket(ticketFilter, params);
+		for (Ticket ticket : tickets) {
+			ticket.setLines(linesByTicket.getOrDefault(ticket.getTicketId(), new ArrayList<>()));
+		}
+
+		return tickets;
+	}
+
+	/**
+	 * Compta els tiquets que compleixen un filtre.
+	 * 
+	 * @param filter filtre a aplicar; null per comptar-los tots
+	 * @return nombre de tiquets, o 0 si hi ha un error
+	 */
+	public int countTickets(TicketFilter filter) {
+		List<Object> params = new ArrayList<>();
+		String where = filter != null ? filter.toSql(params) : null;
+		String sql = "SELECT COUNT(*) FROM tickets t" + (where != null ? " WHERE " + where : "");
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			bindParams(stmt, params);
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : 0;
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return 0;
+		}
+	}
+
+	/**
+	 * Obté una pàgina de tiquets, amb les seves línies, ordenats per data de
+	 * creació i identificador descendents.
+	 * <p>
+	 * La paginació és per clau ({@code created_at}, {@code ticket_id}): el cost
+	 * de cada pàgina no depèn de la seva posició dins l'historial.
+	 * </p>
+	 * 
+	 * @param filter   filtre a aplicar; null per no filtrar
+	 * @param after    clau de l'últim tiquet de la pàgina anterior, o null per la
+	 *                 primera pàgina
+	 * @param pageSize nombre màxim de tiquets a retornar
+	 * @return tiquets de la pàgina; buida si no n'hi ha més
+	 */
+	public List<Ticket> getTicketsPage(TicketFilter filter, PageKey after, int pageSize) {
+		List<Ticket> tickets = new ArrayList<>();
+		List<Object> params = new ArrayList<>();
+		String sql = "SELECT * FROM tickets t" + keysetWhere(filter, after, params)
+				+ " ORDER BY t.created_at DESC, t.ticket_id DESC LIMIT ?";
+		params.add(pageSize);
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			bindParams(stmt, params);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					tickets.add(mapTicket(rs));
 				}
 			}
 		} catch (SQLException e) {
 			e.printStackTrace();
+			return tickets;
+		}
+
+		if (tickets.isEmpty()) {
+			return tickets;
+		}
+
+		Object[] ids = tickets.stream().map(Ticket::getTicketId).toArray();
+		String placeholders = String.join(", ", Collections.nCopies(ids.length, "?"));
+		Map<Integer, List<TicketLine>> linesByTicket = ticketLineDAO
+				.getLinesGroupedByTicket("t.ticket_id IN (" + placeholders + ")", ids);
+		for (Ticket ticket : tickets) {
+			ticket.setLines(linesByTicket.getOrDefault(ticket.getTicketId(), new ArrayList<>()));
 		}
 
 		return tickets;
 	}
 
+	/**
+	 * Obté la clau del tiquet que ocupa una posició concreta dins l'ordre de
+	 * paginació. Permet saltar directament a una pàgina llunyana sense carregar
+	 * les anteriors; només llegeix columnes de l'índex, i comptant des d'una clau
+	 * coneguda només recorre les files que hi ha entre totes dues.
+	 * 
+	 * @param filter filtre a aplicar; null per no filtrar
+	 * @param after  clau a partir de la qual es compta, o null per comptar des del
+	 *               tiquet més recent
+	 * @param offset posició després de {@code after} (0 = el tiquet següent)
+	 * @return clau del tiquet o null si la posició és fora de rang
+	 */
+	public PageKey getPageKeyAt(TicketFilter filter, PageKey after, int offset) {
+		List<Object> params = new ArrayList<>();
+		String sql = "SELECT t.created_at, t.ticket_id FROM tickets t" + keysetWhere(filter, after, params)
+				+ " ORDER BY t.created_at DESC, t.ticket_id DESC LIMIT 1 OFFSET ?";
+		params.add(offset);
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			bindParams(stmt, params);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return new PageKey(rs.getString("created_at"), rs.getInt("ticket_id"));
+				}
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Recorre els tiquets que compleixen un filtre juntament amb les seves línies,
+	 * fila a fila, amb un cursor només cap endavant. No guarda res a memòria:
+	 * cada fila es passa al {@code handler} i es descarta, de manera que es pot
+	 * recórrer tot l'historial amb memòria constant.
+	 * <p>
+	 * Les files surten ordenades per data de creació, tiquet i línia. Els tiquets
+	 * sense línies surten en una sola fila amb {@code ticketLineId} 0. El preu és
+	 * el guardat a la línia en el moment de la venda.
+	 * </p>
+	 * 
+	 * @param filter    filtre a aplicar; null per recórrer-los tots
+	 * @param fetchSize files que es demanen al controlador per cada lectura
+	 * @param handler   rep cada fila
+	 * @return nombre de files recorregudes
+	 * @throws SQLException si hi ha un error a la base de dades
+	 * @throws IOException  si el {@code handler} falla
+	 */
+	public long forEachSalesRow(TicketFilter filter, int fetchSize, SalesRowHandler handler)
+			throws SQLException, IOException {
+		List<Object> params = new ArrayList<>();
+		String where = filter != null ? filter.toSql(params) : null;
+		String sql = "SELECT t.ticket_id, t.user_id, t.status, t.created_at, t.updated_at, t.total, "
+				+ "tl.ticket_line_id, tl.drink_id, d.name AS drink_name, tl.quantity, tl.price FROM tickets t "
+				+ "LEFT JOIN ticket_lines tl ON tl.ticket_id = t.ticket_id "
+				+ "LEFT JOIN drinks d ON d.drink_id = tl.drink_id" + (where != null ? " WHERE " + where : "")
+				+ " ORDER BY t.created_at, t.ticket_id, tl.ticket_line_id";
+
+		long rows = 0;
+		try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY)) {
+			stmt.setFetchSize(fetchSize);
+			bindParams(stmt, params);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					handler.accept(new SalesRow(rs.getInt("ticket_id"), rs.getInt("user_id"), rs.getString("status"),
+							rs.getString("created_at"), rs.getString("updated_at"), rs.getDouble("total"),
+							rs.getInt("ticket_line_id"), rs.getInt("drink_id"), rs.getString("drink_name"),
+							rs.getInt("quantity"), rs.getDouble("price")));
+					rows++;
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Rep les files de {@link TicketDAO#forEachSalesRow}.
+	 */
+	@FunctionalInterface
+	public interface SalesRowHandler {
+
+		/**
+		 * @param row fila actual
+		 * @throws IOException si no es pot processar la fila
+		 */
+		void accept(SalesRow row) throws IOException;
+	}
+
+	/**
+	 * Una línia de venda amb les dades del seu tiquet.
+	 *
+	 * @param ticketId     identificador del tiquet
+	 * @param userId       usuari del tiquet
+	 * @param status       estat del tiquet
+	 * @param createdAt    data de creació del tiquet
+	 * @param updatedAt    data d'actualització del tiquet
+	 * @param ticketTotal  total guardat del tiquet
+	 * @param ticketLineId identificador de la línia, o 0 si el tiquet no en té
+	 * @param drinkId      beguda de la línia
+	 * @param drinkName    nom de la beguda, o null si ja no existeix
+	 * @param quantity     quantitat
+	 * @param price        preu unitari guardat a la línia
+	 */
+	public record SalesRow(int ticketId, int userId, String status, String createdAt, String updatedAt,
+			double ticketTotal, int ticketLineId, int drinkId, String drinkName, int quantity, double price) {
+	}
+
+	/**
+	 * Construeix la clàusula WHERE que combina el filtre i la condició de clau.
+	 */
+	private String keysetWhere(TicketFilter filter, PageKey after, List<Object> params) {
+		List<String> conditions = new ArrayList<>();
+		String where = filter != null ? filter.toSql(params) : null;
+		if (where != null) {
+			conditions.add(where);
+		}
+		if (after != null) {
+			conditions.add("(t.created_at, t.ticket_id) < (?, ?)");
+			params.add(after.createdAt());
+			params.add(after.ticketId());
+		}
+		return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+	}
+
+	private void bindParams(PreparedStatement stmt, List<Object> params) throws SQLException {
+		for (int i = 0; i < params.size(); i++) {
+			stmt.setObject(i + 1, params.get(i));
+		}
+	}
+
+	/**
+	 * Construeix un tiquet (sense línies) a partir de la fila actual.
+	 */
+	private Ticket mapTicket(ResultSet rs) throws SQLException {
+		return new Ticket(rs.getInt("ticket_id"), rs.getInt("user_id"), rs.getDouble("total"), rs.getString("status"),
+				rs.getString("created_at"), rs.getString("updated_at"));
+	}
+
+	/**
+	 * Clau de paginació d'un tiquet: posició dins l'ordre (created_at,
+	 * ticket_id) descendent.
+	 *
+	 * @param createdAt data de creació del tiquet
+	 * @param ticketId  identificador del tiquet
+	 */
+	public record PageKey(String createdAt, int ticketId) {
+
+		/**
+		 * @param ticket tiquet del qual obtenir la clau
+		 * @return clau de paginació del tiquet
+		 */
+		public static PageKey of(Ticket ticket) {
+			return new PageKey(ticket.getCreatedAt(), ticket.getTicketId());
+		}
+	}
+
 	/**
 	 * Actualitza l’estat d’un tiquet.
 	 * 
@@ -305,14 +729,21 @@ public class TicketDAO {
 		String sql = "UPDATE tickets SET status = ?, updated_at = ? WHERE ticket_id = ?";
 		String now = LocalDateTime.now().format(formatter);
 
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			stmt.setString(1, newStatus);
-			stmt.setString(2, now);
-			stmt.setInt(3, ticketId);
-			int rowsUpdated = stmt.executeUpdate();
-			if (rowsUpdated == 0) {
-				System.err.println("No s'ha trobat cap tiquet amb id: " + ticketId);
-			}
+		try {
+			TransactionTemplate.execute(conn, tx -> {
+				// Les vendes del tiquet passen de l'estat antic al nou als resums
+				salesRollup.removeTicket(ticketId);
+				try (PreparedStatement stmt = tx.prepareStatement(sql)) {
+					stmt.setString(1, newStatus);
+					stmt.setString(2, now);
+					stmt.setInt(3, ticketId);
+					if (stmt.executeUpdate() == 0) {
+						System.err.println("No s'ha trobat cap tiquet amb id: " + ticketId);
+					}
+				}
+				salesRollup.addTicket(ticketId);
+				return null;
+			});
 		} catch (SQLException e) {
 			System.err.println("Error actualitzant estat del tiquet: " + e.getMessage());
 		}
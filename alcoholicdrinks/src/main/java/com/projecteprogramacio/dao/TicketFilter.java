@@ -0,0 +1,119 @@
+package com.projecteprogramacio.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filtre opcional per a les consultes paginades de tiquets.
+ * <p>
+ * Tots els camps són opcionals: un camp a null no filtra. Les dates es comparen
+ * amb {@code created_at} en format {@code yyyy-MM-dd HH:mm:ss}; {@code from} és
+ * inclusiva i {@code to} exclusiva.
+ * </p>
+ *
+ * @author Josuè González
+ * @version 1.0
+ */
+public class TicketFilter {
+
+	/** Estat del tiquet (p. ex. "CREAT"). */
+	private String status;
+
+	/** Identificador de l'usuari propietari del tiquet. */
+	private Integer userId;
+
+	/** Data de creació mínima (inclusiva). */
+	private String from;
+
+	/** Data de creació màxima (exclusiva). */
+	private String to;
+
+	/**
+	 * Crea un filtre buit que no restringeix cap tiquet.
+	 */
+	public TicketFilter() {
+	}
+
+	/**
+	 * Crea un filtre amb tots els camps.
+	 *
+	 * @param status estat del tiquet o null
+	 * @param userId identificador d'usuari o null
+	 * @param from   data mínima (inclusiva) o null
+	 * @param to     data màxima (exclusiva) o null
+	 */
+	public TicketFilter(String status, Integer userId, String from, String to) {
+		this.status = status;
+		this.userId = userId;
+		this.from = from;
+		this.to = to;
+	}
+
+	/** @return Estat pel qual es filtra, o null. */
+	public String getStatus() {
+		return status;
+	}
+
+	/** @param status Nou estat pel qual filtrar. */
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	/** @return Usuari pel qual es filtra, o null. */
+	public Integer getUserId() {
+		return userId;
+	}
+
+	/** @param userId Nou usuari pel qual filtrar. */
+	public void setUserId(Integer userId) {
+		this.userId = userId;
+	}
+
+	/** @return Data mínima de creació, o null. */
+	public String getFrom() {
+		return from;
+	}
+
+	/** @param from Nova data mínima de creació (inclusiva). */
+	public void setFrom(String from) {
+		this.from = from;
+	}
+
+	/** @return Data màxima de creació, o null. */
+	public String getTo() {
+		return to;
+	}
+
+	/** @param to Nova data màxima de creació (exclusiva). */
+	public void setTo(String to) {
+		this.to = to;
+	}
+
+	/**
+	 * Construeix la condició SQL sobre l'àlies {@code t} de la taula tickets i
+	 * afegeix els paràmetres corresponents a {@code params}.
+	 *
+	 * @param params llista on s'afegeixen els paràmetres, en ordre
+	 * @return condició SQL, o null si el filtre és buit
+	 */
+	String toSql(List<Object> params) {
+		List<String> conditions = new ArrayList<>();
+		if (status != null) {
+			conditions.add("t.status = ?");
+			params.add(status);
+		}
+		if (userId != null) {
+			conditions.add("t.user_id = ?");
+			params.add(userId);
+		}
+		if (from != null) {
+			conditions.add("t.created_at >= ?");
+			params.add(from);
+		}
+		if (to != null) {
+			conditions.add("t.created_at < ?");
+			params.add(to);
+		}
+		return conditions.isEmpty() ? null : String.join(" AND ", conditions);
+	}
+}
@@ -5,21 +5,33 @@ import com.projecteprogramacio.model.TicketLine;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class TicketLineDAO {
 
 	private final Connection conn;
-	private final DrinkDAO drinkDAO;
 
 	public TicketLineDAO(Connection conn) {
 		this.conn = conn;
-		this.drinkDAO = new DrinkDAO(conn);
 	}
 
 	/**
-	 * Obté totes les línies d’un tiquet a partir del seu ID. Recupera les línies i
-	 * el detall de la beguda associada a cada línia.
+	 * Consulta base per carregar línies amb el preu guardat i només el nom de la
+	 * beguda. El LEFT JOIN conserva les línies de begudes que ja no existeixen.
+	 */
+	private static final String LINES_SQL = "SELECT tl.ticket_line_id, tl.ticket_id, tl.drink_id, tl.quantity, "
+			+ "tl.price, d.name AS drink_name FROM ticket_lines tl JOIN tickets t ON t.ticket_id = tl.ticket_id "
+			+ "LEFT JOIN drinks d ON d.drink_id = tl.drink_id ";
+
+	/**
+	 * Obté totes les línies d’un tiquet a partir del seu ID amb una sola consulta.
+	 * Cada línia porta el preu guardat i una beguda amb només l'identificador i el
+	 * nom; el detall s'ha de carregar a part si cal
+	 * ({@link DrinkDAO#getDrinkById(int)}).
 	 * 
 	 * Aquest mètode és complementari al mètode getTicketById() del TicketDAO, que
 	 * utilitza aquest per carregar les línies associades a un ticket.
@@ -28,38 +40,67 @@ public class TicketLineDAO {
 	 * @return Llista de línies de tiquet associades.
 	 */
 	public List<TicketLine> getLinesByTicketId(int ticketId) {
-		List<TicketLine> lines = new ArrayList<>();
-		String sql = "SELECT * FROM ticket_lines WHERE ticket_id = ?";
+		return getLinesGroupedByTicket("t.ticket_id = ?", ticketId).getOrDefault(ticketId, new ArrayList<>());
+	}
+
+	/**
+	 * Carrega en bloc les línies de tots els tiquets que compleixen un filtre,
+	 * agrupades per identificador de tiquet.
+	 * <p>
+	 * Fa una única consulta que llegeix les columnes de {@code ticket_lines}
+	 * (quantitat i preu guardat) i el nom de la beguda, sense cap consulta per
+	 * línia. Les línies que apunten a la mateixa beguda comparteixen el mateix
+	 * objecte Drink, que només té l'identificador i el nom.
+	 * </p>
+	 *
+	 * @param ticketFilter condició SQL sobre l'àlies {@code t} de la taula tickets
+	 *                     (p. ex. {@code "t.status = ?"}), o null per no filtrar
+	 * @param params       paràmetres de la condició, en ordre
+	 * @return mapa ticket_id → línies del tiquet; els tiquets sense línies no hi
+	 *         apareixen
+	 */
+	Map<Integer, List<TicketLine>> getLinesGroupedByTicket(String ticketFilter, Object... params) {
+		Map<Integer, List<TicketLine>> linesByTicket = new HashMap<>();
+		Map<Integer, Drink> drinksById = new HashMap<>();
+		String sql = LINES_SQL + (ticketFilter != null ? "WHERE " + ticketFilter + " " : "")
+				+ "ORDER BY tl.ticket_id, tl.ticket_line_id";
 
 		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			stmt.setInt(1, ticketId);
+			for (int i = 0; i < params.length; i++) {
+				stmt.setObject(i + 1, params[i]);
+			}
 			try (ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
 					int drinkId = rs.getInt("drink_id");
-					// Obtenció detallada de la beguda associada per a cada línia
-					Drink drink = drinkDAO.getDrinkById(drinkId);
-
-					if (drink != null) {
-						TicketLine line = new TicketLine(rs.getInt("ticket_line_id"), rs.getInt("ticket_id"), drink,
-								rs.getInt("quantity"));
-						lines.add(line);
+					Drink drink = drinksById.get(drinkId);
+					if (drink == null) {
+						drink = new Drink();
+						drink.setDrinkId(drinkId);
+						drink.setName(rs.getString("drink_name"));
+						drinksById.put(drinkId, drink);
 					}
+
+					int ticketId = rs.getInt("ticket_id");
+					TicketLine line = new TicketLine(rs.getInt("ticket_line_id"), ticketId, drink,
+							rs.getInt("quantity"), rs.getDouble("price"));
+					linesByTicket.computeIfAbsent(ticketId, id -> new ArrayList<>()).add(line);
 				}
 			}
 		} catch (SQLException e) {
-			System.err.println("Error obtenint les línies del tiquet: " + e.getMessage());
+			System.err.println("Error obtenint les línies dels tiquets: " + e.getMessage());
 			e.printStackTrace();
 		}
 
-		return lines;
+		return linesByTicket;
 	}
 
 	/**
 	 * Insereix una nova línia dins d’un tiquet a la base de dades.
 	 * 
-	 * Aquest mètode s’utilitza dins del mètode insertTicket() i updateTicket() del
-	 * TicketDAO per afegir les línies associades després d’inserir o actualitzar el
-	 * tiquet.
+	 * Per inserir les línies d'un tiquet dins la seva transacció s'utilitzen
+	 * {@link #insertLines(List)} i {@link #syncLines(int, List)}. No actualitza
+	 * els resums de vendes; per afegir una línia a un tiquet desat, vegeu
+	 * {@link TicketDAO#addLine(TicketLine)}.
 	 *
 	 * @param line Objecte TicketLine que conté la informació a inserir.
 	 * @return true si la inserció s’ha realitzat correctament, false en cas
@@ -73,18 +114,256 @@ public class TicketLineDAO {
 			stmt.setInt(1, line.getTicketId());
 			stmt.setInt(2, line.getDrink().getDrinkId());
 			stmt.setInt(3, line.getQuantity());
-			stmt.setDouble(4, line.getDrink().getPrice());
+			stmt.setDouble(4, line.getPrice());
 
 			return stmt.executeUpdate() > 0;
 		}
 	}
 
+	/**
+	 * Insereix un conjunt de línies (d'un o de diversos tiquets) amb una sola
+	 * sentència preparada i un únic {@code executeBatch}.
+	 * <p>
+	 * No gestiona la transacció: s'ha de cridar dins la transacció del TicketDAO
+	 * perquè, si alguna línia falla, el tiquet sencer es desfaci. Les línies sense
+	 * beguda es rebutgen abans d'enviar el lot. Si el lot s'insereix sencer, a cada
+	 * línia se li assigna el {@code ticketLineId} generat.
+	 * </p>
+	 *
+	 * @param lines línies a inserir; cadascuna ha de tenir el ticketId assignat.
+	 * @return resultat del lot amb les files inserides i les línies que han fallat.
+	 */
+	public BatchResult insertLines(List<TicketLine> lines) {
+		List<TicketLine> failed = new ArrayList<>();
+		List<TicketLine> batched = new ArrayList<>(lines.size());
+		String sql = "INSERT INTO ticket_lines (ticket_id, drink_id, quantity, price) VALUES (?, ?, ?, ?)";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (TicketLine line : lines) {
+				if (line.getDrink() == null) {
+					failed.add(line);
+					continue;
+				}
+				stmt.setInt(1, line.getTicketId());
+				stmt.setInt(2, line.getDrink().getDrinkId());
+				stmt.setInt(3, line.getQuantity());
+				stmt.setDouble(4, line.getPrice());
+				stmt.addBatch();
+				batched.add(line);
+			}
+
+			int failedInBatch = batched.isEmpty() ? 0 : collectBatchResult(stmt.executeBatch(), batched, failed);
+			if (failedInBatch == 0) {
+				assignGeneratedIds(batched);
+			}
+			return new BatchResult(batched.size() - failedInBatch, failed, null);
+
+		} catch (BatchUpdateException e) {
+			// El controlador s'atura a la primera fallada: les línies sense recompte
+			// tampoc s'han inserit
+			int failedInBatch = collectBatchResult(e.getUpdateCounts(), batched, failed);
+			return new BatchResult(batched.size() - failedInBatch, failed, e);
+		} catch (SQLException e) {
+			failed.addAll(batched);
+			return new BatchResult(0, failed, e);
+		}
+	}
+
+	/**
+	 * Assigna els identificadors generats a les línies d'un lot inserit sencer.
+	 * Dins la transacció només escriu aquesta connexió, i SQLite dona a cada fila
+	 * el rowid següent al màxim, així que les files del lot tenen identificadors
+	 * consecutius que acaben en {@code last_insert_rowid()}.
+	 */
+	private void assignGeneratedIds(List<TicketLine> batched) throws SQLException {
+		if (batched.isEmpty()) {
+			return;
+		}
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+			if (rs.next()) {
+				int id = rs.getInt(1) - batched.size() + 1;
+				for (TicketLine line : batched) {
+					line.setTicketLineId(id++);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sincronitza les línies guardades d'un tiquet amb les línies donades, per
+	 * {@code ticket_line_id}. Insereix les línies noves (id 0 o que no són del
+	 * tiquet), actualitza les que han canviat de beguda, quantitat o preu i
+	 * elimina les que ja no hi són. Les línies sense canvis no es toquen. Cada
+	 * tipus d'operació s'envia en un sol lot.
+	 * <p>
+	 * No gestiona la transacció: s'ha de cridar dins la transacció del TicketDAO.
+	 * </p>
+	 *
+	 * @param ticketId identificador del tiquet
+	 * @param lines    línies que ha de tenir el tiquet; a les noves se'ls assigna
+	 *                 el ticketId i el ticketLineId generat
+	 * @return nombre de files inserides, actualitzades i eliminades
+	 * @throws SQLException si alguna operació falla o hi ha línies sense beguda
+	 */
+	public LineChanges syncLines(int ticketId, List<TicketLine> lines) throws SQLException {
+		Map<Integer, StoredLine> stored = getStoredLines(ticketId);
+
+		List<TicketLine> toInsert = new ArrayList<>();
+		List<TicketLine> toUpdate = new ArrayList<>();
+		Set<Integer> kept = new HashSet<>();
+
+		for (TicketLine line : lines) {
+			if (line.getDrink() == null) {
+				throw new SQLException("La línia " + line.getTicketLineId() + " del tiquet " + ticketId
+						+ " no té beguda");
+			}
+			line.setTicketId(ticketId);
+
+			StoredLine current = stored.get(line.getTicketLineId());
+			if (current == null || !kept.add(line.getTicketLineId())) {
+				toInsert.add(line);
+			} else if (current.drinkId() != line.getDrink().getDrinkId() || current.quantity() != line.getQuantity()
+					|| Double.compare(current.price(), line.getPrice()) != 0) {
+				toUpdate.add(line);
+			}
+		}
+
+		List<Integer> toDelete = new ArrayList<>();
+		for (Integer id : stored.keySet()) {
+			if (!kept.contains(id)) {
+				toDelete.add(id);
+			}
+		}
+
+		// S'eliminen primer per no superar, ni que sigui temporalment, les línies finals
+		int deleted = executeDeletes(toDelete);
+		int updated = executeUpdates(toUpdate);
+
+		BatchResult inserted = insertLines(toInsert);
+		if (!inserted.isSuccess()) {
+			throw inserted.error() != null ? inserted.error()
+					: new SQLException(inserted.failedLines().size() + " línies no s'han pogut inserir");
+		}
+
+		return new LineChanges(inserted.inserted(), updated, deleted);
+	}
+
+	/**
+	 * @return línies guardades d'un tiquet per ticket_line_id, només amb les
+	 *         columnes que es comparen (les llegeix de l'índex cobert)
+	 */
+	private Map<Integer, StoredLine> getStoredLines(int ticketId) throws SQLException {
+		Map<Integer, StoredLine> stored = new HashMap<>();
+		String sql = "SELECT ticket_line_id, drink_id, quantity, price FROM ticket_lines WHERE ticket_id = ?";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setInt(1, ticketId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					stored.put(rs.getInt("ticket_line_id"),
+							new StoredLine(rs.getInt("drink_id"), rs.getInt("quantity"), rs.getDouble("price")));
+				}
+			}
+		}
+		return stored;
+	}
+
+	private int executeDeletes(List<Integer> lineIds) throws SQLException {
+		if (lineIds.isEmpty()) {
+			return 0;
+		}
+		try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM ticket_lines WHERE ticket_line_id = ?")) {
+			for (Integer id : lineIds) {
+				stmt.setInt(1, id);
+				stmt.addBatch();
+			}
+			return sum(stmt.executeBatch());
+		}
+	}
+
+	private int executeUpdates(List<TicketLine> lines) throws SQLException {
+		if (lines.isEmpty()) {
+			return 0;
+		}
+		String sql = "UPDATE ticket_lines SET drink_id = ?, quantity = ?, price = ? WHERE ticket_line_id = ?";
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (TicketLine line : lines) {
+				stmt.setInt(1, line.getDrink().getDrinkId());
+				stmt.setInt(2, line.getQuantity());
+				stmt.setDouble(3, line.getPrice());
+				stmt.setInt(4, line.getTicketLineId());
+				stmt.addBatch();
+			}
+			return sum(stmt.executeBatch());
+		}
+	}
+
+	private static int sum(int[] counts) {
+		int total = 0;
+		for (int count : counts) {
+			if (count > 0) {
+				total += count;
+			}
+		}
+		return total;
+	}
+
+	/** Columnes d'una línia guardada que es comparen en sincronitzar. */
+	private record StoredLine(int drinkId, int quantity, double price) {
+	}
+
+	/**
+	 * Files tocades en sincronitzar les línies d'un tiquet.
+	 *
+	 * @param inserted línies inserides
+	 * @param updated  línies actualitzades
+	 * @param deleted  línies eliminades
+	 */
+	public record LineChanges(int inserted, int updated, int deleted) {
+
+		/** @return total de files tocades */
+		public int touched() {
+			return inserted + updated + deleted;
+		}
+	}
+
+	/**
+	 * Afegeix a {@code failed} les línies del lot amb recompte erroni o sense
+	 * recompte.
+	 *
+	 * @return nombre de línies del lot que han fallat
+	 */
+	private int collectBatchResult(int[] counts, List<TicketLine> batched, List<TicketLine> failed) {
+		int failedCount = 0;
+		for (int i = 0; i < batched.size(); i++) {
+			if (counts == null || i >= counts.length || counts[i] == Statement.EXECUTE_FAILED || counts[i] == 0) {
+				failed.add(batched.get(i));
+				failedCount++;
+			}
+		}
+		return failedCount;
+	}
+
+	/**
+	 * Resultat d'una inserció en lot de línies.
+	 *
+	 * @param inserted    nombre de línies inserides
+	 * @param failedLines línies que no s'han pogut inserir
+	 * @param error       excepció que ha aturat el lot, o null
+	 */
+	public record BatchResult(int inserted, List<TicketLine> failedLines, SQLException error) {
+
+		/** @return true si totes les línies s'han inserit */
+		public boolean isSuccess() {
+			return failedLines.isEmpty() && error == null;
+		}
+	}
+
 	/**
 	 * Elimina totes les línies associades a un tiquet específic.
 	 * 
-	 * Aquest mètode es fa servir abans d’actualitzar les línies d’un tiquet amb
-	 * updateTicket() del TicketDAO, per assegurar que les línies antigues
-	 * s’esborren abans d’inserir les noves.
+	 * Aquest mètode es fa servir en eliminar un tiquet amb deleteTicket() del
+	 * TicketDAO.
 	 *
 	 * @param ticketId ID del tiquet del qual es volen eliminar les línies.
 	 * @return true si l’operació s’ha realitzat correctament, inclòs si no hi havia
@@ -130,6 +409,8 @@ public class TicketLineDAO {
 	 * Elimina una línia de tiquet concreta donat el seu ID.
 	 * 
 	 * Pot ser útil per eliminar línies específiques sense eliminar tot el tiquet.
+	 * No actualitza els resums de vendes; vegeu
+	 * {@link TicketDAO#removeLine(int, int)}.
 	 *
 	 * @param ticketLineId ID de la línia que es vol eliminar.
 	 * @return true si la línia s’ha eliminat correctament, false en cas contrari.
@@ -0,0 +1,183 @@
+package com.projecteprogramacio.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteConnectionConfig;
+
+/**
+ * Executa unitats de feina dins d'una transacció d'escriptura.
+ * <p>
+ * La transacció comença amb {@code BEGIN IMMEDIATE}, que agafa el bloqueig
+ * d'escriptura de SQLite d'entrada: dues escriptures concurrents s'esperen a
+ * l'inici (amb el {@code busy_timeout} de la connexió) en lloc de topar al
+ * primer INSERT i fallar a mitja feina. Si tot i així la base de dades continua
+ * ocupada ({@code SQLITE_BUSY}), la unitat sencera es torna a provar fins a
+ * {@link #MAX_ATTEMPTS} vegades amb esperes creixents.
+ * </p>
+ * <p>
+ * Cada connexió té un bloqueig propi: si dos fils comparteixen la mateixa
+ * connexió, les seves transaccions s'executen una darrere l'altra en lloc de
+ * barrejar-se. Una crida niada des del mateix fil, o una crida sobre una
+ * connexió que ja té una transacció oberta per un altre codi, s'uneix a la
+ * transacció exterior, que és qui confirma o desfà.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public final class TransactionTemplate {
+
+	/**
+	 * Unitat de feina dins d'una transacció.
+	 *
+	 * @param <T> tipus del resultat
+	 */
+	@FunctionalInterface
+	public interface Work<T> {
+
+		/**
+		 * @param conn connexió amb la transacció oberta; no s'hi ha de cridar
+		 *             {@code commit}, {@code rollback} ni {@code setAutoCommit}
+		 * @return resultat de la unitat
+		 * @throws SQLException si alguna sentència falla; la transacció es desfà
+		 */
+		T run(Connection conn) throws SQLException;
+	}
+
+	/** Intents màxims d'una unitat quan la base de dades està ocupada. */
+	public static final int MAX_ATTEMPTS = 4;
+
+	/** Espera abans del segon intent; es dobla a cada intent següent. */
+	private static final long BASE_BACKOFF_MS = 50;
+
+	/** Espera màxima entre intents. */
+	private static final long MAX_BACKOFF_MS = 1000;
+
+	/** Codi primari de SQLite per a {@code SQLITE_BUSY}. */
+	private static final int SQLITE_BUSY = 5;
+
+	/** Bloqueig per connexió; les claus són els envoltoris, comparats per identitat. */
+	private static final Map<Connection, ReentrantLock> LOCKS = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private TransactionTemplate() {
+	}
+
+	/**
+	 * Executa la unitat en una transacció sobre la connexió donada. Si la unitat
+	 * llança una excepció, la transacció es desfà i l'excepció es propaga.
+	 *
+	 * @param conn connexió JDBC activa
+	 * @param work unitat de feina; es pot executar més d'una vegada si la base de
+	 *             dades està ocupada, així que no ha de tenir efectes fora de la
+	 *             transacció
+	 * @return resultat de la unitat
+	 * @throws SQLException si la unitat falla, si el fil s'interromp mentre espera
+	 *                      o si la base de dades continua ocupada després de tots
+	 *                      els intents
+	 */
+	public static <T> T execute(Connection conn, Work<T> work) throws SQLException {
+		ReentrantLock lock = LOCKS.computeIfAbsent(conn, c -> new ReentrantLock());
+		try {
+			lock.lockInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Transacció interrompuda", e);
+		}
+		try {
+			if (lock.getHoldCount() > 1 || !conn.getAutoCommit()) {
+				// Crida niada: la transacció exterior confirma o desfà
+				return work.run(conn);
+			}
+
+			for (int attempt = 1;; attempt++) {
+				try {
+					return runOnce(conn, work);
+				} catch (SQLException e) {
+					if (!isBusy(e) || attempt == MAX_ATTEMPTS) {
+						throw e;
+					}
+					System.err.println("Base de dades ocupada, intent " + attempt + " de " + MAX_ATTEMPTS + ": "
+							+ e.getMessage());
+					backoff(attempt);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return true si l'error és que la base de dades està bloquejada per una
+	 *         altra connexió
+	 */
+	static boolean isBusy(SQLException e) {
+		return (e.getErrorCode() & 0xFF) == SQLITE_BUSY;
+	}
+
+	private static <T> T runOnce(Connection conn, Work<T> work) throws SQLException {
+		beginImmediate(conn);
+		try {
+			T result = work.run(conn);
+			conn.commit();
+			return result;
+		} catch (SQLException | RuntimeException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException ex) {
+				e.addSuppressed(ex);
+			}
+			throw e;
+		} finally {
+			conn.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Obre la transacció amb {@code BEGIN IMMEDIATE}. El controlador SQLite obre
+	 * la transacció en desactivar l'autocommit amb el mode configurat, i també
+	 * n'obre una altra després de cada {@code commit} o {@code rollback}; el mode
+	 * immediat només s'aplica a la primera, perquè les altres no agafin el
+	 * bloqueig d'escriptura sense necessitat.
+	 */
+	private static void beginImmediate(Connection conn) throws SQLException {
+		SQLiteConnectionConfig config = conn.isWrapperFor(SQLiteConnection.class)
+				? conn.unwrap(SQLiteConnection.class).getConnectionConfig()
+				: null;
+		if (config == null) {
+			conn.setAutoCommit(false);
+			return;
+		}
+		SQLiteConfig.TransactionMode previous = config.getTransactionMode();
+		config.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+		try {
+			conn.setAutoCommit(false);
+		} catch (SQLException e) {
+			// El controlador marca la connexió com a transaccional abans del BEGIN
+			try {
+				conn.setAutoCommit(true);
+			} catch (SQLException ex) {
+				e.addSuppressed(ex);
+			}
+			throw e;
+		} finally {
+			config.setTransactionMode(previous);
+		}
+	}
+
+	private static void backoff(int attempt) throws SQLException {
+		long max = Math.min(BASE_BACKOFF_MS << (attempt - 1), MAX_BACKOFF_MS);
+		try {
+			Thread.sleep(max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Transacció interrompuda", e);
+		}
+	}
+}
@@ -7,10 +7,16 @@ import java.util.Locale;
 public class Ticket {
 	private int ticketId;
 	private int userId;
-	private double total;
+	/** Total en cèntims; es manté a cada canvi de línia sense recórrer-les. */
+	private long totalCents;
 	private String status;
 	private String createdAt;
 	private String updatedAt;
+	/**
+	 * Clau generada per la caixa per a l'enviament; si es reenvia el mateix
+	 * tiquet, la inserció retorna el ja creat. No es llegeix de la base de dades.
+	 */
+	private String idempotencyKey;
 
 	private List<TicketLine> lines = new ArrayList<>();
 
@@ -20,7 +26,7 @@ public class Ticket {
 			this.userId = selectedClient.getUserId();
 		}
 		this.status = estatCreat;
-		this.total = 0.0;
+		this.totalCents = 0;
 		this.lines = new ArrayList<>();
 		this.createdAt = null;
 		this.updatedAt = null;
@@ -30,7 +36,7 @@ public class Ticket {
 	public Ticket(int ticketId, int userId, double total, String status, String createdAt, String updatedAt) {
 		this.ticketId = ticketId;
 		this.userId = userId;
-		this.total = total;
+		this.totalCents = TicketLine.toCents(total);
 		this.status = status;
 		this.createdAt = createdAt;
 		this.updatedAt = updatedAt;
@@ -55,11 +61,16 @@ public class Ticket {
 	}
 
 	public double getTotal() {
-		return total;
+		return totalCents / 100.0;
 	}
 
 	public void setTotal(double total) {
-		this.total = total;
+		this.totalCents = TicketLine.toCents(total);
+	}
+
+	// Total exacte en cèntims
+	public long getTotalCents() {
+		return totalCents;
 	}
 
 	public String getStatus() {
@@ -86,6 +97,14 @@ public class Ticket {
 		this.updatedAt = updatedAt;
 	}
 
+	public String getIdempotencyKey() {
+		return idempotencyKey;
+	}
+
+	public void setIdempotencyKey(String idempotencyKey) {
+		this.idempotencyKey = idempotencyKey;
+	}
+
 	// Gestionar línies de tiquet
 	public List<TicketLine> getLines() {
 		return lines;
@@ -96,30 +115,42 @@ public class Ticket {
 		recalculateTotal(); // recalcula el total si es canvien totes les línies
 	}
 
+	// Les operacions sobre una línia ajusten el total amb la diferència, en O(1)
 	public void addLine(TicketLine line) {
 		line.setTicketId(this.ticketId); // assigna el ticketId
 		lines.add(line);
-		recalculateTotal();
+		totalCents += line.getSubtotalCents();
 	}
 
 	public void removeLine(TicketLine line) {
-		lines.remove(line);
-		recalculateTotal();
+		if (lines.remove(line)) {
+			totalCents -= line.getSubtotalCents();
+		}
+	}
+
+	// Canvia la quantitat d'una línia del tiquet i ajusta el total
+	public void setLineQuantity(TicketLine line, int quantity) {
+		totalCents += line.getUnitPriceCents() * (quantity - line.getQuantity());
+		line.setQuantity(quantity);
 	}
 
 	public void clearLines() {
 		lines.clear();
-		recalculateTotal();
+		totalCents = 0;
 	}
 
-	// Recalcular el total
+	// Recalcular el total recorrent totes les línies
 	public void recalculateTotal() {
-		total = lines.stream().mapToDouble(TicketLine::getSubtotal).sum();
+		long cents = 0;
+		for (TicketLine line : lines) {
+			cents += line.getSubtotalCents();
+		}
+		totalCents = cents;
 	}
 
 	@Override
 	public String toString() {
-		return "Ticket #" + ticketId + " - " + status + " - Total: " + String.format(Locale.US, "%.2f€", total);
+		return "Ticket #" + ticketId + " - " + status + " - Total: " + String.format(Locale.US, "%.2f€", getTotal());
 	}
 
 }
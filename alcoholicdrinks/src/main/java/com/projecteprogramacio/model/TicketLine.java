@@ -5,7 +5,9 @@ package com.projecteprogramacio.model;
  * beguda específica i la quantitat associada dins del tiquet.
  * 
  * Inclou mètodes per obtenir el subtotal (preu * quantitat) i gestionar les
- * propietats.
+ * propietats. El preu és el de la venda: es pren de la beguda en crear la línia
+ * i, per a les línies guardades, és el de {@code ticket_lines.price}, de manera
+ * que els tiquets antics no canvien si la beguda canvia de preu.
  * 
  * @author Josuè González
  * @version 1.0
@@ -24,6 +26,9 @@ public class TicketLine {
 	/** Quantitat de la beguda en aquesta línia. */
 	private int quantity;
 
+	/** Preu unitari de la beguda en el moment de la venda. */
+	private double price;
+
 	/**
 	 * Constructor complet per crear una línia de tiquet amb tots els atributs.
 	 * Normalment usat quan es recupera de la base de dades.
@@ -32,12 +37,27 @@ public class TicketLine {
 	 * @param ticketId     Identificador del tiquet.
 	 * @param drink        Beguda associada.
 	 * @param quantity     Quantitat de beguda.
+	 * @param price        Preu unitari guardat.
 	 */
-	public TicketLine(int ticketLineId, int ticketId, Drink drink, int quantity) {
+	public TicketLine(int ticketLineId, int ticketId, Drink drink, int quantity, double price) {
 		this.ticketLineId = ticketLineId;
 		this.ticketId = ticketId;
 		this.drink = drink;
 		this.quantity = quantity;
+		this.price = price;
+	}
+
+	/**
+	 * Constructor per a una línia nova d'un tiquet existent, amb el preu actual de
+	 * la beguda.
+	 * 
+	 * @param ticketLineId Identificador de la línia.
+	 * @param ticketId     Identificador del tiquet.
+	 * @param drink        Beguda associada.
+	 * @param quantity     Quantitat de beguda.
+	 */
+	public TicketLine(int ticketLineId, int ticketId, Drink drink, int quantity) {
+		this(ticketLineId, ticketId, drink, quantity, drink != null ? drink.getPrice() : 0.0);
 	}
 
 	/**
@@ -75,9 +95,24 @@ public class TicketLine {
 		return drink;
 	}
 
-	/** @param drink Nova beguda associada a la línia. */
+	/**
+	 * Canvia la beguda de la línia i en pren el preu actual.
+	 * 
+	 * @param drink Nova beguda associada a la línia.
+	 */
 	public void setDrink(Drink drink) {
 		this.drink = drink;
+		this.price = drink != null ? drink.getPrice() : 0.0;
+	}
+
+	/** @return Preu unitari de la venda. */
+	public double getPrice() {
+		return price;
+	}
+
+	/** @param price Nou preu unitari de la línia. */
+	public void setPrice(double price) {
+		this.price = price;
 	}
 
 	/** @return Quantitat de la beguda. */
@@ -85,19 +120,52 @@ public class TicketLine {
 		return quantity;
 	}
 
-	/** @param quantity Nova quantitat de la beguda. */
+	/**
+	 * Si la línia pertany a un {@link Ticket}, la quantitat s'ha de canviar amb
+	 * {@link Ticket#setLineQuantity(TicketLine, int)} perquè el total del tiquet
+	 * es mantingui.
+	 * 
+	 * @param quantity Nova quantitat de la beguda.
+	 */
 	public void setQuantity(int quantity) {
 		this.quantity = quantity;
 	}
 
 	/**
-	 * Calcula el subtotal de la línia, que és el preu de la beguda multiplicat per
-	 * la quantitat.
+	 * Calcula el subtotal de la línia, que és el preu unitari de la venda
+	 * multiplicat per la quantitat.
 	 * 
-	 * @return Subtotal calculat, o 0.0 si la beguda és nul·la.
+	 * @return Subtotal calculat.
 	 */
 	public double getSubtotal() {
-		return (drink != null) ? drink.getPrice() * quantity : 0.0;
+		return getSubtotalCents() / 100.0;
+	}
+
+	/**
+	 * @return Preu unitari de la venda en cèntims.
+	 */
+	public long getUnitPriceCents() {
+		return toCents(price);
+	}
+
+	/**
+	 * Subtotal exacte de la línia en cèntims: preu unitari arrodonit a cèntims per
+	 * la quantitat.
+	 * 
+	 * @return Subtotal en cèntims.
+	 */
+	public long getSubtotalCents() {
+		return getUnitPriceCents() * quantity;
+	}
+
+	/**
+	 * Converteix un import en euros a cèntims, arrodonint al cèntim més proper.
+	 * 
+	 * @param amount Import en euros.
+	 * @return Import en cèntims.
+	 */
+	public static long toCents(double amount) {
+		return Math.round(amount * 100);
 	}
 
 	/**
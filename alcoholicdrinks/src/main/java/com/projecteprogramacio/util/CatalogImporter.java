@@ -0,0 +1,695 @@
+package com.projecteprogramacio.util;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.projecteprogramacio.dao.BrandDAO;
+import com.projecteprogramacio.dao.CountryDAO;
+import com.projecteprogramacio.dao.DrinkDAO;
+import com.projecteprogramacio.dao.DrinkTypeDAO;
+import com.projecteprogramacio.dao.ReferenceDataCache;
+import com.projecteprogramacio.model.Drink;
+
+/**
+ * Importa un catàleg de begudes des d'un fitxer CSV o JSON.
+ * <p>
+ * El fitxer es llegeix en flux, registre a registre, i només es guarda a
+ * memòria el lot en curs. Cada lot es desa en una transacció: primer es
+ * resolen en bloc els països, les marques i els tipus nous, després s'insereixen
+ * les begudes i finalment s'actualitza el progrés a {@code catalog_imports}.
+ * Si la importació s'interromp, tornar a importar el mateix fitxer continua
+ * des de l'últim lot desat.
+ * </p>
+ * <p>
+ * Columnes reconegudes (capçalera CSV o claus JSON): {@code name}, {@code type},
+ * {@code brand} (obligatòries), {@code price} (obligatòria),
+ * {@code country}, {@code country_name}, {@code alcohol_content},
+ * {@code description} i {@code volume}. El CSV pot estar separat per comes o
+ * per punts i comes. El JSON pot ser una llista d'objectes o un objecte per
+ * línia (JSON Lines). Els registres no vàlids es descarten i es comptabilitzen.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class CatalogImporter {
+
+	/** Format del fitxer d'entrada. */
+	public enum Format {
+		CSV, JSON;
+
+		/**
+		 * @param file fitxer a importar
+		 * @return format segons l'extensió ({@code .json}, {@code .jsonl} i
+		 *         {@code .ndjson} són JSON; la resta, CSV)
+		 */
+		public static Format of(Path file) {
+			String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+			return name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson") ? JSON : CSV;
+		}
+	}
+
+	/** Begudes per transacció per defecte. */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/** Errors de registre que es guarden per mostrar-los. */
+	private static final int MAX_ERRORS = 100;
+
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/** Bytes de l'inici del fitxer que entren a l'empremta del punt de represa. */
+	private static final int FINGERPRINT_BYTES = 64 * 1024;
+
+	private final Connection conn;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private Consumer<Progress> listener = progress -> {
+	};
+
+	/**
+	 * @param conn connexió JDBC activa; es deixa en mode autocommit en acabar
+	 */
+	public CatalogImporter(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * @param batchSize begudes per transacció
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("La mida del lot ha de ser positiva");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param listener rep el progrés després de cada lot desat (des del fil de la
+	 *                 importació)
+	 */
+	public void setListener(Consumer<Progress> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Importa un fitxer amb el format segons l'extensió.
+	 *
+	 * @param file fitxer a importar
+	 * @return resultat de la importació
+	 * @throws IOException  si no es pot llegir el fitxer o no té un format vàlid
+	 * @throws SQLException si un lot no es pot desar; els lots anteriors queden
+	 *                      desats i la importació es pot continuar
+	 * @see #importFile(Path, Format)
+	 */
+	public Result importFile(Path file) throws IOException, SQLException {
+		return importFile(file, Format.of(file));
+	}
+
+	/**
+	 * Importa un fitxer. Si ja s'havia començat a importar (mateix camí, mida,
+	 * data de modificació i contingut inicial), se salten els registres ja desats;
+	 * si ja s'havia acabat, no fa res.
+	 *
+	 * @param file   fitxer a importar
+	 * @param format format del fitxer
+	 * @return resultat de la importació
+	 * @throws IOException  si no es pot llegir el fitxer o no té un format vàlid
+	 * @throws SQLException si un lot no es pot desar; els lots anteriors queden
+	 *                      desats i la importació es pot continuar
+	 */
+	public Result importFile(Path file, Format format) throws IOException, SQLException {
+		long totalBytes = Files.size(file);
+		String source = fingerprint(file, totalBytes);
+		long start = System.nanoTime();
+
+		Checkpoint checkpoint = readCheckpoint(source);
+		if (checkpoint.completed()) {
+			return new Result(0, 0, checkpoint.recordsDone(), true, List.of(), 0);
+		}
+
+		try (CountingInputStream in = new CountingInputStream(Files.newInputStream(file));
+				BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8),
+						1 << 16)) {
+			RecordReader records = format == Format.JSON ? new JsonRecordReader(reader) : new CsvRecordReader(reader);
+
+			Batch batch = new Batch(source, checkpoint.recordsDone());
+			long recordNumber = 0;
+			Map<String, String> record;
+			while ((record = records.next()) != null) {
+				recordNumber++;
+				if (recordNumber <= checkpoint.recordsDone()) {
+					continue;
+				}
+				batch.add(recordNumber, record);
+				if (batch.pending.size() >= batchSize) {
+					batch.commit(false);
+					listener.accept(batch.progress(in.count, totalBytes, start));
+				}
+			}
+			batch.commit(true);
+			listener.accept(batch.progress(totalBytes, totalBytes, start));
+
+			return new Result(batch.imported, batch.rejected, checkpoint.recordsDone(), true, batch.errors,
+					(System.nanoTime() - start) / 1_000_000);
+		}
+	}
+
+	/**
+	 * Identifica un fitxer per al punt de represa: camí, mida, data de
+	 * modificació i hash de la capçalera i el primer bloc. Un fitxer corregit amb
+	 * la mateixa mida no es confon amb l'anterior.
+	 */
+	private static String fingerprint(Path file, long totalBytes) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (InputStream in = Files.newInputStream(file)) {
+			digest.update(in.readNBytes(FINGERPRINT_BYTES));
+		}
+		return file.toAbsolutePath().normalize() + ":" + totalBytes + ":"
+				+ Files.getLastModifiedTime(file).toMillis() + ":" + HexFormat.of().formatHex(digest.digest());
+	}
+
+	private Checkpoint readCheckpoint(String source) throws SQLException {
+		try (PreparedStatement stmt = conn
+				.prepareStatement("SELECT records_done, completed FROM catalog_imports WHERE source = ?")) {
+			stmt.setString(1, source);
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? new Checkpoint(rs.getLong("records_done"), rs.getInt("completed") != 0)
+						: new Checkpoint(0, false);
+			}
+		}
+	}
+
+	/** Beguda llegida, amb els noms del tipus i la marca pendents de resoldre. */
+	private record Pending(Drink drink, String type, String brand) {
+	}
+
+	/** Progrés desat d'una importació. */
+	private record Checkpoint(long recordsDone, boolean completed) {
+	}
+
+	/**
+	 * Lot de begudes pendent de desar i comptadors de la importació en curs.
+	 */
+	private class Batch {
+		private final String source;
+		private final List<Pending> pending = new ArrayList<>();
+		private final Map<String, String> countryNames = new LinkedHashMap<>();
+		private final List<String> errors = new ArrayList<>();
+		private long recordsDone;
+		private long lastRecord;
+		private long imported;
+		private long rejected;
+
+		Batch(String source, long recordsDone) {
+			this.source = source;
+			this.recordsDone = recordsDone;
+			this.lastRecord = recordsDone;
+		}
+
+		void add(long recordNumber, Map<String, String> record) {
+			lastRecord = recordNumber;
+			try {
+				Drink drink = toDrink(record);
+				pending.add(new Pending(drink, value(record, "type"), value(record, "brand")));
+				if (drink.getCountryCode() != null) {
+					String countryName = value(record, "country_name");
+					countryNames.putIfAbsent(drink.getCountryCode(),
+							countryName != null ? countryName : drink.getCountryCode());
+				}
+			} catch (IllegalArgumentException e) {
+				rejected++;
+				if (errors.size() < MAX_ERRORS) {
+					errors.add("Registre " + recordNumber + ": " + e.getMessage());
+				}
+			}
+		}
+
+		/**
+		 * Desa el lot i el progrés en una transacció.
+		 */
+		void commit(boolean completed) throws SQLException {
+			ReferenceDataCache cache = ReferenceDataCache.getInstance();
+			try {
+				conn.setAutoCommit(false);
+
+				if (!pending.isEmpty()) {
+					resolveReferences();
+					List<Drink> drinks = new ArrayList<>(pending.size());
+					for (Pending p : pending) {
+						drinks.add(p.drink());
+					}
+					new DrinkDAO(conn).insertDrinks(drinks);
+				}
+				saveCheckpoint(completed);
+
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				// Pot contenir marques, tipus o països del lot desfet
+				cache.invalidate();
+				throw new SQLException("Error desant el lot que acaba al registre " + lastRecord + ": "
+						+ e.getMessage(), e);
+			} finally {
+				conn.setAutoCommit(true);
+			}
+
+			imported += pending.size();
+			recordsDone = lastRecord;
+			pending.clear();
+			countryNames.clear();
+		}
+
+		private void resolveReferences() throws SQLException {
+			if (!countryNames.isEmpty() && !new CountryDAO(conn).getOrInsertAll(countryNames)) {
+				throw new SQLException("No s'han pogut crear els països");
+			}
+
+			Map<String, String> brandCountries = new HashMap<>();
+			Set<String> types = new HashSet<>();
+			for (Pending p : pending) {
+				brandCountries.putIfAbsent(p.brand(), p.drink().getCountryCode());
+				types.add(p.type());
+			}
+
+			Map<String, Integer> brandIds = new BrandDAO(conn).getIdsOrInsert(brandCountries);
+			Map<String, Integer> typeIds = new DrinkTypeDAO(conn).getOrInsertAll(types);
+			if (brandIds == null || typeIds == null) {
+				throw new SQLException("No s'han pogut crear les marques o els tipus");
+			}
+
+			for (Pending p : pending) {
+				p.drink().setBrandId(brandIds.get(p.brand()));
+				p.drink().setTypeId(typeIds.get(p.type()));
+			}
+		}
+
+		private void saveCheckpoint(boolean completed) throws SQLException {
+			String sql = "INSERT INTO catalog_imports (source, records_done, completed, updated_at) VALUES (?, ?, ?, ?) "
+					+ "ON CONFLICT (source) DO UPDATE SET records_done = excluded.records_done, "
+					+ "completed = excluded.completed, updated_at = excluded.updated_at";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, source);
+				stmt.setLong(2, lastRecord);
+				stmt.setInt(3, completed ? 1 : 0);
+				stmt.setString(4, LocalDateTime.now().format(FORMATTER));
+				stmt.executeUpdate();
+			}
+		}
+
+		Progress progress(long bytesRead, long totalBytes, long startNanos) {
+			return new Progress(recordsDone, imported, rejected, bytesRead, totalBytes,
+					(System.nanoTime() - startNanos) / 1_000_000);
+		}
+	}
+
+	/**
+	 * Converteix un registre en una beguda sense tipus ni marca resolts.
+	 *
+	 * @throws IllegalArgumentException si falta un camp obligatori o un número no
+	 *                                  és vàlid
+	 */
+	private static Drink toDrink(Map<String, String> record) {
+		String name = value(record, "name");
+		if (name == null || value(record, "type") == null || value(record, "brand") == null) {
+			throw new IllegalArgumentException("el nom, tipus i marca són obligatoris");
+		}
+
+		Drink drink = new Drink();
+		drink.setName(name);
+		drink.setDescription(value(record, "description"));
+		String country = value(record, "country");
+		drink.setCountryCode(country != null ? country.toUpperCase(Locale.ROOT) : null);
+		drink.setPrice(number(record, "price", true));
+		drink.setAlcoholContent(number(record, "alcohol_content", false));
+		drink.setVolume(number(record, "volume", false));
+		return drink;
+	}
+
+	private static String value(Map<String, String> record, String key) {
+		String value = record.get(key);
+		return value == null || value.isBlank() ? null : value.trim();
+	}
+
+	private static double number(Map<String, String> record, String key, boolean required) {
+		String value = value(record, key);
+		if (value == null) {
+			if (required) {
+				throw new IllegalArgumentException("falta " + key);
+			}
+			return 0;
+		}
+		try {
+			return Double.parseDouble(value.replace(',', '.'));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(key + " no és un número: " + value);
+		}
+	}
+
+	/**
+	 * Progrés d'una importació.
+	 *
+	 * @param recordsRead   registres processats (desats o descartats), inclosos
+	 *                      els d'una importació anterior
+	 * @param imported      begudes desades en aquesta execució
+	 * @param rejected      registres descartats en aquesta execució
+	 * @param bytesRead     bytes llegits del fitxer
+	 * @param totalBytes    mida del fitxer
+	 * @param elapsedMillis temps transcorregut
+	 */
+	public record Progress(long recordsRead, long imported, long rejected, long bytesRead, long totalBytes,
+			long elapsedMillis) {
+
+		/** @return fracció del fitxer llegida, entre 0 i 1 */
+		public double fraction() {
+			return totalBytes == 0 ? 1 : Math.min(1, (double) bytesRead / totalBytes);
+		}
+
+		/** @return begudes desades per segon */
+		public double drinksPerSecond() {
+			return elapsedMillis == 0 ? 0 : imported * 1000.0 / elapsedMillis;
+		}
+	}
+
+	/**
+	 * Resultat d'una importació.
+	 *
+	 * @param imported      begudes desades en aquesta execució
+	 * @param rejected      registres descartats en aquesta execució
+	 * @param resumedFrom   registres que ja s'havien processat abans
+	 * @param completed     true si s'ha arribat al final del fitxer
+	 * @param errors        motius dels primers registres descartats
+	 * @param elapsedMillis durada de la importació
+	 */
+	public record Result(long imported, long rejected, long resumedFrom, boolean completed, List<String> errors,
+			long elapsedMillis) {
+
+		/** @return begudes desades per segon */
+		public double drinksPerSecond() {
+			return elapsedMillis == 0 ? 0 : imported * 1000.0 / elapsedMillis;
+		}
+	}
+
+	/** Lector de registres d'un fitxer, en flux. */
+	private interface RecordReader {
+
+		/**
+		 * @return següent registre (clau en minúscules → valor), o null al final
+		 * @throws IOException si el fitxer no té un format vàlid
+		 */
+		Map<String, String> next() throws IOException;
+	}
+
+	/**
+	 * Lector CSV (RFC 4180): camps entre cometes amb cometes dobles i salts de
+	 * línia. La primera fila és la capçalera i el separador es dedueix d'ella.
+	 */
+	private static class CsvRecordReader implements RecordReader {
+		private final BufferedReader reader;
+		private final char separator;
+		private final List<String> header;
+
+		CsvRecordReader(BufferedReader reader) throws IOException {
+			this.reader = reader;
+			reader.mark(1 << 15);
+			String firstLine = reader.readLine();
+			reader.reset();
+			if (firstLine == null) {
+				throw new IOException("El fitxer CSV és buit");
+			}
+			if (firstLine.startsWith("\uFEFF")) {
+				reader.skip(1);
+				firstLine = firstLine.substring(1);
+			}
+			separator = count(firstLine, ';') > count(firstLine, ',') ? ';' : ',';
+
+			List<String> names = readRow();
+			header = new ArrayList<>();
+			for (String name : names) {
+				header.add(name.trim().toLowerCase(Locale.ROOT));
+			}
+		}
+
+		@Override
+		public Map<String, String> next() throws IOException {
+			List<String> row;
+			do {
+				row = readRow();
+				if (row == null) {
+					return null;
+				}
+			} while (row.size() == 1 && row.get(0).isEmpty()); // línies buides
+
+			Map<String, String> record = new HashMap<>();
+			for (int i = 0; i < header.size() && i < row.size(); i++) {
+				record.put(header.get(i), row.get(i));
+			}
+			return record;
+		}
+
+		private List<String> readRow() throws IOException {
+			int c = reader.read();
+			if (c == -1) {
+				return null;
+			}
+
+			List<String> fields = new ArrayList<>();
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false;
+			while (true) {
+				if (quoted) {
+					if (c == -1) {
+						throw new IOException("Cometes sense tancar al CSV");
+					}
+					if (c == '"') {
+						reader.mark(1);
+						if (reader.read() == '"') {
+							field.append('"');
+						} else {
+							reader.reset();
+							quoted = false;
+						}
+					} else {
+						field.append((char) c);
+					}
+				} else if (c == -1 || c == '\n') {
+					fields.add(field.toString());
+					return fields;
+				} else if (c == '\r') {
+					// s'ignora; el salt de línia és el \n
+				} else if (c == separator) {
+					fields.add(field.toString());
+					field.setLength(0);
+				} else if (c == '"' && field.length() == 0) {
+					quoted = true;
+				} else {
+					field.append((char) c);
+				}
+				c = reader.read();
+			}
+		}
+
+		private static int count(String text, char ch) {
+			int n = 0;
+			for (int i = 0; i < text.length(); i++) {
+				if (text.charAt(i) == ch) {
+					n++;
+				}
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * Lector JSON per a una llista d'objectes plans o per a un objecte per línia.
+	 * Els valors es llegeixen com a text; no admet objectes ni llistes niats.
+	 */
+	private static class JsonRecordReader implements RecordReader {
+		private final BufferedReader reader;
+		private boolean started;
+
+		JsonRecordReader(BufferedReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public Map<String, String> next() throws IOException {
+			int c = skipWhitespace();
+			if (!started) {
+				started = true;
+				if (c == '\uFEFF') {
+					c = skipWhitespace();
+				}
+				if (c == '[') {
+					c = skipWhitespace();
+				}
+			}
+			if (c == ',') {
+				c = skipWhitespace();
+			}
+			if (c == ']' || c == -1) {
+				return null;
+			}
+			if (c != '{') {
+				throw new IOException("S'esperava un objecte JSON i s'ha trobat '" + (char) c + "'");
+			}
+			return readObject();
+		}
+
+		private Map<String, String> readObject() throws IOException {
+			Map<String, String> record = new HashMap<>();
+			int c = skipWhitespace();
+			if (c == '}') {
+				return record;
+			}
+			while (true) {
+				if (c != '"') {
+					throw new IOException("S'esperava el nom d'un camp JSON");
+				}
+				String key = readString().toLowerCase(Locale.ROOT);
+				if (skipWhitespace() != ':') {
+					throw new IOException("S'esperava ':' després de \"" + key + "\"");
+				}
+				record.put(key, readValue(skipWhitespace()));
+
+				c = skipWhitespace();
+				if (c == '}') {
+					return record;
+				}
+				if (c != ',') {
+					throw new IOException("S'esperava ',' o '}' a l'objecte JSON");
+				}
+				c = skipWhitespace();
+			}
+		}
+
+		private String readValue(int c) throws IOException {
+			if (c == '"') {
+				return readString();
+			}
+			if (c == '{' || c == '[') {
+				throw new IOException("Els valors niats no estan suportats");
+			}
+			if (isLiteralEnd(c)) {
+				throw new IOException("Falta un valor JSON");
+			}
+			StringBuilder literal = new StringBuilder().append((char) c);
+			while (true) {
+				reader.mark(1);
+				c = reader.read();
+				if (isLiteralEnd(c)) {
+					reader.reset();
+					break;
+				}
+				literal.append((char) c);
+			}
+			String value = literal.toString();
+			return "null".equals(value) ? null : value;
+		}
+
+		private static boolean isLiteralEnd(int c) {
+			return c == -1 || c == ',' || c == '}' || Character.isWhitespace(c);
+		}
+
+		private String readString() throws IOException {
+			StringBuilder value = new StringBuilder();
+			while (true) {
+				int c = reader.read();
+				if (c == -1) {
+					throw new IOException("Cadena JSON sense tancar");
+				}
+				if (c == '"') {
+					return value.toString();
+				}
+				if (c != '\\') {
+					value.append((char) c);
+					continue;
+				}
+				int escaped = reader.read();
+				switch (escaped) {
+				case 'n' -> value.append('\n');
+				case 't' -> value.append('\t');
+				case 'r' -> value.append('\r');
+				case 'b' -> value.append('\b');
+				case 'f' -> value.append('\f');
+				case 'u' -> {
+					char[] hex = new char[4];
+					for (int read = 0, n; read < hex.length; read += n) {
+						if ((n = reader.read(hex, read, hex.length - read)) == -1) {
+							throw new IOException("Seqüència \\u incompleta");
+						}
+					}
+					try {
+						value.append((char) Integer.parseInt(new String(hex), 16));
+					} catch (NumberFormatException e) {
+						throw new IOException("Seqüència \\u no vàlida: \\u" + new String(hex), e);
+					}
+				}
+				case -1 -> throw new IOException("Cadena JSON sense tancar");
+				default -> value.append((char) escaped);
+				}
+			}
+		}
+
+		private int skipWhitespace() throws IOException {
+			int c;
+			do {
+				c = reader.read();
+			} while (c != -1 && Character.isWhitespace(c));
+			return c;
+		}
+	}
+
+	/** Compta els bytes llegits del fitxer per calcular el progrés. */
+	private static class CountingInputStream extends FilterInputStream {
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package com.projecteprogramacio.util;
+
+import java.lang.ref.Cleaner;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool acotat de connexions SQLite reutilitzables.
+ * <p>
+ * Cada connexió física s'obre una sola vegada, es configura amb els PRAGMA de
+ * rendiment (WAL, busy_timeout, cache_size) i es reutilitza entre préstecs.
+ * {@link #lease()} retorna un envoltori de {@link Connection} que, en tancar-se
+ * amb {@code close()}, retorna la connexió física al pool en lloc de tancar-la.
+ * </p>
+ * <p>
+ * Si un préstec no es tanca mai (per exemple, un controlador que es descarta en
+ * canviar de vista), la connexió es recupera automàticament quan l'envoltori
+ * deixa de ser accessible.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class ConnectionPool implements AutoCloseable {
+
+	/** Netejador compartit per recuperar préstecs abandonats. */
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	/** URL JDBC de la base de dades. */
+	private final String url;
+
+	/** Nombre màxim de connexions físiques (prestades + lliures). */
+	private final int maxSize;
+
+	/** Temps màxim d'espera per obtenir una connexió, en mil·lisegons. */
+	private final long leaseTimeoutMillis;
+
+	/** Connexions lliures; s'usa com a pila perquè la més recent és la més calenta. */
+	private final BlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+
+	/** Permisos de préstec; limita les connexions simultànies a {@code maxSize}. */
+	private final Semaphore permits;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder leases = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder reclaimed = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * Crea un pool buit. Les connexions s'obren a mesura que es necessiten.
+	 *
+	 * @param url                URL JDBC de la base de dades
+	 * @param maxSize            nombre màxim de connexions simultànies
+	 * @param leaseTimeoutMillis temps màxim d'espera per un préstec
+	 */
+	public ConnectionPool(String url, int maxSize, long leaseTimeoutMillis) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("La mida del pool ha de ser positiva: " + maxSize);
+		}
+		this.url = url;
+		this.maxSize = maxSize;
+		this.leaseTimeoutMillis = leaseTimeoutMillis;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	/**
+	 * Obté una connexió del pool, esperant si totes estan prestades.
+	 * <p>
+	 * La connexió retornada s'ha de tancar amb {@code close()} (idealment amb
+	 * try-with-resources) per tornar-la al pool.
+	 * </p>
+	 *
+	 * @return connexió prestada
+	 * @throws SQLTimeoutException si no hi ha cap connexió lliure dins el temps
+	 *                             d'espera
+	 * @throws SQLException        si el pool està tancat o no es pot obrir la
+	 *                             connexió
+	 */
+	public Connection lease() throws SQLException {
+		if (closed) {
+			throw new SQLException("El pool de connexions està tancat.");
+		}
+
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(leaseTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeouts.increment();
+				throw new SQLTimeoutException(
+						"No hi ha connexions lliures després d'esperar " + leaseTimeoutMillis + " ms.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interromput esperant una connexió.", e);
+		}
+		recordWait(System.nanoTime() - start);
+
+		Connection physical;
+		try {
+			physical = takeIdleOrCreate();
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		}
+
+		active.incrementAndGet();
+		leases.increment();
+		return wrap(physical);
+	}
+
+	/**
+	 * Retorna una instantània de les mètriques del pool.
+	 *
+	 * @return mètriques actuals
+	 */
+	public Stats getStats() {
+		long count = leases.sum();
+		double avgWait = count == 0 ? 0.0 : totalWaitNanos.sum() / (double) count / 1_000_000.0;
+		return new Stats(active.get(), idle.size(), maxSize, count, timeouts.sum(), reclaimed.sum(), avgWait,
+				maxWaitNanos.get() / 1_000_000.0);
+	}
+
+	/**
+	 * Tanca totes les connexions lliures. Les connexions prestades es tanquen quan
+	 * es retornen.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Connection conn;
+		while ((conn = idle.pollFirst()) != null) {
+			closeQuietly(conn);
+		}
+	}
+
+	/**
+	 * Agafa la connexió lliure més recent o n'obre una de nova si no n'hi ha cap.
+	 */
+	private Connection takeIdleOrCreate() throws SQLException {
+		Connection conn;
+		while ((conn = idle.pollFirst()) != null) {
+			if (!conn.isClosed()) {
+				return conn;
+			}
+		}
+
+		conn = DriverManager.getConnection(url);
+		try {
+			configure(conn);
+		} catch (SQLException e) {
+			closeQuietly(conn);
+			throw e;
+		}
+		return conn;
+	}
+
+	/**
+	 * Aplica els PRAGMA de rendiment a una connexió acabada d'obrir.
+	 */
+	private void configure(Connection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute("PRAGMA journal_mode = WAL");
+			stmt.execute("PRAGMA synchronous = NORMAL");
+			stmt.execute("PRAGMA busy_timeout = 5000");
+			// Valor negatiu = KiB; uns 8 MB de memòria cau de pàgines per connexió
+			stmt.execute("PRAGMA cache_size = -8192");
+			stmt.execute("PRAGMA temp_store = MEMORY");
+		}
+	}
+
+	/**
+	 * Torna una connexió física al pool, deixant-la en estat net per al següent
+	 * préstec.
+	 */
+	private void release(Connection physical) {
+		active.decrementAndGet();
+		try {
+			boolean reusable = !closed && !physical.isClosed();
+			if (reusable && !physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+			if (reusable) {
+				idle.offerFirst(physical);
+			} else {
+				closeQuietly(physical);
+			}
+		} catch (SQLException e) {
+			System.err.println("Connexió descartada en retornar-la al pool: " + e.getMessage());
+			closeQuietly(physical);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void recordWait(long nanos) {
+		totalWaitNanos.add(nanos);
+		maxWaitNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	private Connection wrap(Connection physical) {
+		LeaseState state = new LeaseState(this, physical);
+		LeaseHandler handler = new LeaseHandler(state);
+		Connection proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, handler);
+		handler.cleanable = CLEANER.register(proxy, state);
+		return proxy;
+	}
+
+	private static void closeQuietly(Connection conn) {
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			System.err.println("Error tancant connexió: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Estat d'un préstec. És també l'acció del {@link Cleaner}, de manera que no
+	 * pot referenciar l'envoltori que vigila.
+	 */
+	private static final class LeaseState implements Runnable {
+		private final ConnectionPool pool;
+		private final Connection physical;
+		private final AtomicBoolean returned = new AtomicBoolean();
+		private volatile boolean explicitlyClosed;
+
+		LeaseState(ConnectionPool pool, Connection physical) {
+			this.pool = pool;
+			this.physical = physical;
+		}
+
+		@Override
+		public void run() {
+			if (returned.compareAndSet(false, true)) {
+				if (!explicitlyClosed) {
+					pool.reclaimed.increment();
+				}
+				pool.release(physical);
+			}
+		}
+	}
+
+	/**
+	 * Delega totes les crides a la connexió física excepte {@code close()}, que la
+	 * torna al pool.
+	 */
+	private static final class LeaseHandler implements InvocationHandler {
+		private final LeaseState state;
+		private Cleaner.Cleanable cleanable;
+
+		LeaseHandler(LeaseState state) {
+			this.state = state;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				state.explicitlyClosed = true;
+				cleanable.clean();
+				return null;
+			case "isClosed":
+				return state.returned.get() || state.physical.isClosed();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "PooledConnection[" + state.physical + "]";
+			default:
+				break;
+			}
+
+			if (state.returned.get()) {
+				throw new SQLException("La connexió ja s'ha retornat al pool.");
+			}
+			try {
+				return method.invoke(state.physical, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Mètriques del pool en un moment concret.
+	 *
+	 * @param active        connexions prestades ara mateix
+	 * @param idle          connexions obertes i lliures
+	 * @param maxSize       mida màxima del pool
+	 * @param leases        préstecs totals servits
+	 * @param timeouts      préstecs que han esgotat el temps d'espera
+	 * @param reclaimed     préstecs no tancats recuperats automàticament
+	 * @param avgWaitMillis temps mitjà d'espera per préstec (ms)
+	 * @param maxWaitMillis temps màxim d'espera observat (ms)
+	 */
+	public record Stats(int active, int idle, int maxSize, long leases, long timeouts, long reclaimed,
+			double avgWaitMillis, double maxWaitMillis) {
+	}
+}
@@ -0,0 +1,260 @@
+package com.projecteprogramacio.util;
+
+import java.sql.Connection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+/**
+ * Capa d'accés a dades asíncrona per als controladors.
+ * <p>
+ * Cada operació s'executa en un fil virtual amb una connexió pròpia del pool
+ * (que es tanca en acabar) i retorna un {@link CompletableFuture} que es
+ * completa al fil de JavaFX, de manera que les accions encadenades
+ * ({@code thenAccept}, {@code exceptionally}...) poden tocar la UI directament.
+ * </p>
+ * <p>
+ * Les operacions tenen un temps màxim: si se supera, el futur falla amb
+ * {@link TimeoutException} i el fil s'interromp. Cancel·lar el futur també
+ * interromp el fil. La propietat {@link #busyProperty()} indica si hi ha alguna
+ * operació en curs, i es guarden mètriques de latència per nom d'operació.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class DataService {
+
+	/**
+	 * Operació sobre la base de dades.
+	 *
+	 * @param <T> tipus del resultat
+	 */
+	@FunctionalInterface
+	public interface Operation<T> {
+
+		/**
+		 * @param conn connexió del pool, vàlida només durant la crida
+		 * @return resultat de l'operació
+		 * @throws Exception si l'operació falla
+		 */
+		T run(Connection conn) throws Exception;
+	}
+
+	/** Temps màxim per defecte de cada operació. */
+	public static final long DEFAULT_TIMEOUT_MS = 30_000;
+
+	private static final DataService INSTANCE = new DataService(
+			Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("data-", 0).factory()),
+			DEFAULT_TIMEOUT_MS);
+
+	private final ExecutorService executor;
+	private final long defaultTimeoutMillis;
+
+	/** Operacions en curs; només es modifica des del fil de JavaFX. */
+	private int running;
+	private final ReadOnlyBooleanWrapper busy = new ReadOnlyBooleanWrapper(false);
+
+	private final Map<String, OperationMetrics> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * @param executor             executor on s'executen les operacions
+	 * @param defaultTimeoutMillis temps màxim per defecte de cada operació
+	 */
+	public DataService(ExecutorService executor, long defaultTimeoutMillis) {
+		this.executor = executor;
+		this.defaultTimeoutMillis = defaultTimeoutMillis;
+	}
+
+	/**
+	 * @return servei compartit per tota l'aplicació
+	 */
+	public static DataService getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Executa una operació amb el temps màxim per defecte.
+	 *
+	 * @param name      nom de l'operació, per a les mètriques (p. ex.
+	 *                  "drinks.getAll")
+	 * @param operation operació a executar
+	 * @return futur que es completa al fil de JavaFX
+	 * @see #submit(String, long, Operation)
+	 */
+	public <T> CompletableFuture<T> submit(String name, Operation<T> operation) {
+		return submit(name, defaultTimeoutMillis, operation);
+	}
+
+	/**
+	 * Executa una operació en un fil virtual amb una connexió pròpia del pool.
+	 *
+	 * @param name          nom de l'operació, per a les mètriques
+	 * @param timeoutMillis temps màxim de l'operació
+	 * @param operation     operació a executar
+	 * @return futur que es completa al fil de JavaFX amb el resultat, o amb
+	 *         l'excepció de l'operació, {@link TimeoutException} o
+	 *         {@link CancellationException}
+	 */
+	public <T> CompletableFuture<T> submit(String name, long timeoutMillis, Operation<T> operation) {
+		CompletableFuture<T> work = new CompletableFuture<>();
+		CompletableFuture<T> result = new CompletableFuture<>();
+		OperationMetrics opMetrics = metrics.computeIfAbsent(name, OperationMetrics::new);
+
+		onFxThread(this::operationStarted);
+
+		Future<?> task = executor.submit(() -> {
+			long start = System.nanoTime();
+			try (Connection conn = Database.getConnection()) {
+				T value = operation.run(conn);
+				opMetrics.record(System.nanoTime() - start, false);
+				work.complete(value);
+			} catch (Throwable e) {
+				opMetrics.record(System.nanoTime() - start, true);
+				work.completeExceptionally(e);
+			}
+		});
+
+		work.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+			if (error instanceof TimeoutException) {
+				opMetrics.timedOut();
+				task.cancel(true);
+			}
+			Platform.runLater(() -> {
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(value);
+				}
+			});
+		});
+
+		// Cancel·lar el resultat interromp el fil de l'operació
+		result.whenComplete((value, error) -> {
+			if (result.isCancelled()) {
+				task.cancel(true);
+				work.cancel(false);
+			}
+			onFxThread(this::operationFinished);
+		});
+
+		return result;
+	}
+
+	/**
+	 * Indica si hi ha alguna operació en curs. Es pot enllaçar amb un indicador
+	 * d'activitat (cursor, {@code ProgressIndicator}...).
+	 *
+	 * @return propietat de només lectura, actualitzada al fil de JavaFX
+	 */
+	public ReadOnlyBooleanProperty busyProperty() {
+		return busy.getReadOnlyProperty();
+	}
+
+	/**
+	 * @return mètriques de latència per nom d'operació, ordenades per nom
+	 */
+	public Map<String, Stats> getStats() {
+		Map<String, Stats> snapshot = new TreeMap<>();
+		metrics.forEach((name, m) -> snapshot.put(name, m.snapshot()));
+		return snapshot;
+	}
+
+	/**
+	 * Atura l'executor i interromp les operacions en curs. S'ha de cridar en
+	 * sortir de l'aplicació.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Retorna la causa real d'un error rebut en un {@code exceptionally} o
+	 * {@code handle}, sense els embolcalls de {@link CompletionException}.
+	 *
+	 * @param error error rebut
+	 * @return causa original
+	 */
+	public static Throwable unwrap(Throwable error) {
+		while ((error instanceof CompletionException || error instanceof ExecutionException)
+				&& error.getCause() != null) {
+			error = error.getCause();
+		}
+		return error;
+	}
+
+	private void operationStarted() {
+		running++;
+		busy.set(true);
+	}
+
+	private void operationFinished() {
+		running--;
+		busy.set(running > 0);
+	}
+
+	private static void onFxThread(Runnable action) {
+		if (Platform.isFxApplicationThread()) {
+			action.run();
+		} else {
+			Platform.runLater(action);
+		}
+	}
+
+	/** Comptadors d'una operació. */
+	private static class OperationMetrics {
+		private final String name;
+		private long count;
+		private long failures;
+		private long timeouts;
+		private long totalNanos;
+		private long maxNanos;
+
+		OperationMetrics(String name) {
+			this.name = name;
+		}
+
+		synchronized void record(long nanos, boolean failed) {
+			count++;
+			if (failed) {
+				failures++;
+			}
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		synchronized void timedOut() {
+			timeouts++;
+		}
+
+		synchronized Stats snapshot() {
+			double avgMillis = count == 0 ? 0 : totalNanos / (count * 1_000_000.0);
+			return new Stats(name, count, failures, timeouts, avgMillis, maxNanos / 1_000_000.0);
+		}
+	}
+
+	/**
+	 * Mètriques de latència d'una operació.
+	 *
+	 * @param name      nom de l'operació
+	 * @param count     execucions acabades
+	 * @param failures  execucions que han llançat una excepció
+	 * @param timeouts  execucions que han superat el temps màxim
+	 * @param avgMillis latència mitjana en mil·lisegons
+	 * @param maxMillis latència màxima en mil·lisegons
+	 */
+	public record Stats(String name, long count, long failures, long timeouts, double avgMillis, double maxMillis) {
+	}
+}
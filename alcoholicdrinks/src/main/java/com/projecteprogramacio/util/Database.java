@@ -1,14 +1,40 @@
 package com.projecteprogramacio.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class Database {
     // Ruta relativa a la base de dades a la mateixa carpeta on s'executa el JAR
     private static final String DB_URL = "jdbc:sqlite:alcoholic_drinks.db";
 
+    // Connexions simultànies màximes i temps d'espera per obtenir-ne una
+    private static final int POOL_SIZE = 10;
+    private static final long LEASE_TIMEOUT_MS = 5000;
+
+    private static final ConnectionPool POOL = new ConnectionPool(DB_URL, POOL_SIZE, LEASE_TIMEOUT_MS);
+
+    /**
+     * Presta una connexió del pool compartit. En tancar-la es retorna al pool.
+     * Les sentències que s'hi executen es registren a {@link QueryMetrics}.
+     *
+     * @return connexió configurada i reutilitzable
+     * @throws SQLException si no es pot obtenir cap connexió
+     */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+        return QueryMetrics.getInstance().instrument(POOL.lease());
+    }
+
+    /**
+     * @return mètriques actuals del pool de connexions
+     */
+    public static ConnectionPool.Stats getPoolStats() {
+        return POOL.getStats();
+    }
+
+    /**
+     * Tanca les connexions del pool. S'ha de cridar en sortir de l'aplicació.
+     */
+    public static void shutdown() {
+        POOL.close();
     }
 }
@@ -0,0 +1,133 @@
+package com.projecteprogramacio.util;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import javafx.animation.PauseTransition;
+import javafx.beans.value.ObservableValue;
+import javafx.util.Duration;
+
+/**
+ * Cerca asíncrona amb retard (debounce) per a camps de text.
+ * <p>
+ * Cada canvi del text reinicia el retard; la consulta només es llança quan
+ * l'usuari deixa d'escriure durant {@code delay}. Les consultes es llancen
+ * normalment amb {@link DataService}, que les executa fora del fil de JavaFX
+ * amb el seu temps màxim i mètriques. Quan arriba un text nou, el futur de la
+ * consulta anterior es cancel·la i el seu resultat es descarta: només es
+ * publica el resultat de l'última consulta.
+ * </p>
+ * <p>
+ * S'ha d'utilitzar des del fil de JavaFX, i els futurs de la consulta s'hi han
+ * de completar. {@code onResult} i {@code onError} s'executen al fil de JavaFX.
+ * </p>
+ *
+ * @param <T> tipus dels resultats
+ * @author Josuè González
+ */
+public class DebouncedSearch<T> {
+
+	/**
+	 * Consulta asíncrona.
+	 *
+	 * @param <T> tipus dels resultats
+	 */
+	@FunctionalInterface
+	public interface Query<T> {
+
+		/**
+		 * @param text text de cerca
+		 * @return futur amb els resultats de la cerca, completat al fil de JavaFX;
+		 *         cancel·lar-lo ha d'aturar la consulta
+		 */
+		CompletableFuture<List<T>> search(String text);
+	}
+
+	private final PauseTransition pause;
+	private final Query<T> query;
+	private final Consumer<List<T>> onResult;
+	private final Consumer<Throwable> onError;
+
+	private String pendingText;
+	private CompletableFuture<List<T>> current;
+
+	/**
+	 * @param delay    temps sense canvis abans de llançar la consulta
+	 * @param query    consulta asíncrona a llançar
+	 * @param onResult acció que rep els resultats de l'última consulta
+	 * @param onError  acció que rep l'error si l'última consulta falla
+	 */
+	public DebouncedSearch(Duration delay, Query<T> query, Consumer<List<T>> onResult,
+			Consumer<Throwable> onError) {
+		this.query = query;
+		this.onResult = onResult;
+		this.onError = onError;
+		this.pause = new PauseTransition(delay);
+		this.pause.setOnFinished(e -> start(pendingText));
+	}
+
+	/**
+	 * Llança una cerca cada vegada que canvia el text observat.
+	 *
+	 * @param text text a observar (normalment {@code textProperty()} d'un camp)
+	 */
+	public void bind(ObservableValue<String> text) {
+		text.addListener((obs, oldVal, newVal) -> submit(newVal));
+	}
+
+	/**
+	 * Programa una cerca amb retard. Descarta la consulta en curs.
+	 *
+	 * @param text text de cerca
+	 */
+	public void submit(String text) {
+		pendingText = text;
+		cancelCurrent();
+		pause.playFromStart();
+	}
+
+	/**
+	 * Llança una cerca immediatament, sense retard. Descarta la consulta en curs.
+	 *
+	 * @param text text de cerca
+	 */
+	public void searchNow(String text) {
+		pause.stop();
+		start(text);
+	}
+
+	/**
+	 * Atura el retard pendent i cancel·la la consulta en curs.
+	 */
+	public void cancel() {
+		pause.stop();
+		cancelCurrent();
+	}
+
+	private void start(String text) {
+		cancelCurrent();
+
+		CompletableFuture<List<T>> future = query.search(text);
+		current = future;
+		future.whenComplete((results, error) -> {
+			if (future != current) {
+				return;
+			}
+			current = null;
+			if (error != null) {
+				onError.accept(DataService.unwrap(error));
+			} else {
+				onResult.accept(results);
+			}
+		});
+	}
+
+	private void cancelCurrent() {
+		if (current != null) {
+			CompletableFuture<List<T>> cancelled = current;
+			current = null;
+			cancelled.cancel(true);
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package com.projecteprogramacio.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embolcalls de {@link Connection}, {@link Statement} i {@link ResultSet} que
+ * mesuren cada execució per a {@link QueryMetrics}.
+ * <p>
+ * En preparar una sentència es busca a la pila el primer mètode de l'aplicació
+ * que la demana, que dona el nom de l'operació. Les actualitzacions es mesuren
+ * durant l'{@code execute}; les consultes, des de l'{@code executeQuery} fins
+ * que s'acaben de llegir les files o es tanca el {@code ResultSet}, de manera
+ * que el temps inclou la lectura.
+ * </p>
+ *
+ * @author Josuè González
+ */
+final class InstrumentedConnection {
+
+	private static final String APP_PACKAGE = "com.projecteprogramacio.";
+	private static final String SELF = InstrumentedConnection.class.getName();
+	private static final StackWalker WALKER = StackWalker.getInstance();
+
+	private InstrumentedConnection() {
+	}
+
+	/**
+	 * @param conn    connexió a mesurar
+	 * @param metrics on es registren les execucions
+	 * @return embolcall de la connexió
+	 */
+	static Connection wrap(Connection conn, QueryMetrics metrics) {
+		return proxy(Connection.class, new ConnectionHandler(conn, metrics));
+	}
+
+	/**
+	 * @return {@code Classe.mètode} del primer mètode de l'aplicació a la pila
+	 *         fora d'aquesta classe, o "sql" si no n'hi ha cap
+	 */
+	static String callerOperation() {
+		return WALKER.walk(frames -> frames
+				.filter(f -> f.getClassName().startsWith(APP_PACKAGE) && !f.getClassName().startsWith(SELF))
+				.findFirst().map(f -> simpleClassName(f.getClassName()) + "." + methodName(f.getMethodName()))
+				.orElse("sql"));
+	}
+
+	/** {@code com.x.DrinkDAO$1} → {@code DrinkDAO} */
+	private static String simpleClassName(String className) {
+		String simple = className.substring(className.lastIndexOf('.') + 1);
+		int nested = simple.indexOf('$');
+		return nested > 0 ? simple.substring(0, nested) : simple;
+	}
+
+	/** {@code lambda$getAllDrinks$0} → {@code getAllDrinks} */
+	private static String methodName(String method) {
+		if (method.startsWith("lambda$")) {
+			int end = method.indexOf('$', 7);
+			return end > 7 ? method.substring(7, end) : method;
+		}
+		return method;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/** Embolcalla les sentències que es creen o preparen. */
+	private static final class ConnectionHandler implements InvocationHandler {
+		private final Connection target;
+		private final QueryMetrics metrics;
+
+		ConnectionHandler(Connection target, QueryMetrics metrics) {
+			this.target = target;
+			this.metrics = metrics;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "InstrumentedConnection[" + target + "]";
+			default:
+				break;
+			}
+
+			String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+			Object result;
+			try {
+				result = invokeTarget(target, method, args);
+			} catch (Throwable e) {
+				// SQLite compila en preparar: un SQL incorrecte falla aquí
+				if (sql != null && method.getName().startsWith("prepare")) {
+					metrics.record(callerOperation(), sql, null, 0, 0, true);
+				}
+				throw e;
+			}
+			if (result instanceof Statement stmt) {
+				StatementHandler handler = new StatementHandler(stmt, metrics, sql, callerOperation());
+				if (result instanceof CallableStatement) {
+					return proxy(CallableStatement.class, handler);
+				}
+				if (result instanceof PreparedStatement) {
+					return proxy(PreparedStatement.class, handler);
+				}
+				return proxy(Statement.class, handler);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Guarda els paràmetres enllaçats i mesura les execucions d'una sentència.
+	 */
+	private static final class StatementHandler implements InvocationHandler {
+		private final Statement target;
+		private final QueryMetrics metrics;
+		private final String operation;
+		private String sql;
+		private List<Object> params;
+		private QueryHandler openQuery;
+
+		StatementHandler(Statement target, QueryMetrics metrics, String sql, String operation) {
+			this.target = target;
+			this.metrics = metrics;
+			this.sql = sql;
+			this.operation = operation;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+				bind(index, name.equals("setNull") ? null : args[1]);
+				return invokeTarget(target, method, args);
+			}
+
+			switch (name) {
+			case "executeQuery":
+				return executeQuery(method, args);
+			case "executeUpdate":
+			case "executeLargeUpdate":
+			case "execute":
+			case "executeBatch":
+			case "executeLargeBatch":
+				return executeUpdate(method, args);
+			case "addBatch":
+				if (args != null && args.length == 1 && args[0] instanceof String s) {
+					sql = s;
+				}
+				break;
+			case "clearParameters":
+				if (params != null) {
+					params.clear();
+				}
+				break;
+			case "close":
+				finishOpenQuery();
+				break;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "InstrumentedStatement[" + sql + "]";
+			default:
+				break;
+			}
+			return invokeTarget(target, method, args);
+		}
+
+		private void bind(int index, Object value) {
+			if (params == null) {
+				params = new ArrayList<>();
+			}
+			while (params.size() < index) {
+				params.add(null);
+			}
+			params.set(index - 1, value);
+		}
+
+		private Object executeQuery(Method method, Object[] args) throws Throwable {
+			finishOpenQuery();
+			String text = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+			long start = System.nanoTime();
+			ResultSet rs;
+			try {
+				rs = (ResultSet) invokeTarget(target, method, args);
+			} catch (Throwable e) {
+				metrics.record(operation, text, params, System.nanoTime() - start, 0, true);
+				throw e;
+			}
+			openQuery = new QueryHandler(rs, this, text, start);
+			return proxy(ResultSet.class, openQuery);
+		}
+
+		private Object executeUpdate(Method method, Object[] args) throws Throwable {
+			finishOpenQuery();
+			String text = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+			long start = System.nanoTime();
+			Object result;
+			try {
+				result = invokeTarget(target, method, args);
+			} catch (Throwable e) {
+				metrics.record(operation, text, params, System.nanoTime() - start, 0, true);
+				throw e;
+			}
+			metrics.record(operation, text, params, System.nanoTime() - start, rowsOf(result), false);
+			return result;
+		}
+
+		/** Files modificades segons el valor retornat per l'{@code execute}. */
+		private long rowsOf(Object result) throws Exception {
+			if (result instanceof Boolean isQuery) {
+				return isQuery ? 0 : Math.max(target.getUpdateCount(), 0);
+			}
+			if (result instanceof Number n) {
+				return Math.max(n.longValue(), 0);
+			}
+			long rows = 0;
+			if (result instanceof int[] counts) {
+				for (int c : counts) {
+					rows += Math.max(c, 0);
+				}
+			} else if (result instanceof long[] counts) {
+				for (long c : counts) {
+					rows += Math.max(c, 0);
+				}
+			}
+			return rows;
+		}
+
+		private void finishOpenQuery() {
+			if (openQuery != null) {
+				openQuery.finish(false);
+			}
+		}
+	}
+
+	/** Compta les files llegides i registra la consulta en acabar. */
+	private static final class QueryHandler implements InvocationHandler {
+		private final ResultSet target;
+		private final StatementHandler statement;
+		private final String sql;
+		private final long start;
+		private long rows;
+		private boolean finished;
+
+		QueryHandler(ResultSet target, StatementHandler statement, String sql, long start) {
+			this.target = target;
+			this.statement = statement;
+			this.sql = sql;
+			this.start = start;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "next":
+				try {
+					boolean hasRow = target.next();
+					if (hasRow) {
+						rows++;
+					} else {
+						finish(false);
+					}
+					return hasRow;
+				} catch (Throwable e) {
+					finish(true);
+					throw e;
+				}
+			case "close":
+				finish(false);
+				break;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				break;
+			}
+			return invokeTarget(target, method, args);
+		}
+
+		void finish(boolean failed) {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			if (statement.openQuery == this) {
+				statement.openQuery = null;
+			}
+			statement.metrics.record(statement.operation, sql, statement.params, System.nanoTime() - start, rows,
+					failed);
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package com.projecteprogramacio.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * Llista observable virtual que carrega les dades per pàgines a mesura que una
+ * {@code TableView} les demana.
+ * <p>
+ * La mida de la llista és el recompte total de files, però només es mantenen
+ * en memòria les últimes {@code maxCachedPages} pàgines consultades. Cada pàgina
+ * es demana a la font per clau (keyset): es recorda la clau de l'última fila de
+ * cada pàgina per poder demanar la següent, i per salts llunyans (arrossegar la
+ * barra de desplaçament) es demana a la font la clau de la posició, comptant des
+ * de l'última pàgina recorreguda que hi ha per sota.
+ * </p>
+ * <p>
+ * Les consultes són asíncrones: {@link #get(int)} mai no espera la base de
+ * dades. Una fila d'una pàgina que encara no ha arribat es llegeix com a null
+ * (la vista la mostra buida) i, quan la pàgina arriba, es notifica el canvi
+ * d'aquelles files. Després de {@link #refresh()}, les pàgines anteriors es
+ * continuen mostrant fins que arriben les noves.
+ * </p>
+ * <p>
+ * No és segura entre fils: s'ha d'utilitzar des del fil de JavaFX, i els futurs
+ * de la font s'hi han de completar.
+ * </p>
+ *
+ * @param <T> tipus dels elements
+ * @param <K> tipus de la clau de paginació
+ * @author Josuè González
+ */
+public class PagedObservableList<T, K> extends ObservableListBase<T> {
+
+	/**
+	 * Font de dades paginada per clau. Els futurs s'han de completar al fil de
+	 * JavaFX (p. ex. amb {@link DataService}).
+	 *
+	 * @param <T> tipus dels elements
+	 * @param <K> tipus de la clau de paginació
+	 */
+	public interface PageSource<T, K> {
+
+		/** @return futur amb el nombre total d'elements */
+		CompletableFuture<Integer> count();
+
+		/**
+		 * @param after clau de l'últim element de la pàgina anterior, o null per la
+		 *              primera pàgina
+		 * @param limit mida de la pàgina
+		 * @return futur amb els elements de la pàgina, en ordre
+		 */
+		CompletableFuture<List<T>> fetchAfter(K after, int limit);
+
+		/**
+		 * @param after  clau des de la qual es compta, o null per comptar des del
+		 *               principi
+		 * @param offset posició d'un element després de {@code after}
+		 * @return futur amb la clau de l'element d'aquesta posició, o null si no
+		 *         existeix
+		 */
+		CompletableFuture<K> keyAt(K after, int offset);
+
+		/**
+		 * @param item element carregat
+		 * @return clau de paginació de l'element
+		 */
+		K keyOf(T item);
+	}
+
+	private final PageSource<T, K> source;
+	private final int pageSize;
+
+	/** Pàgines carregades, en ordre d'accés (LRU). */
+	private final LinkedHashMap<Integer, List<T>> pages;
+
+	/** Pàgines d'abans de l'últim {@link #refresh()}, mostrades fins que arriben les noves. */
+	private final Map<Integer, List<T>> stalePages = new HashMap<>();
+
+	/** Pàgines demanades a la font que encara no han arribat. */
+	private final Set<Integer> loading = new HashSet<>();
+
+	/** Pàgines que han fallat; no es tornen a demanar fins al següent refresc. */
+	private final Set<Integer> failed = new HashSet<>();
+
+	/** Clau de l'últim element de cada pàgina ja recorreguda. */
+	private final Map<Integer, K> lastKeyOfPage = new HashMap<>();
+
+	private Consumer<Throwable> onError = Throwable::printStackTrace;
+
+	private int size;
+
+	/** Es canvia a cada {@link #refresh()}, per descartar les respostes d'abans. */
+	private int generation;
+
+	/**
+	 * Crea la llista buida; {@link #refresh()} en fa el primer recompte.
+	 *
+	 * @param source         font de dades
+	 * @param pageSize       elements per pàgina
+	 * @param maxCachedPages nombre màxim de pàgines en memòria
+	 */
+	public PagedObservableList(PageSource<T, K> source, int pageSize, int maxCachedPages) {
+		this.source = source;
+		this.pageSize = pageSize;
+		this.pages = new LinkedHashMap<>(maxCachedPages + 1, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+				return size() > maxCachedPages;
+			}
+		};
+	}
+
+	/**
+	 * @param onError acció que rep l'error d'una pàgina que no s'ha pogut carregar
+	 */
+	public void setOnError(Consumer<Throwable> onError) {
+		this.onError = onError;
+	}
+
+	/**
+	 * Retorna l'element si la seva pàgina ja és a memòria. Si no, en demana la
+	 * pàgina i retorna null.
+	 */
+	@Override
+	public T get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Índex " + index + " fora de rang (mida " + size + ")");
+		}
+		int pageIndex = index / pageSize;
+		List<T> page = pages.get(pageIndex);
+		if (page == null) {
+			requestPage(pageIndex);
+			page = stalePages.get(pageIndex);
+		}
+		int offset = index % pageSize;
+		return page != null && offset < page.size() ? page.get(offset) : null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Cerca només dins les pàgines carregades, per no recórrer tota la font.
+	 *
+	 * @return posició de l'element o -1 si no és a memòria
+	 */
+	@Override
+	public int indexOf(Object o) {
+		for (Map.Entry<Integer, List<T>> entry : pages.entrySet()) {
+			int pos = entry.getValue().indexOf(o);
+			if (pos >= 0) {
+				return entry.getKey() * pageSize + pos;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	/**
+	 * Torna a comptar els elements en segon pla i, quan arriba el recompte,
+	 * notifica un canvi complet a la vista. Les pàgines es tornen a demanar a
+	 * mesura que la vista les llegeix.
+	 *
+	 * @return futur amb el nombre d'elements, o amb l'error del recompte
+	 */
+	public CompletableFuture<Integer> refresh() {
+		int current = ++generation;
+		stalePages.clear();
+		stalePages.putAll(pages);
+		pages.clear();
+		loading.clear();
+		failed.clear();
+		lastKeyOfPage.clear();
+
+		return source.count().thenApply(count -> {
+			if (current == generation) {
+				int oldSize = size;
+				size = count;
+				beginChange();
+				nextReplace(0, size, Collections.nCopies(oldSize, null));
+				endChange();
+			}
+			return count;
+		});
+	}
+
+	/**
+	 * Substitueix un element carregat per una nova versió i notifica només
+	 * aquesta fila. Pot ser el mateix objecte, després de modificar-lo, perquè la
+	 * vista torni a pintar la fila. Si l'element no és a memòria no fa res.
+	 *
+	 * @param oldItem element actual
+	 * @param newItem element nou
+	 */
+	public void replaceLoaded(T oldItem, T newItem) {
+		for (Map.Entry<Integer, List<T>> entry : pages.entrySet()) {
+			List<T> page = entry.getValue();
+			int pos = page.indexOf(oldItem);
+			if (pos >= 0) {
+				page.set(pos, newItem);
+				int index = entry.getKey() * pageSize + pos;
+				beginChange();
+				nextSet(index, oldItem);
+				endChange();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return nombre de pàgines actualment en memòria
+	 */
+	public int getCachedPageCount() {
+		return pages.size();
+	}
+
+	private void requestPage(int pageIndex) {
+		if (loading.contains(pageIndex) || failed.contains(pageIndex)) {
+			return;
+		}
+		loading.add(pageIndex);
+		int current = generation;
+
+		CompletableFuture<K> after;
+		if (pageIndex == 0) {
+			after = CompletableFuture.completedFuture(null);
+		} else if (lastKeyOfPage.containsKey(pageIndex - 1)) {
+			after = CompletableFuture.completedFuture(lastKeyOfPage.get(pageIndex - 1));
+		} else {
+			// Es compta des de la pàgina recorreguda més propera per sota, per no
+			// saltar sempre des del principi
+			int known = -1;
+			for (int p : lastKeyOfPage.keySet()) {
+				if (p < pageIndex && p > known) {
+					known = p;
+				}
+			}
+			int from = (known + 1) * pageSize;
+			after = source.keyAt(known >= 0 ? lastKeyOfPage.get(known) : null, pageIndex * pageSize - 1 - from);
+		}
+
+		// Si la posició ja no existeix, la pàgina és buida
+		after.thenCompose(key -> pageIndex > 0 && key == null ? CompletableFuture.completedFuture(List.<T>of())
+				: source.fetchAfter(key, pageSize)).whenComplete((items, error) -> {
+					if (current != generation) {
+						return;
+					}
+					loading.remove(pageIndex);
+					if (error != null) {
+						failed.add(pageIndex);
+						onError.accept(DataService.unwrap(error));
+					} else {
+						pageLoaded(pageIndex, items);
+					}
+				});
+	}
+
+	private void pageLoaded(int pageIndex, List<T> items) {
+		List<T> page = new ArrayList<>(items);
+		if (!page.isEmpty()) {
+			lastKeyOfPage.put(pageIndex, source.keyOf(page.get(page.size() - 1)));
+		}
+		pages.put(pageIndex, page);
+		stalePages.remove(pageIndex);
+
+		int from = pageIndex * pageSize;
+		if (from >= size) {
+			return;
+		}
+		int to = Math.min(size, from + pageSize);
+		beginChange();
+		nextReplace(from, to, Collections.nCopies(to - from, null));
+		endChange();
+
+		// Una pàgina més curta del previst vol dir que s'han esborrat files des
+		// del recompte (p. ex. des d'una altra caixa): la llista acaba aquí
+		if (page.size() < to - from) {
+			truncate(from + page.size());
+		}
+	}
+
+	/**
+	 * Escurça la llista fins a {@code newSize}, descarta les pàgines posteriors i
+	 * notifica l'eliminació de les files que sobren.
+	 */
+	private void truncate(int newSize) {
+		if (newSize >= size) {
+			return;
+		}
+		int oldSize = size;
+		int lastPage = newSize / pageSize;
+		pages.keySet().removeIf(p -> p > lastPage);
+		stalePages.keySet().removeIf(p -> p > lastPage);
+		lastKeyOfPage.keySet().removeIf(p -> p > lastPage);
+		size = newSize;
+
+		beginChange();
+		nextRemove(newSize, Collections.nCopies(oldSize - newSize, null));
+		endChange();
+	}
+}
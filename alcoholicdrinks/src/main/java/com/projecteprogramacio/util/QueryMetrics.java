@@ -0,0 +1,275 @@
+package com.projecteprogramacio.util;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mètriques de les sentències SQL executades pels DAO.
+ * <p>
+ * Les connexions de {@link Database#getConnection()} passen per
+ * {@link #instrument(Connection)}, que mesura cada execució i l'atribueix al
+ * mètode del DAO que ha preparat la sentència (p. ex.
+ * {@code DrinkDAO.getAllDrinks}). Per cada operació es compten les crides, les
+ * files llegides o modificades i els errors, i es guarda un histograma de
+ * latència amb cubetes en potències de dos de microsegons. Tots els comptadors
+ * són {@link LongAdder}, de manera que registrar una execució no bloqueja.
+ * </p>
+ * <p>
+ * Les consultes que superen {@link #getSlowThresholdMillis()} es guarden, amb
+ * l'SQL i els paràmetres, en un registre de consultes lentes amb les
+ * {@link #MAX_SLOW_QUERIES} més recents, i també s'escriuen a
+ * {@code System.err}.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class QueryMetrics {
+
+	/** Llindar per defecte de consulta lenta. */
+	public static final long DEFAULT_SLOW_THRESHOLD_MS = 100;
+
+	/** Consultes lentes que es conserven. */
+	public static final int MAX_SLOW_QUERIES = 200;
+
+	/**
+	 * Cubetes de l'histograma: la {@code i} compta les durades per sota de
+	 * {@code 2^i} µs (la 0, per sota d'1 µs) i l'última, la resta (més de 2^26 µs,
+	 * uns 67 s).
+	 */
+	static final int BUCKETS = 28;
+
+	private static final QueryMetrics INSTANCE = new QueryMetrics();
+
+	private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+	private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+	private volatile long slowThresholdNanos = DEFAULT_SLOW_THRESHOLD_MS * 1_000_000;
+	private volatile LocalDateTime since = LocalDateTime.now();
+
+	QueryMetrics() {
+	}
+
+	/**
+	 * @return mètriques compartides per tota l'aplicació
+	 */
+	public static QueryMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Embolcalla una connexió perquè les sentències que s'hi preparen quedin
+	 * mesurades. Tancar l'embolcall tanca la connexió original.
+	 *
+	 * @param conn connexió a mesurar
+	 * @return connexió mesurada
+	 */
+	public Connection instrument(Connection conn) {
+		return InstrumentedConnection.wrap(conn, this);
+	}
+
+	/**
+	 * @return llindar de consulta lenta en mil·lisegons
+	 */
+	public long getSlowThresholdMillis() {
+		return slowThresholdNanos / 1_000_000;
+	}
+
+	/**
+	 * @param millis llindar a partir del qual una execució es considera lenta
+	 */
+	public void setSlowThresholdMillis(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("El llindar no pot ser negatiu");
+		}
+		slowThresholdNanos = millis * 1_000_000;
+	}
+
+	/**
+	 * Registra una execució.
+	 *
+	 * @param operation mètode que ha preparat la sentència
+	 * @param sql       text de la sentència
+	 * @param params    paràmetres enllaçats, o null si no se'n coneixen
+	 * @param nanos     durada, incloent-hi la lectura de les files
+	 * @param rows      files llegides o modificades
+	 * @param failed    true si l'execució ha llançat una excepció
+	 */
+	void record(String operation, String sql, List<Object> params, long nanos, long rows, boolean failed) {
+		operations.computeIfAbsent(operation, OperationMetrics::new).record(nanos, rows, failed);
+		if (nanos >= slowThresholdNanos) {
+			SlowQuery slow = new SlowQuery(LocalDateTime.now(), operation, sql,
+					params != null ? params.stream().map(QueryMetrics::describe).toList() : List.of(),
+					nanos / 1_000_000.0, rows, failed);
+			synchronized (slowQueries) {
+				if (slowQueries.size() == MAX_SLOW_QUERIES) {
+					slowQueries.removeLast();
+				}
+				slowQueries.addFirst(slow);
+			}
+			System.err.println(String.format(Locale.ROOT, "Consulta lenta (%.1f ms) a %s: %s %s",
+					slow.millis(), operation, sql, slow.params()));
+		}
+	}
+
+	/**
+	 * @return mètriques per operació, ordenades per nom
+	 */
+	public List<Stats> getStats() {
+		Map<String, Stats> sorted = new TreeMap<>();
+		operations.forEach((name, m) -> sorted.put(name, m.snapshot()));
+		return new ArrayList<>(sorted.values());
+	}
+
+	/**
+	 * @return consultes lentes, de la més recent a la més antiga
+	 */
+	public List<SlowQuery> getSlowQueries() {
+		synchronized (slowQueries) {
+			return new ArrayList<>(slowQueries);
+		}
+	}
+
+	/**
+	 * @return moment de l'últim {@link #reset()} o de l'inici de l'aplicació
+	 */
+	public LocalDateTime getSince() {
+		return since;
+	}
+
+	/**
+	 * Esborra totes les mètriques i el registre de consultes lentes.
+	 */
+	public void reset() {
+		operations.clear();
+		synchronized (slowQueries) {
+			slowQueries.clear();
+		}
+		since = LocalDateTime.now();
+	}
+
+	/**
+	 * Converteix un paràmetre en text per al registre; els binaris i els textos
+	 * llargs es resumeixen.
+	 */
+	private static String describe(Object value) {
+		if (value instanceof byte[] bytes) {
+			return "<" + bytes.length + " bytes>";
+		}
+		String text = String.valueOf(value);
+		return text.length() > 100 ? text.substring(0, 100) + "..." : text;
+	}
+
+	/**
+	 * @param nanos durada
+	 * @return cubeta de l'histograma corresponent
+	 */
+	static int bucketOf(long nanos) {
+		long micros = nanos / 1000;
+		return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+	}
+
+	/** Comptadors d'una operació. */
+	private static class OperationMetrics {
+		private final String name;
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+		OperationMetrics(String name) {
+			this.name = name;
+			for (int i = 0; i < BUCKETS; i++) {
+				histogram[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos, long rowCount, boolean failed) {
+			calls.increment();
+			if (failed) {
+				errors.increment();
+			}
+			rows.add(rowCount);
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+			histogram[bucketOf(nanos)].increment();
+		}
+
+		Stats snapshot() {
+			long[] counts = new long[BUCKETS];
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = histogram[i].sum();
+				total += counts[i];
+			}
+			long count = calls.sum();
+			double max = maxNanos.get() / 1_000_000.0;
+			return new Stats(name, count, errors.sum(), rows.sum(),
+					count == 0 ? 0 : totalNanos.sum() / (count * 1_000_000.0), percentile(counts, total, 0.50, max),
+					percentile(counts, total, 0.95, max), percentile(counts, total, 0.99, max), max, counts);
+		}
+
+		/**
+		 * Percentil aproximat: límit superior de la cubeta on cau, sense passar del
+		 * màxim observat.
+		 */
+		private static double percentile(long[] counts, long total, double fraction, double maxMillis) {
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(total * fraction);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min((1L << i) / 1000.0, maxMillis);
+				}
+			}
+			return maxMillis;
+		}
+	}
+
+	/**
+	 * Mètriques d'una operació en un moment concret. Les latències són en
+	 * mil·lisegons i els percentils són aproximats (límit de la cubeta).
+	 *
+	 * @param operation operació ({@code Classe.mètode})
+	 * @param calls     execucions
+	 * @param errors    execucions que han llançat una excepció
+	 * @param rows      files llegides o modificades
+	 * @param avgMillis latència mitjana
+	 * @param p50Millis mediana
+	 * @param p95Millis percentil 95
+	 * @param p99Millis percentil 99
+	 * @param maxMillis latència màxima
+	 * @param histogram execucions per cubeta (vegeu {@link QueryMetrics#BUCKETS})
+	 */
+	public record Stats(String operation, long calls, long errors, long rows, double avgMillis, double p50Millis,
+			double p95Millis, double p99Millis, double maxMillis, long[] histogram) {
+	}
+
+	/**
+	 * Execució que ha superat el llindar de consulta lenta.
+	 *
+	 * @param time      moment en què ha acabat
+	 * @param operation operació ({@code Classe.mètode})
+	 * @param sql       text de la sentència
+	 * @param params    paràmetres enllaçats, en ordre
+	 * @param millis    durada en mil·lisegons
+	 * @param rows      files llegides o modificades
+	 * @param failed    true si ha llançat una excepció
+	 */
+	public record SlowQuery(LocalDateTime time, String operation, String sql, List<String> params, double millis,
+			long rows, boolean failed) {
+	}
+}
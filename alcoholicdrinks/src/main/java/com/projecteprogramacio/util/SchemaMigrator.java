@@ -0,0 +1,133 @@
+package com.projecteprogramacio.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Aplica les migracions d'esquema pendents a la base de dades.
+ * <p>
+ * Cada migració és un script SQL de {@code /db/migration} amb nom
+ * {@code V<versió>__<descripció>.sql}. Les versions aplicades es registren a la
+ * taula {@code schema_version}; en arrencar només s'executen les posteriors a
+ * l'última aplicada, cadascuna dins la seva pròpia transacció. Per afegir-ne
+ * una de nova, es crea el fitxer i s'afegeix a {@link #MIGRATIONS}.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class SchemaMigrator {
+
+	private static final String MIGRATION_PATH = "/db/migration/";
+
+	/** Scripts de migració, en ordre de versió. */
+	private static final String[] MIGRATIONS = {
+			"V1__esquema_inicial.sql",
+			"V2__index_rendiment.sql",
+			"V3__noms_unics.sql",
+			"V4__importacions_cataleg.sql",
+			"V5__claus_idempotencia.sql",
+			"V6__resums_vendes.sql",
+			"V7__index_cerca_begudes.sql",
+	};
+
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	private final Connection conn;
+
+	/**
+	 * @param conn connexió JDBC activa
+	 */
+	public SchemaMigrator(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * Aplica totes les migracions pendents.
+	 *
+	 * @return nombre de migracions aplicades
+	 * @throws SQLException si una migració falla; les anteriors queden aplicades
+	 *                      i la que falla es desfà
+	 */
+	public int migrate() throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (version INTEGER PRIMARY KEY, "
+					+ "description TEXT NOT NULL, applied_at TEXT NOT NULL)");
+		}
+
+		int current = getCurrentVersion();
+		if (current > MIGRATIONS.length) {
+			System.err.println("La base de dades té la versió d'esquema " + current
+					+ ", més nova que la de l'aplicació (" + MIGRATIONS.length + ")");
+			return 0;
+		}
+
+		int applied = 0;
+		for (int i = current; i < MIGRATIONS.length; i++) {
+			apply(i + 1, MIGRATIONS[i]);
+			applied++;
+		}
+		return applied;
+	}
+
+	/**
+	 * @return última versió aplicada, o 0 si no n'hi ha cap
+	 * @throws SQLException si hi ha un error a la base de dades
+	 */
+	public int getCurrentVersion() throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	private void apply(int version, String fileName) throws SQLException {
+		if (!fileName.startsWith("V" + version + "__")) {
+			throw new SQLException("La migració " + fileName + " no correspon a la versió " + version);
+		}
+		String script = readScript(fileName);
+		String description = fileName.substring(fileName.indexOf("__") + 2, fileName.length() - ".sql".length())
+				.replace('_', ' ');
+
+		boolean autoCommit = conn.getAutoCommit();
+		try (Statement stmt = conn.createStatement();
+				PreparedStatement record = conn.prepareStatement(
+						"INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+			conn.setAutoCommit(false);
+
+			// El controlador de SQLite executa totes les sentències de l'script
+			stmt.executeUpdate(script);
+
+			record.setInt(1, version);
+			record.setString(2, description);
+			record.setString(3, LocalDateTime.now().format(FORMATTER));
+			record.executeUpdate();
+
+			conn.commit();
+			System.err.println("Migració aplicada: " + fileName);
+		} catch (SQLException e) {
+			conn.rollback();
+			throw new SQLException("Error aplicant la migració " + fileName + ": " + e.getMessage(), e);
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	private static String readScript(String fileName) throws SQLException {
+		try (InputStream in = SchemaMigrator.class.getResourceAsStream(MIGRATION_PATH + fileName)) {
+			if (in == null) {
+				throw new SQLException("No es troba la migració " + fileName);
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new SQLException("No es pot llegir la migració " + fileName, e);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package com.projecteprogramacio.util;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Memòria cau de miniatures ja descodificades.
+ * <p>
+ * Les imatges es descodifiquen en segon pla directament a la mida on es
+ * mostraran, i es guarden per espai de noms (p. ex. "drink", "drinkType"),
+ * identificador i mida. Cada entrada recorda el hash del contingut: si les
+ * dades d'una imatge canvien, la següent petició amb els bytes nous la torna a
+ * descodificar.
+ * </p>
+ * <p>
+ * La mida total està limitada pels bytes de píxels descodificats; quan se
+ * supera, s'eliminen les entrades menys usades recentment. Tots els mètodes
+ * s'han de cridar des del fil de JavaFX.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class ThumbnailCache {
+
+	/** Límit per defecte de la memòria cau compartida: 32 MB de píxels. */
+	private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+	private static final ThumbnailCache INSTANCE = new ThumbnailCache(DEFAULT_MAX_BYTES);
+
+	/** Imatge que es mostra mentre la miniatura real es descodifica. */
+	public static final Image PLACEHOLDER = createPlaceholder();
+
+	private final long maxBytes;
+
+	/** Entrades en ordre d'accés (LRU). */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+	/** Última descodificació en curs de cada miniatura. */
+	private final Map<Key, Decode> inFlight = new HashMap<>();
+
+	private final ExecutorService decoder = Executors.newFixedThreadPool(2, r -> {
+		Thread t = new Thread(r, "thumbnail-decoder");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private long totalBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param maxBytes bytes màxims de píxels descodificats a mantenir
+	 */
+	public ThumbnailCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return memòria cau compartida per tota l'aplicació
+	 */
+	public static ThumbnailCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Retorna la miniatura guardada per un identificador, sense comprovar el
+	 * contingut. Útil quan encara no es tenen els bytes de la imatge. Si no hi
+	 * és, la fallada es compta quan es crida {@link #getOrDecode}.
+	 *
+	 * @return la miniatura o null si no és a la memòria cau
+	 */
+	public Image get(String namespace, int id, int width, int height) {
+		Entry entry = entries.get(new Key(namespace, id, width, height));
+		if (entry != null) {
+			hits++;
+			return entry.image;
+		}
+		return null;
+	}
+
+	/**
+	 * Lliura la miniatura dels bytes donats. Si ja és a la memòria cau amb el
+	 * mateix contingut, {@code onReady} s'executa immediatament; si no, la imatge
+	 * es descodifica en segon pla i {@code onReady} s'executa al fil de JavaFX
+	 * quan està llesta (amb null si els bytes no són una imatge vàlida).
+	 *
+	 * @param namespace espai de noms de l'identificador
+	 * @param id        identificador de l'objecte propietari de la imatge
+	 * @param bytes     contingut de la imatge
+	 * @param width     amplada de destinació
+	 * @param height    alçada de destinació
+	 * @param onReady   acció que rep la miniatura
+	 */
+	public void getOrDecode(String namespace, int id, byte[] bytes, int width, int height,
+			Consumer<Image> onReady) {
+		Key key = new Key(namespace, id, width, height);
+		int hash = Arrays.hashCode(bytes);
+
+		Entry entry = entries.get(key);
+		if (entry != null && entry.contentHash == hash) {
+			hits++;
+			onReady.accept(entry.image);
+			return;
+		}
+		misses++;
+
+		Decode pending = inFlight.get(key);
+		if (pending != null && pending.contentHash() == hash) {
+			pending.waiting().add(onReady);
+			return;
+		}
+		// Si la que està en curs és d'un contingut anterior no serveix: se'n
+		// comença una de nova, i només aquesta es guardarà
+		Decode decode = new Decode(hash, new ArrayList<>());
+		decode.waiting().add(onReady);
+		inFlight.put(key, decode);
+
+		decoder.execute(() -> {
+			Image image = new Image(new ByteArrayInputStream(bytes), width, height, true, true);
+			Image result = image.isError() ? null : image;
+			Platform.runLater(() -> complete(key, decode, result));
+		});
+	}
+
+	/**
+	 * Elimina totes les miniatures d'un identificador, de qualsevol mida.
+	 */
+	public void invalidate(String namespace, int id) {
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, Entry> e = it.next();
+			if (e.getKey().id == id && e.getKey().namespace.equals(namespace)) {
+				totalBytes -= e.getValue().bytes;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return instantània de les mètriques de la memòria cau
+	 */
+	public Stats getStats() {
+		return new Stats(hits, misses, evictions, entries.size(), totalBytes, maxBytes);
+	}
+
+	private void complete(Key key, Decode decode, Image image) {
+		boolean latest = inFlight.get(key) == decode;
+		if (latest) {
+			inFlight.remove(key);
+		}
+		if (latest && image != null) {
+			long bytes = (long) image.getWidth() * (long) image.getHeight() * 4;
+			Entry previous = entries.put(key, new Entry(image, decode.contentHash(), bytes));
+			if (previous != null) {
+				totalBytes -= previous.bytes;
+			}
+			totalBytes += bytes;
+			evictIfNeeded();
+		}
+		decode.waiting().forEach(callback -> callback.accept(image));
+	}
+
+	private void evictIfNeeded() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (totalBytes > maxBytes && it.hasNext()) {
+			totalBytes -= it.next().bytes;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	private static Image createPlaceholder() {
+		WritableImage image = new WritableImage(1, 1);
+		PixelWriter writer = image.getPixelWriter();
+		writer.setColor(0, 0, Color.LIGHTGRAY);
+		return image;
+	}
+
+	private record Key(String namespace, int id, int width, int height) {
+	}
+
+	private record Entry(Image image, int contentHash, long bytes) {
+	}
+
+	/** Descodificació d'un contingut concret i les accions que n'esperen el resultat. */
+	private record Decode(int contentHash, List<Consumer<Image>> waiting) {
+	}
+
+	/**
+	 * Mètriques de la memòria cau de miniatures.
+	 *
+	 * @param hits      peticions servides des de la memòria cau
+	 * @param misses    peticions que han requerit descodificar
+	 * @param evictions entrades eliminades per falta d'espai
+	 * @param entries   miniatures guardades
+	 * @param bytes     bytes de píxels ocupats
+	 * @param maxBytes  límit de bytes de píxels
+	 */
+	public record Stats(long hits, long misses, long evictions, int entries, long bytes, long maxBytes) {
+	}
+}
@@ -0,0 +1,294 @@
+package com.projecteprogramacio.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import com.projecteprogramacio.dao.TicketDAO;
+import com.projecteprogramacio.dao.TicketFilter;
+
+/**
+ * Exporta els tiquets i les seves línies a un fitxer CSV o JSON Lines,
+ * opcionalment comprimit amb gzip.
+ * <p>
+ * Les files es llegeixen amb un cursor només cap endavant
+ * ({@link TicketDAO#forEachSalesRow}) i s'escriuen a mesura que arriben a
+ * través d'un canal de fitxer amb memòria intermèdia, de manera que la memòria
+ * usada no depèn de la mida de l'historial. Cada fila és una línia de tiquet
+ * amb les dades del seu tiquet repetides. El fitxer s'escriu primer com a
+ * {@code .part} i es mou al destí només quan l'exportació acaba bé.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class TicketExporter {
+
+	/** Format del fitxer de sortida. */
+	public enum Format {
+		CSV, JSONL;
+
+		/**
+		 * @param file fitxer de destí
+		 * @return format segons l'extensió, sense tenir en compte {@code .gz}
+		 *         ({@code .jsonl}, {@code .ndjson} i {@code .json} són JSON Lines;
+		 *         la resta, CSV)
+		 */
+		public static Format of(Path file) {
+			String name = stripGzip(file.getFileName().toString().toLowerCase(Locale.ROOT));
+			return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json") ? JSONL : CSV;
+		}
+	}
+
+	/** Files que es demanen al controlador per cada lectura del cursor. */
+	public static final int DEFAULT_FETCH_SIZE = 500;
+
+	/** Mida de les memòries intermèdies d'escriptura i compressió. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** Cada quantes files es comprova si s'ha cancel·lat l'exportació. */
+	private static final int CHECK_INTERVAL = 1000;
+
+	private static final String CSV_HEADER = "ticket_id,user_id,status,created_at,updated_at,ticket_total,"
+			+ "ticket_line_id,drink_id,drink_name,quantity,price,line_total";
+
+	private final Connection conn;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	/**
+	 * @param conn connexió JDBC activa
+	 */
+	public TicketExporter(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * @param fetchSize files per lectura del cursor
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize <= 0) {
+			throw new IllegalArgumentException("La mida de lectura ha de ser positiva");
+		}
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Exporta amb el format i la compressió segons l'extensió del fitxer.
+	 *
+	 * @param filter filtre de tiquets; null per exportar-los tots
+	 * @param file   fitxer de destí
+	 * @return resultat de l'exportació
+	 * @throws IOException  si no es pot escriure el fitxer o s'ha cancel·lat
+	 * @throws SQLException si hi ha un error a la base de dades
+	 * @see #export(TicketFilter, Path, Format, boolean)
+	 */
+	public Result export(TicketFilter filter, Path file) throws IOException, SQLException {
+		String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+		return export(filter, file, Format.of(file), name.endsWith(".gz"));
+	}
+
+	/**
+	 * Exporta els tiquets que compleixen el filtre. Si falla o s'interromp el
+	 * fil, el fitxer de destí no es modifica.
+	 *
+	 * @param filter filtre de tiquets; null per exportar-los tots
+	 * @param file   fitxer de destí; se substitueix si ja existeix
+	 * @param format format de sortida
+	 * @param gzip   true per comprimir la sortida amb gzip
+	 * @return resultat de l'exportació
+	 * @throws IOException  si no es pot escriure el fitxer o s'ha cancel·lat
+	 * @throws SQLException si hi ha un error a la base de dades
+	 */
+	public Result export(TicketFilter filter, Path file, Format format, boolean gzip)
+			throws IOException, SQLException {
+		long start = System.currentTimeMillis();
+		Path target = file.toAbsolutePath();
+		Path part = target.resolveSibling(target.getFileName() + ".part");
+
+		long rows;
+		int[] tickets = { 0 };
+		try {
+			// Tancar l'escriptor tanca la compressió i el canal; el canal també es tanca
+			// pel seu compte per si falla la creació de l'escriptor
+			try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+					Writer writer = newWriter(Channels.newOutputStream(channel), gzip)) {
+				if (format == Format.CSV) {
+					writer.write(CSV_HEADER);
+					writer.write('\n');
+				}
+				int[] lastTicketId = { -1 };
+				long[] written = { 0 };
+				rows = new TicketDAO(conn).forEachSalesRow(filter, fetchSize, row -> {
+					if (row.ticketId() != lastTicketId[0]) {
+						lastTicketId[0] = row.ticketId();
+						tickets[0]++;
+					}
+					if (format == Format.CSV) {
+						writeCsv(writer, row);
+					} else {
+						writeJson(writer, row);
+					}
+					if (++written[0] % CHECK_INTERVAL == 0 && Thread.currentThread().isInterrupted()) {
+						throw new InterruptedIOException("Exportació cancel·lada");
+					}
+				});
+			}
+			Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | SQLException | RuntimeException e) {
+			Files.deleteIfExists(part);
+			throw e;
+		}
+
+		return new Result(rows, tickets[0], Files.size(target), System.currentTimeMillis() - start);
+	}
+
+	private static Writer newWriter(OutputStream out, boolean gzip) throws IOException {
+		return new BufferedWriter(
+				new OutputStreamWriter(gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out, StandardCharsets.UTF_8),
+				BUFFER_SIZE);
+	}
+
+	private static void writeCsv(Writer writer, TicketDAO.SalesRow row) throws IOException {
+		writer.write(Integer.toString(row.ticketId()));
+		writer.write(',');
+		writer.write(Integer.toString(row.userId()));
+		writer.write(',');
+		writeCsvField(writer, row.status());
+		writer.write(',');
+		writeCsvField(writer, row.createdAt());
+		writer.write(',');
+		writeCsvField(writer, row.updatedAt());
+		writer.write(',');
+		writer.write(money(row.ticketTotal()));
+		writer.write(',');
+		if (row.ticketLineId() != 0) {
+			writer.write(Integer.toString(row.ticketLineId()));
+			writer.write(',');
+			writer.write(Integer.toString(row.drinkId()));
+			writer.write(',');
+			writeCsvField(writer, row.drinkName());
+			writer.write(',');
+			writer.write(Integer.toString(row.quantity()));
+			writer.write(',');
+			writer.write(money(row.price()));
+			writer.write(',');
+			writer.write(money(row.quantity() * row.price()));
+		} else {
+			writer.write(",,,,,");
+		}
+		writer.write('\n');
+	}
+
+	private static void writeCsvField(Writer writer, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+
+	private static void writeJson(Writer writer, TicketDAO.SalesRow row) throws IOException {
+		writer.write("{\"ticket_id\":");
+		writer.write(Integer.toString(row.ticketId()));
+		writer.write(",\"user_id\":");
+		writer.write(Integer.toString(row.userId()));
+		writer.write(",\"status\":");
+		writeJsonString(writer, row.status());
+		writer.write(",\"created_at\":");
+		writeJsonString(writer, row.createdAt());
+		writer.write(",\"updated_at\":");
+		writeJsonString(writer, row.updatedAt());
+		writer.write(",\"ticket_total\":");
+		writer.write(money(row.ticketTotal()));
+		if (row.ticketLineId() != 0) {
+			writer.write(",\"ticket_line_id\":");
+			writer.write(Integer.toString(row.ticketLineId()));
+			writer.write(",\"drink_id\":");
+			writer.write(Integer.toString(row.drinkId()));
+			writer.write(",\"drink_name\":");
+			writeJsonString(writer, row.drinkName());
+			writer.write(",\"quantity\":");
+			writer.write(Integer.toString(row.quantity()));
+			writer.write(",\"price\":");
+			writer.write(money(row.price()));
+			writer.write(",\"line_total\":");
+			writer.write(money(row.quantity() * row.price()));
+		}
+		writer.write("}\n");
+	}
+
+	private static void writeJsonString(Writer writer, String value) throws IOException {
+		if (value == null) {
+			writer.write("null");
+			return;
+		}
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"' -> writer.write("\\\"");
+			case '\\' -> writer.write("\\\\");
+			case '\n' -> writer.write("\\n");
+			case '\r' -> writer.write("\\r");
+			case '\t' -> writer.write("\\t");
+			default -> {
+				if (c < 0x20) {
+					writer.write(String.format("\\u%04x", (int) c));
+				} else {
+					writer.write(c);
+				}
+			}
+			}
+		}
+		writer.write('"');
+	}
+
+	/** Import amb dos decimals i punt decimal, independent de la configuració regional. */
+	private static String money(double amount) {
+		return String.format(Locale.ROOT, "%.2f", amount);
+	}
+
+	private static String stripGzip(String name) {
+		return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+	}
+
+	/**
+	 * Resultat d'una exportació.
+	 *
+	 * @param rows          files escrites (una per línia de tiquet)
+	 * @param tickets       tiquets diferents exportats
+	 * @param bytes         mida del fitxer escrit
+	 * @param elapsedMillis durada en mil·lisegons
+	 */
+	public record Result(long rows, int tickets, long bytes, long elapsedMillis) {
+
+		/** @return files escrites per segon */
+		public double rowsPerSecond() {
+			return elapsedMillis == 0 ? 0 : rows * 1000.0 / elapsedMillis;
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package com.projecteprogramacio.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.projecteprogramacio.dao.TicketDAO;
+import com.projecteprogramacio.model.Ticket;
+
+/**
+ * Escriptor de tiquets amb confirmació agrupada.
+ * <p>
+ * Els tiquets que s'envien amb {@link #submit(Ticket)} es posen en una cua i un
+ * únic fil escriptor els desa en grups: agafa el primer, espera com a molt
+ * {@code maxDelayMillis} perquè n'arribin més i els insereix tots, fins a
+ * {@code maxBatch}, en una sola transacció amb
+ * {@link TicketDAO#insertTickets(List)}. Quan diverses caixes tanquen tiquets
+ * alhora, el cost de confirmar la transacció es paga un cop per grup en lloc
+ * d'un cop per tiquet.
+ * </p>
+ * <p>
+ * Cada futur es completa al fil escriptor amb el {@code ticket_id} generat, o
+ * amb l'error del seu tiquet; un tiquet que falla no impedeix desar la resta
+ * del grup.
+ * </p>
+ * <p>
+ * Entre grups, el mateix fil purga cada {@link #PURGE_INTERVAL} les claus
+ * d'idempotència més antigues que {@link #KEY_TTL}.
+ * </p>
+ *
+ * @author Josuè González
+ */
+public class TicketWriter {
+
+	/**
+	 * Origen de la connexió de cada grup.
+	 */
+	@FunctionalInterface
+	public interface ConnectionSource {
+
+		/**
+		 * @return connexió nova, que tanca l'escriptor en acabar el grup
+		 * @throws SQLException si no es pot obtenir
+		 */
+		Connection open() throws SQLException;
+	}
+
+	/** Tiquets màxims per transacció per defecte. */
+	public static final int DEFAULT_MAX_BATCH = 64;
+
+	/** Espera màxima per defecte perquè s'ompli un grup. */
+	public static final long DEFAULT_MAX_DELAY_MS = 5;
+
+	/** Temps durant el qual un reenviament amb la mateixa clau retorna el tiquet desat. */
+	public static final Duration KEY_TTL = Duration.ofHours(24);
+
+	/** Cada quant es purguen les claus d'idempotència caducades. */
+	public static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+	/** Si ja s'ha creat l'escriptor compartit. */
+	private static volatile boolean sharedStarted;
+
+	/** Marca de final de cua en aturar l'escriptor. */
+	private static final Pending STOP = new Pending(null, null);
+
+	private final ConnectionSource source;
+	private final int maxBatch;
+	private final long maxDelayNanos;
+	private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+	private final Thread writer;
+	private volatile boolean stopped;
+
+	private final LongAdder written = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final AtomicLong largestBatch = new AtomicLong();
+
+	/**
+	 * Crea l'escriptor i engega el seu fil.
+	 *
+	 * @param source         d'on s'obté la connexió de cada grup
+	 * @param maxBatch       tiquets màxims per transacció
+	 * @param maxDelayMillis espera màxima perquè arribin més tiquets després del
+	 *                       primer; 0 desa només els que ja són a la cua
+	 */
+	public TicketWriter(ConnectionSource source, int maxBatch, long maxDelayMillis) {
+		if (maxBatch <= 0 || maxDelayMillis < 0) {
+			throw new IllegalArgumentException("Mida de grup o espera no vàlides");
+		}
+		this.source = source;
+		this.maxBatch = maxBatch;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.writer = new Thread(this::run, "ticket-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * @return escriptor compartit per tota l'aplicació
+	 */
+	public static TicketWriter getInstance() {
+		return Shared.INSTANCE;
+	}
+
+	/**
+	 * Atura l'escriptor compartit si s'ha arribat a crear, desant els tiquets que
+	 * queden a la cua. Si no s'ha enviat mai cap tiquet no fa res: no engega el fil
+	 * ni demana cap connexió només per aturar-lo.
+	 *
+	 * @param timeoutMillis temps màxim d'espera
+	 * @see #shutdown(long)
+	 */
+	public static void shutdownIfStarted(long timeoutMillis) {
+		if (sharedStarted) {
+			Shared.INSTANCE.shutdown(timeoutMillis);
+		}
+	}
+
+	/**
+	 * Comptadors de l'escriptor compartit. Si encara no s'ha creat, retorna
+	 * comptadors a zero sense engegar-lo.
+	 *
+	 * @return comptadors de l'escriptor compartit
+	 * @see #getStats()
+	 */
+	public static Stats getSharedStats() {
+		return sharedStarted ? Shared.INSTANCE.getStats() : new Stats(0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Posa un tiquet a la cua per inserir-lo amb les seves línies. El tiquet no
+	 * s'ha de modificar fins que el futur s'hagi completat.
+	 *
+	 * @param ticket tiquet a inserir
+	 * @return futur que es completa al fil escriptor amb el {@code ticket_id}
+	 *         generat, o amb l'error que ha impedit desar-lo
+	 */
+	public CompletableFuture<Integer> submit(Ticket ticket) {
+		CompletableFuture<Integer> future = new CompletableFuture<>();
+		if (stopped) {
+			future.completeExceptionally(new IllegalStateException("L'escriptor de tiquets està aturat"));
+			return future;
+		}
+		queue.add(new Pending(ticket, future));
+		return future;
+	}
+
+	/**
+	 * Desa els tiquets que queden a la cua i atura el fil escriptor, esperant com
+	 * a molt {@code timeoutMillis}. S'ha de cridar en sortir de l'aplicació, abans
+	 * de tancar el pool.
+	 *
+	 * @param timeoutMillis temps màxim d'espera
+	 */
+	public void shutdown(long timeoutMillis) {
+		stopped = true;
+		queue.add(STOP);
+		try {
+			writer.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return comptadors de l'escriptor
+	 */
+	public Stats getStats() {
+		return new Stats(written.sum(), failed.sum(), batches.sum(), largestBatch.get(), queue.size());
+	}
+
+	private void run() {
+		List<Pending> batch = new ArrayList<>(maxBatch);
+		long nextPurge = System.nanoTime();
+		boolean stopping = false;
+		while (!stopping) {
+			try {
+				long untilPurge = nextPurge - System.nanoTime();
+				if (untilPurge <= 0) {
+					purgeExpiredKeys();
+					untilPurge = PURGE_INTERVAL.toNanos();
+					nextPurge = System.nanoTime() + untilPurge;
+				}
+				Pending first = queue.poll(untilPurge, TimeUnit.NANOSECONDS);
+				if (first != null) {
+					stopping = collect(first, batch);
+				}
+			} catch (InterruptedException e) {
+				stopping = true;
+			}
+			write(batch);
+			batch.clear();
+		}
+		// Qualsevol cosa que hagi entrat després de la marca de final
+		for (Pending pending; (pending = queue.poll()) != null;) {
+			if (pending != STOP) {
+				pending.future().completeExceptionally(new IllegalStateException("L'escriptor de tiquets està aturat"));
+			}
+		}
+	}
+
+	/**
+	 * Omple el grup a partir del primer tiquet fins que és ple, passa l'espera
+	 * màxima o arriba la marca de final.
+	 *
+	 * @return true si s'ha trobat la marca de final
+	 */
+	private boolean collect(Pending first, List<Pending> batch) throws InterruptedException {
+		if (first == STOP) {
+			return true;
+		}
+		batch.add(first);
+		long deadline = System.nanoTime() + maxDelayNanos;
+		while (batch.size() < maxBatch) {
+			Pending next = queue.poll();
+			if (next == null) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+					return false;
+				}
+			}
+			if (next == STOP) {
+				return true;
+			}
+			batch.add(next);
+		}
+		return false;
+	}
+
+	private void purgeExpiredKeys() {
+		try (Connection conn = source.open()) {
+			new TicketDAO(conn).purgeIdempotencyKeys(LocalDateTime.now().minus(KEY_TTL));
+		} catch (SQLException e) {
+			System.err.println("Error purgant les claus d'idempotència: " + e.getMessage());
+		}
+	}
+
+	private void write(List<Pending> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<Ticket> tickets = new ArrayList<>(batch.size());
+		for (Pending pending : batch) {
+			tickets.add(pending.ticket());
+		}
+
+		List<SQLException> errors;
+		try (Connection conn = source.open()) {
+			errors = new TicketDAO(conn).insertTickets(tickets);
+		} catch (SQLException | RuntimeException e) {
+			System.err.println("Error desant un grup de " + batch.size() + " tiquets: " + e.getMessage());
+			failed.add(batch.size());
+			for (Pending pending : batch) {
+				pending.future().completeExceptionally(e);
+			}
+			return;
+		}
+
+		batches.increment();
+		largestBatch.accumulateAndGet(batch.size(), Math::max);
+		for (int i = 0; i < batch.size(); i++) {
+			Pending pending = batch.get(i);
+			SQLException error = errors.get(i);
+			if (error == null) {
+				written.increment();
+				pending.future().complete(pending.ticket().getTicketId());
+			} else {
+				failed.increment();
+				pending.future().completeExceptionally(error);
+			}
+		}
+	}
+
+	/** L'escriptor compartit, i el seu fil, es creen el primer cop que es demana. */
+	private static final class Shared {
+		static final TicketWriter INSTANCE = new TicketWriter(Database::getConnection, DEFAULT_MAX_BATCH,
+				DEFAULT_MAX_DELAY_MS);
+
+		static {
+			sharedStarted = true;
+		}
+	}
+
+	/** Tiquet a la cua amb el futur que s'ha de completar. */
+	private record Pending(Ticket ticket, CompletableFuture<Integer> future) {
+	}
+
+	/**
+	 * Comptadors de l'escriptor en un moment concret.
+	 *
+	 * @param written      tiquets desats
+	 * @param failed       tiquets que no s'han pogut desar
+	 * @param batches      transaccions confirmades
+	 * @param largestBatch tiquets del grup més gran
+	 * @param queued       tiquets a la cua ara mateix
+	 */
+	public record Stats(long written, long failed, long batches, long largestBatch, int queued) {
+
+		/** @return tiquets desats per transacció de mitjana */
+		public double avgBatch() {
+			return batches == 0 ? 0 : (double) written / batches;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+-- Esquema base de l'aplicació. Les taules es creen només si no existeixen, de
+-- manera que les bases de dades anteriors al sistema de migracions s'adopten
+-- tal com estan.
+
+CREATE TABLE IF NOT EXISTS countries (
+    country_code TEXT PRIMARY KEY,
+    name         TEXT
+);
+
+CREATE TABLE IF NOT EXISTS brands (
+    brand_id     INTEGER PRIMARY KEY AUTOINCREMENT,
+    name         TEXT,
+    country_code TEXT REFERENCES countries (country_code)
+);
+
+CREATE TABLE IF NOT EXISTS drink_types (
+    type_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    name    TEXT,
+    image   BLOB
+);
+
+CREATE TABLE IF NOT EXISTS drinks (
+    drink_id        INTEGER PRIMARY KEY AUTOINCREMENT,
+    name            TEXT,
+    type_id         INTEGER REFERENCES drink_types (type_id),
+    brand_id        INTEGER REFERENCES brands (brand_id),
+    country_code    TEXT REFERENCES countries (country_code),
+    alcohol_content REAL,
+    description     TEXT,
+    volume          REAL,
+    price           REAL,
+    image           BLOB
+);
+
+CREATE TABLE IF NOT EXISTS users (
+    user_id     INTEGER PRIMARY KEY AUTOINCREMENT,
+    username    TEXT,
+    password    TEXT,
+    email       TEXT,
+    created_at  TEXT,
+    last_login  TEXT,
+    last_logout TEXT,
+    role        TEXT
+);
+
+CREATE TABLE IF NOT EXISTS tickets (
+    ticket_id  INTEGER PRIMARY KEY AUTOINCREMENT,
+    user_id    INTEGER REFERENCES users (user_id),
+    total      REAL,
+    status     TEXT,
+    created_at TEXT,
+    updated_at TEXT
+);
+
+CREATE TABLE IF NOT EXISTS ticket_lines (
+    ticket_line_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    ticket_id      INTEGER REFERENCES tickets (ticket_id),
+    drink_id       INTEGER REFERENCES drinks (drink_id),
+    quantity       INTEGER,
+    price          REAL
+);
@@ -0,0 +1,20 @@
+-- Índexs per als camins d'accés dels DAO.
+
+-- Paginació de tiquets per clau (created_at DESC, ticket_id DESC), sense filtre,
+-- filtrada per estat o filtrada per usuari
+CREATE INDEX IF NOT EXISTS idx_tickets_created ON tickets (created_at DESC, ticket_id DESC);
+CREATE INDEX IF NOT EXISTS idx_tickets_status_created ON tickets (status, created_at DESC, ticket_id DESC);
+CREATE INDEX IF NOT EXISTS idx_tickets_user_created ON tickets (user_id, created_at DESC, ticket_id DESC);
+
+-- Línies d'un tiquet en ordre; inclou les columnes que es llegeixen perquè la
+-- consulta no hagi d'anar a la taula
+CREATE INDEX IF NOT EXISTS idx_ticket_lines_ticket
+    ON ticket_lines (ticket_id, ticket_line_id, drink_id, quantity, price);
+
+-- Cerques per nom (login i getOrInsert)
+CREATE INDEX IF NOT EXISTS idx_users_username ON users (username);
+CREATE INDEX IF NOT EXISTS idx_brands_name ON brands (name);
+CREATE INDEX IF NOT EXISTS idx_drink_types_name ON drink_types (name);
+
+-- Estadístiques per al planificador de consultes
+ANALYZE;
@@ -0,0 +1,31 @@
+-- Noms únics de marques i tipus de beguda, necessaris per als getOrInsert amb
+-- INSERT ... ON CONFLICT (name).
+
+-- Si hi ha noms repetits, les begudes passen a apuntar al registre més antic i
+-- els altres s'eliminen
+UPDATE drinks
+SET brand_id = (SELECT MIN(o.brand_id) FROM brands o
+                JOIN brands b ON b.name = o.name
+                WHERE b.brand_id = drinks.brand_id)
+WHERE brand_id IN (SELECT b.brand_id FROM brands b
+                   WHERE EXISTS (SELECT 1 FROM brands o WHERE o.name = b.name AND o.brand_id < b.brand_id));
+
+DELETE FROM brands
+WHERE EXISTS (SELECT 1 FROM brands o WHERE o.name = brands.name AND o.brand_id < brands.brand_id);
+
+UPDATE drinks
+SET type_id = (SELECT MIN(o.type_id) FROM drink_types o
+               JOIN drink_types t ON t.name = o.name
+               WHERE t.type_id = drinks.type_id)
+WHERE type_id IN (SELECT t.type_id FROM drink_types t
+                  WHERE EXISTS (SELECT 1 FROM drink_types o WHERE o.name = t.name AND o.type_id < t.type_id));
+
+DELETE FROM drink_types
+WHERE EXISTS (SELECT 1 FROM drink_types o WHERE o.name = drink_types.name AND o.type_id < drink_types.type_id);
+
+-- Els índexs únics substitueixen els de la versió 2
+DROP INDEX IF EXISTS idx_brands_name;
+DROP INDEX IF EXISTS idx_drink_types_name;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_brands_name ON brands (name);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_drink_types_name ON drink_types (name);
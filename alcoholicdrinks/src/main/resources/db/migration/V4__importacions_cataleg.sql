@@ -0,0 +1,9 @@
+-- Progrés de les importacions de catàleg, per poder continuar una importació
+-- interrompuda. S'actualitza dins la mateixa transacció que cada lot de
+-- begudes.
+CREATE TABLE IF NOT EXISTS catalog_imports (
+    source       TEXT PRIMARY KEY,
+    records_done INTEGER NOT NULL,
+    completed    INTEGER NOT NULL DEFAULT 0,
+    updated_at   TEXT NOT NULL
+);
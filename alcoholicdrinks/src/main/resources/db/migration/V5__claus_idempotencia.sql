@@ -0,0 +1,11 @@
+-- Claus d'idempotència dels tiquets enviats des de les caixes. Un reenviament
+-- amb la mateixa clau retorna el tiquet ja creat en lloc de duplicar-lo. La
+-- clau és la clau primària d'una taula sense rowid, de manera que la cerca és
+-- una sola baixada per l'arbre. Les claus antigues es purguen per created_at.
+CREATE TABLE IF NOT EXISTS ticket_idempotency (
+    idempotency_key TEXT PRIMARY KEY,
+    ticket_id       INTEGER NOT NULL REFERENCES tickets (ticket_id),
+    created_at      TEXT NOT NULL
+) WITHOUT ROWID;
+
+CREATE INDEX IF NOT EXISTS idx_ticket_idempotency_created_at ON ticket_idempotency (created_at);
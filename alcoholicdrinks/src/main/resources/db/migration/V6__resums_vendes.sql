@@ -0,0 +1,37 @@
+-- Resums de vendes per hora i per dia, per beguda i estat del tiquet. Els
+-- manté el TicketDAO dins la mateixa transacció que cada escriptura de tiquets,
+-- i els informes de vendes es responen des d'aquí en lloc de recórrer les
+-- línies. Els imports són en cèntims. El tipus, la marca i el país s'obtenen
+-- de la beguda en consultar.
+CREATE TABLE IF NOT EXISTS sales_hourly (
+    hour          TEXT NOT NULL,
+    drink_id      INTEGER NOT NULL,
+    status        TEXT NOT NULL,
+    lines         INTEGER NOT NULL,
+    quantity      INTEGER NOT NULL,
+    revenue_cents INTEGER NOT NULL,
+    PRIMARY KEY (hour, drink_id, status)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS sales_daily (
+    day           TEXT NOT NULL,
+    drink_id      INTEGER NOT NULL,
+    status        TEXT NOT NULL,
+    lines         INTEGER NOT NULL,
+    quantity      INTEGER NOT NULL,
+    revenue_cents INTEGER NOT NULL,
+    PRIMARY KEY (day, drink_id, status)
+) WITHOUT ROWID;
+
+-- Càrrega inicial amb les vendes existents
+INSERT INTO sales_hourly (hour, drink_id, status, lines, quantity, revenue_cents)
+SELECT substr(t.created_at, 1, 13), COALESCE(tl.drink_id, 0), COALESCE(t.status, ''), COUNT(*),
+       SUM(tl.quantity), SUM(CAST(ROUND(tl.quantity * tl.price * 100) AS INTEGER))
+FROM tickets t JOIN ticket_lines tl ON tl.ticket_id = t.ticket_id
+WHERE t.created_at IS NOT NULL
+GROUP BY 1, 2, 3;
+
+INSERT INTO sales_daily (day, drink_id, status, lines, quantity, revenue_cents)
+SELECT substr(hour, 1, 10), drink_id, status, SUM(lines), SUM(quantity), SUM(revenue_cents)
+FROM sales_hourly
+GROUP BY 1, 2, 3;
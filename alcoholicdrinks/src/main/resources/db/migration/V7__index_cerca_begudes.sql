@@ -0,0 +1,19 @@
+-- Índex de cerca de text complet (FTS5) de les begudes: nom, descripció i noms
+-- de la marca i del tipus, amb rowid igual al drink_id. El manté el DrinkSearchIndex
+-- a cada escriptura de begudes. La rellevància (columna rank) pondera una
+-- coincidència al nom per sobre d'una a la descripció. Si la taula ja existia,
+-- creada per una versió anterior de l'aplicació, es torna a omplir.
+CREATE VIRTUAL TABLE IF NOT EXISTS drinks_fts USING fts5(
+    name, description, brand_name, type_name,
+    tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3'
+);
+
+INSERT INTO drinks_fts (drinks_fts, rank) VALUES ('rank', 'bm25(10.0, 1.0, 4.0, 2.0)');
+
+DELETE FROM drinks_fts;
+
+INSERT INTO drinks_fts (rowid, name, description, brand_name, type_name)
+SELECT d.drink_id, d.name, d.description, b.name, t.name
+FROM drinks d
+LEFT JOIN brands b ON d.brand_id = b.brand_id
+LEFT JOIN drink_types t ON d.type_id = t.type_id;